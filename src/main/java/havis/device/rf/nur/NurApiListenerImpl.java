@@ -24,10 +24,47 @@ public class NurApiListenerImpl implements NurApiListener {
 	Logger log = Logger.getLogger(NurApiListenerImpl.class.getName());
 	
 	private Semaphore semaphore = new Semaphore(0);
+
+	private volatile NurEpcCommissioning epcCommissioning;
+
+	private volatile NurTagLocator tagLocator;
+
+	private volatile NurTriggerMode triggerMode;
 	
 	public void waitForDisconnectedEvent() throws InterruptedException {
 		semaphore.acquire();
 	}
+
+	/**
+	 * Sets the EPC commissioning receiving the EPC enumeration events.
+	 * 
+	 * @param epcCommissioning
+	 *            the running commissioning or null
+	 */
+	void setEpcCommissioning(NurEpcCommissioning epcCommissioning) {
+		this.epcCommissioning = epcCommissioning;
+	}
+
+	/**
+	 * Sets the locator receiving the trace tag and frequency hop events.
+	 * 
+	 * @param tagLocator
+	 *            the running locator or null
+	 */
+	void setTagLocator(NurTagLocator tagLocator) {
+		this.tagLocator = tagLocator;
+	}
+
+	/**
+	 * Sets the trigger mode receiving the IO change, triggered read and
+	 * inventory stream events.
+	 * 
+	 * @param triggerMode
+	 *            the running trigger mode or null
+	 */
+	void setTriggerMode(NurTriggerMode triggerMode) {
+		this.triggerMode = triggerMode;
+	}
 	
 	/**
 	 * Event-handler for the disconnected event. Used to release the semaphore
@@ -45,6 +82,9 @@ public class NurApiListenerImpl implements NurApiListener {
 
 	@Override
 	public void IOChangeEvent(NurEventIOChange arg0) {
+		NurTriggerMode mode = this.triggerMode;
+		if (mode != null && arg0 != null)
+			mode.ioChanged(arg0.sensor, arg0.source, arg0.direction);
 	}
 
 	@Override
@@ -70,10 +110,16 @@ public class NurApiListenerImpl implements NurApiListener {
 
 	@Override
 	public void epcEnumEvent(NurEventEpcEnum arg0) {
+		NurEpcCommissioning commissioning = this.epcCommissioning;
+		if (commissioning != null && arg0 != null)
+			commissioning.epcEnumerated(arg0);
 	}
 
 	@Override
 	public void frequencyHopEvent(NurEventFrequencyHop arg0) {
+		NurTagLocator locator = this.tagLocator;
+		if (locator != null && arg0 != null)
+			locator.hopped(arg0.freqIdx);
 	}
 
 	@Override
@@ -82,6 +128,9 @@ public class NurApiListenerImpl implements NurApiListener {
 
 	@Override
 	public void inventoryStreamEvent(NurEventInventory arg0) {
+		NurTriggerMode mode = this.triggerMode;
+		if (mode != null && arg0 != null)
+			mode.inventoryStreamed(arg0.stopped);
 	}
 
 	@Override
@@ -98,10 +147,16 @@ public class NurApiListenerImpl implements NurApiListener {
 
 	@Override
 	public void traceTagEvent(NurEventTraceTag arg0) {
+		NurTagLocator locator = this.tagLocator;
+		if (locator != null && arg0 != null)
+			locator.traced(arg0.rssi, arg0.scaledRssi, arg0.antennaId);
 	}
 
 	@Override
 	public void triggeredReadEvent(NurEventTriggeredRead arg0) {
+		NurTriggerMode mode = this.triggerMode;
+		if (mode != null && arg0 != null)
+			mode.triggeredRead(arg0);
 	}
 
 	@Override
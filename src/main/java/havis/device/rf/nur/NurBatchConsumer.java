@@ -0,0 +1,31 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.RequestOperation;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.util.List;
+
+/**
+ * A {@link RFConsumer} providing the operations of a {@link RequestOperation}
+ * for all transponders of an inventory round at once. The operations
+ * preceding the request operation are performed on all transponders first,
+ * then the consumer is called once and the returned operations are performed
+ * in the order of the transponders.
+ */
+public interface NurBatchConsumer extends RFConsumer {
+
+	/**
+	 * Returns the operations to perform on the transponders of an inventory
+	 * round. Transponders for which an operation preceding the request
+	 * operation failed are not included.
+	 *
+	 * @param tags
+	 *            the transponders including the results of the operations
+	 *            preceding the request operation
+	 * @return the operations per transponder in the order of the given list, a
+	 *         null entry or a missing entry at the end means no operations
+	 */
+	List<List<TagOperation>> getOperations(List<TagData> tags);
+}
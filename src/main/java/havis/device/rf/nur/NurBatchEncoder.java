@@ -0,0 +1,274 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.nur.NurTagProcessor.Singulation;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+/**
+ * Performs a {@link NurBatchEncoding}. The tags are found by an inventory
+ * round reading the serialized TID, which identifies each tag during the
+ * batch. After all tags have been written, a single verification inventory
+ * round reads the written range:
+ * <ul>
+ * <li>for the EPC bank, the EPC reported by the inventory is compared and the
+ * tags are matched by the TID read during inventory</li>
+ * <li>for other banks, the written range is read during inventory and the tags
+ * are matched by their EPC if it is unique within the batch</li>
+ * </ul>
+ * Tags which could not be matched are verified by a read operation. Tags with
+ * mismatching data are written again and verified by another round.
+ */
+abstract class NurBatchEncoder {
+
+	private static final Logger log = Logger.getLogger(NurBatchEncoder.class.getName());
+
+	private static class Pending {
+		final TagData tagData;
+		final byte[] tid;
+		final WriteOperation write;
+
+		Pending(TagData tagData, byte[] tid, WriteOperation write) {
+			this.tagData = tagData;
+			this.tid = tid;
+			this.write = write;
+		}
+	}
+
+	private final NurTagProcessor tagProcessor;
+	private final NurBatchEncoding encoding;
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param tagProcessor
+	 *            the tag processor performing the access operations
+	 * @param encoding
+	 *            the encoding
+	 */
+	NurBatchEncoder(NurTagProcessor tagProcessor, NurBatchEncoding encoding) {
+		this.tagProcessor = tagProcessor;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Performs an inventory round reading memory of each tag.
+	 *
+	 * @param irBank
+	 *            the memory bank read during inventory
+	 * @param irAddr
+	 *            the word address read during inventory
+	 * @param irWords
+	 *            the number of words read during inventory
+	 * @return the tags found
+	 * @throws Exception
+	 *             if the inventory fails
+	 */
+	abstract NurTagStorage inventory(int irBank, int irAddr, int irWords) throws Exception;
+
+	/**
+	 * Performs the encoding.
+	 *
+	 * @param result
+	 *            the list receiving a tag data instance with the write result
+	 *            for each tag written
+	 * @throws Exception
+	 *             if an inventory fails
+	 */
+	void encode(List<TagData> result) throws Exception {
+		Map<String, Pending> pending = new LinkedHashMap<>();
+		Set<String> seen = new HashSet<>();
+
+		NurTagStorage storage = inventory(NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK_WITH_SERIAL);
+		for (int i = 0; i < storage.size(); i++) {
+			NurTag tag = storage.get(i);
+			byte[] tid = tag.getIrData();
+			if (tid == null || tid.length < NurTagProcessor.WORD_COUNT_TID_BANK_WITH_SERIAL * 2) {
+				log.log(Level.FINE, "Skipping tag {0} without serialized TID", RFUtils.bytesToHex(tag.getEpc()));
+				continue;
+			}
+
+			if (!seen.add(RFUtils.bytesToHex(tid)))
+				continue;
+
+			byte[] data = encoding.getSource().getData(tid, tag.getEpc());
+			if (data == null)
+				continue;
+
+			TagData tagData = new TagData();
+			tagData.setTagDataId(result.size());
+			tagData.setAntennaID((short) (tag.getAntennaId() + 1));
+			tagData.setChannel((short) tag.getChannel());
+			tagData.setRssi(tag.getRssi());
+			tagData.setPc((short) tag.getPC());
+			tagData.setEpc(tag.getEpc());
+			tagData.setResultList(new ArrayList<OperationResult>());
+			result.add(tagData);
+
+			WriteOperation write = new WriteOperation();
+			write.setOperationId(encoding.getOperationId());
+			write.setBank(encoding.getBank());
+			write.setOffset(encoding.getOffset());
+			write.setData(data);
+			write.setPassword(encoding.getPassword());
+
+			Pending p = new Pending(tagData, tid, write);
+			if (write(p))
+				pending.put(RFUtils.bytesToHex(tid), p);
+		}
+
+		for (int attempt = 0; !pending.isEmpty(); attempt++) {
+			Map<String, Pending> mismatched = verify(pending);
+			if (attempt >= encoding.getRetries()) {
+				for (Pending p : mismatched.values())
+					((WriteResult) p.tagData.getResultList().get(0)).setResult(WriteResult.Result.NON_SPECIFIC_TAG_ERROR);
+				break;
+			}
+
+			pending = new LinkedHashMap<>();
+			for (Map.Entry<String, Pending> entry : mismatched.entrySet()) {
+				log.log(Level.FINE, "Verification of tag {0} failed, writing again", entry.getKey());
+				if (write(entry.getValue()))
+					pending.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes the data of a tag replacing the previous write result.
+	 *
+	 * @return true if the write succeeded
+	 */
+	private boolean write(Pending p) {
+		WriteResult wr = tagProcessor.write(Singulation.getTIDInstance(p.tid), p.write);
+		p.tagData.getResultList().clear();
+		p.tagData.getResultList().add(wr);
+		return wr.getResult() == WriteResult.Result.SUCCESS;
+	}
+
+	/**
+	 * Verifies the data written to the pending tags.
+	 *
+	 * @return the tags with mismatching data by TID
+	 */
+	private Map<String, Pending> verify(Map<String, Pending> pending) throws Exception {
+		Map<String, Pending> unverified = new LinkedHashMap<>(pending);
+		Map<String, Pending> mismatched = new LinkedHashMap<>();
+		int offset = encoding.getOffset();
+
+		if (encoding.getBank() == NurApi.BANK_EPC) {
+			NurTagStorage storage = inventory(NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK_WITH_SERIAL);
+			for (int i = 0; i < storage.size(); i++) {
+				NurTag tag = storage.get(i);
+				String key = RFUtils.bytesToHex(tag.getIrData());
+				Pending p = unverified.get(key);
+				if (p == null)
+					continue;
+
+				Boolean match = matchesEpcBank(p.write, tag);
+				if (match != null) {
+					unverified.remove(key);
+					if (!match)
+						mismatched.put(key, p);
+				}
+			}
+		} else {
+			/* tags are matched by EPC, which must be unique within the batch */
+			Map<String, String> tidByEpc = new HashMap<>();
+			Set<String> ambiguous = new HashSet<>();
+			for (Map.Entry<String, Pending> entry : unverified.entrySet()) {
+				String epc = RFUtils.bytesToHex(entry.getValue().tagData.getEpc());
+				if (tidByEpc.put(epc, entry.getKey()) != null)
+					ambiguous.add(epc);
+			}
+
+			int words = 0;
+			for (Pending p : unverified.values())
+				words = Math.max(words, p.write.getData().length / 2);
+
+			NurTagStorage storage = inventory(encoding.getBank(), offset, words);
+			for (int i = 0; i < storage.size(); i++) {
+				NurTag tag = storage.get(i);
+				String epc = RFUtils.bytesToHex(tag.getEpc());
+				if (tag.getIrData() == null || ambiguous.contains(epc) || !tidByEpc.containsKey(epc))
+					continue;
+
+				String key = tidByEpc.remove(epc);
+				Pending p = unverified.remove(key);
+				if (!matches(p.write.getData(), tag.getIrData()))
+					mismatched.put(key, p);
+			}
+		}
+
+		/* tags not matched by the inventory are verified by reading */
+		for (Map.Entry<String, Pending> entry : unverified.entrySet()) {
+			Pending p = entry.getValue();
+			ReadOperation ro = new ReadOperation();
+			ro.setOperationId(p.write.getOperationId());
+			ro.setBank(p.write.getBank());
+			ro.setOffset(p.write.getOffset());
+			ro.setLength((short) (p.write.getData().length / 2));
+			ro.setPassword(p.write.getPassword());
+
+			ReadResult rr = tagProcessor.read(Singulation.getTIDInstance(p.tid), ro, null);
+			if (rr.getResult() != ReadResult.Result.SUCCESS || !matches(p.write.getData(), rr.getReadData()))
+				mismatched.put(entry.getKey(), p);
+		}
+
+		if (log.isLoggable(Level.FINE))
+			log.log(Level.FINE, "Verified {0} tags, {1} mismatching", new Object[] { pending.size(), mismatched.size() });
+
+		return mismatched;
+	}
+
+	/**
+	 * Compares data written to the EPC bank with the PC and EPC reported by
+	 * inventory. The CRC word is not compared.
+	 *
+	 * @return whether the data matches or null if the written range is not
+	 *         covered by the PC and EPC
+	 */
+	static Boolean matchesEpcBank(WriteOperation write, NurTag tag) {
+		byte[] epc = tag.getEpc() != null ? tag.getEpc() : new byte[] {};
+		byte[] bank = new byte[2 + epc.length];
+		bank[0] = (byte) (tag.getPC() >> 8);
+		bank[1] = (byte) tag.getPC();
+		System.arraycopy(epc, 0, bank, 2, epc.length);
+
+		byte[] data = write.getData();
+		for (int i = 0; i < data.length / 2; i++) {
+			int word = write.getOffset() + i;
+			if (word == 0)
+				continue;
+			int index = (word - 1) * 2;
+			if (index + 2 > bank.length)
+				return null;
+			if (bank[index] != data[2 * i] || bank[index + 1] != data[2 * i + 1])
+				return Boolean.FALSE;
+		}
+		return Boolean.TRUE;
+	}
+
+	private static boolean matches(byte[] written, byte[] read) {
+		return read != null && read.length >= written.length && Arrays.equals(written, Arrays.copyOf(read, written.length));
+	}
+}
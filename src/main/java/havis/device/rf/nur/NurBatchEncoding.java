@@ -0,0 +1,93 @@
+package havis.device.rf.nur;
+
+/**
+ * Parameters of a batch encoding performed by
+ * {@link NurHardwareManager#encode(java.util.List, java.util.List, NurBatchEncoding)}
+ * . The data supplied for each tag is written to the same memory range of all
+ * tags. The written data is verified by a single inventory round for the
+ * whole batch instead of a read operation per tag.
+ */
+public class NurBatchEncoding {
+
+	/**
+	 * Source of the data written to the tags.
+	 */
+	public interface DataSource {
+		/**
+		 * Returns the data to write to a tag.
+		 *
+		 * @param tid
+		 *            the serialized TID of the tag
+		 * @param epc
+		 *            the current EPC of the tag
+		 * @return the data, a multiple of 16 bits, or null to skip the tag
+		 */
+		byte[] getData(byte[] tid, byte[] epc);
+	}
+
+	private final String operationId;
+	private final short bank;
+	private final short offset;
+	private final int password;
+	private final DataSource source;
+	private int retries = 1;
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param operationId
+	 *            the operation ID of the write results
+	 * @param bank
+	 *            the memory bank to write to
+	 * @param offset
+	 *            the word offset to write to
+	 * @param password
+	 *            the access password or 0
+	 * @param source
+	 *            the source of the data written to each tag
+	 */
+	public NurBatchEncoding(String operationId, short bank, short offset, int password, DataSource source) {
+		this.operationId = operationId;
+		this.bank = bank;
+		this.offset = offset;
+		this.password = password;
+		this.source = source;
+	}
+
+	public String getOperationId() {
+		return operationId;
+	}
+
+	public short getBank() {
+		return bank;
+	}
+
+	public short getOffset() {
+		return offset;
+	}
+
+	public int getPassword() {
+		return password;
+	}
+
+	public DataSource getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the number of times tags failing verification are written
+	 *         again, 1 by default
+	 */
+	public int getRetries() {
+		return retries;
+	}
+
+	/**
+	 * @param retries
+	 *            the number of times tags failing verification are written
+	 *            again
+	 */
+	public void setRetries(int retries) {
+		this.retries = retries;
+	}
+}
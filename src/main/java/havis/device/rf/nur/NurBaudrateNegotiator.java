@@ -0,0 +1,361 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.Baudrate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nativeserial.NativeSerialTransport;
+import com.nordicid.nativeserial.SerialPort;
+import com.nordicid.nurapi.NurApi;
+
+/**
+ * Negotiates the baud rate of a serial connection to a NUR module. The rate
+ * the module currently uses is located first by probing the supported baud
+ * rates with a short self-test exchanging ping and reader info commands with
+ * the module. The module is then switched to the faster rates, starting with
+ * the fastest, until a rate passes the self-test. That rate is kept on the
+ * module and cached per device, so subsequent connects only need to verify
+ * the cached rate.
+ *
+ * <p>
+ * The negotiation is enabled by the property
+ * <b>havis.device.rf.nur.baudrateNegotiation</b>, the cache is written to the
+ * file given by <b>havis.device.rf.nur.baudrateCacheFile</b>.
+ * </p>
+ */
+class NurBaudrateNegotiator {
+
+	private static final Logger log = Logger.getLogger(NurBaudrateNegotiator.class.getName());
+
+	/**
+	 * Self-test and configuration of the link to a module at a specific baud
+	 * rate.
+	 */
+	interface LinkTest {
+		/**
+		 * Runs the self-test.
+		 *
+		 * @param devicePath
+		 *            the path of the serial device
+		 * @param baudrate
+		 *            the baud rate to test
+		 * @throws Exception
+		 *             if the module does not respond correctly
+		 */
+		void run(String devicePath, Baudrate baudrate) throws Exception;
+
+		/**
+		 * Switches the UART of the module to another baud rate.
+		 *
+		 * @param devicePath
+		 *            the path of the serial device
+		 * @param current
+		 *            the baud rate the module currently uses
+		 * @param target
+		 *            the baud rate to switch to
+		 * @throws Exception
+		 *             if the module could not be reconfigured
+		 */
+		void reconfigure(String devicePath, Baudrate current, Baudrate target) throws Exception;
+	}
+
+	/**
+	 * Self-test connecting the NUR API with the baud rate and exchanging
+	 * several ping and reader info commands.
+	 */
+	static class NurApiLinkTest implements LinkTest {
+		private final int rounds;
+
+		NurApiLinkTest(int rounds) {
+			this.rounds = rounds;
+		}
+
+		@Override
+		public void run(String devicePath, Baudrate baudrate) throws Exception {
+			NurApi nurApi = connect(devicePath, baudrate);
+			try {
+				for (int i = 0; i < rounds; i++) {
+					nurApi.ping();
+					if (nurApi.getReaderInfo() == null)
+						throw new IOException("No reader info received");
+				}
+			} finally {
+				disconnect(nurApi);
+			}
+		}
+
+		@Override
+		public void reconfigure(String devicePath, Baudrate current, Baudrate target) throws Exception {
+			NurApi nurApi = connect(devicePath, current);
+			try {
+				nurApi.setBaudrate(getSetting(target));
+			} finally {
+				disconnect(nurApi);
+			}
+		}
+
+		private static NurApi connect(String devicePath, Baudrate baudrate) throws Exception {
+			NurApi nurApi = new NurApi(new NativeSerialTransport(new SerialPort(devicePath, devicePath, 0), baudrate.getValue()));
+			try {
+				nurApi.connect();
+			} catch (Exception e) {
+				disconnect(nurApi);
+				throw e;
+			}
+			return nurApi;
+		}
+
+		private static void disconnect(NurApi nurApi) {
+			try {
+				if (nurApi.isConnected())
+					nurApi.disconnect();
+			} catch (Exception e) {
+				log.log(Level.FINE, "Failed to disconnect self-test connection: {0}", e);
+			} finally {
+				nurApi.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Returns the NUR API setting of a baud rate, e.g.
+	 * {@link NurApi#BAUDRATE_115200} for BAUDRATE_115200.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the module does not support the baud rate
+	 */
+	static int getSetting(Baudrate baudrate) {
+		switch ((int) getBitsPerSecond(baudrate)) {
+		case 9600:
+			return NurApi.BAUDRATE_9600;
+		case 38400:
+			return NurApi.BAUDRATE_38400;
+		case 115200:
+			return NurApi.BAUDRATE_115200;
+		case 230400:
+			return NurApi.BAUDRATE_230400;
+		case 500000:
+			return NurApi.BAUDRATE_500000;
+		case 1000000:
+			return NurApi.BAUDRATE_1000000;
+		case 1500000:
+			return NurApi.BAUDRATE_1500000;
+		default:
+			throw new IllegalArgumentException("Unsupported baud rate " + baudrate);
+		}
+	}
+
+	private final File cacheFile;
+	private final LinkTest linkTest;
+	private final List<Baudrate> candidates;
+
+	/**
+	 * Creates an instance of this class using the configuration of the
+	 * {@link NurEnvironment}.
+	 */
+	NurBaudrateNegotiator() {
+		this(new File(NurEnvironment.BAUDRATE_CACHE_FILE), new NurApiLinkTest(NurEnvironment.BAUDRATE_SELF_TEST_ROUNDS), Arrays.asList(Baudrate
+				.values()));
+	}
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param cacheFile
+	 *            the file caching the negotiated baud rates
+	 * @param linkTest
+	 *            the self-test
+	 * @param candidates
+	 *            the baud rates to probe
+	 */
+	NurBaudrateNegotiator(File cacheFile, LinkTest linkTest, List<Baudrate> candidates) {
+		this.cacheFile = cacheFile;
+		this.linkTest = linkTest;
+		this.candidates = new ArrayList<>(candidates);
+		Collections.sort(this.candidates, new Comparator<Baudrate>() {
+			@Override
+			public int compare(Baudrate b1, Baudrate b2) {
+				return Long.compare(getBitsPerSecond(b2), getBitsPerSecond(b1));
+			}
+		});
+	}
+
+	/**
+	 * Returns the bits per second of a baud rate constant, e.g. 115200 for
+	 * BAUDRATE_115200.
+	 */
+	static long getBitsPerSecond(Baudrate baudrate) {
+		String name = baudrate.name();
+		int start = name.length();
+		while (start > 0 && Character.isDigit(name.charAt(start - 1)))
+			start--;
+		return start < name.length() ? Long.parseLong(name.substring(start)) : 0;
+	}
+
+	/**
+	 * Negotiates the baud rate for a serial device. The cached rate is
+	 * verified first. If there is none or it fails the self-test, the rate the
+	 * module currently uses is located and the module is switched to the
+	 * faster candidates from the fastest down. The module is left at the first
+	 * rate passing the self-test.
+	 *
+	 * @param devicePath
+	 *            the path of the serial device
+	 * @param defaultBaudrate
+	 *            the rate to use if no rate passes the self-test
+	 * @return the negotiated baud rate
+	 */
+	synchronized Baudrate negotiate(String devicePath, Baudrate defaultBaudrate) {
+		log.entering(this.getClass().getName(), "negotiate", devicePath);
+
+		Properties cache = loadCache();
+		Baudrate result;
+
+		Baudrate cached = getCached(cache, devicePath);
+		if (cached != null && test(devicePath, cached)) {
+			result = cached;
+		} else {
+			result = select(devicePath, cached);
+			if (result != null) {
+				cache.setProperty(devicePath, result.name());
+				storeCache(cache);
+			} else {
+				log.log(Level.WARNING, "No baud rate passed the self-test for {0}, using {1}", new Object[] { devicePath, defaultBaudrate });
+				result = defaultBaudrate;
+			}
+		}
+
+		log.log(Level.INFO, "Using baud rate {0} for {1}", new Object[] { result, devicePath });
+		log.exiting(this.getClass().getName(), "negotiate", result);
+		return result;
+	}
+
+	/**
+	 * Switches the module to the fastest stable rate. The candidates faster
+	 * than the current rate are probed from the fastest down, the first rate
+	 * passing the self-test is kept.
+	 *
+	 * @return the rate the module uses or null if the module does not respond
+	 *         at any rate
+	 */
+	private Baudrate select(String devicePath, Baudrate cached) {
+		Baudrate current = locate(devicePath, cached);
+		if (current == null)
+			return null;
+
+		for (Baudrate candidate : candidates) {
+			/* the remaining candidates are not faster than the current rate */
+			if (getBitsPerSecond(candidate) <= getBitsPerSecond(current))
+				break;
+
+			if (!reconfigure(devicePath, current, candidate)) {
+				/* the module may have been switched anyway */
+				current = locate(devicePath, current);
+				if (current == null)
+					return null;
+				continue;
+			}
+
+			if (test(devicePath, candidate))
+				return candidate;
+
+			if (!(reconfigure(devicePath, candidate, current) && test(devicePath, current))) {
+				/* switching back from the unstable rate failed, locate the module again */
+				current = locate(devicePath, candidate);
+				if (current == null)
+					return null;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Locates the rate the module currently uses.
+	 *
+	 * @param first
+	 *            the rate to probe first or null
+	 * @return the rate passing the self-test or null
+	 */
+	private Baudrate locate(String devicePath, Baudrate first) {
+		if (first != null && test(devicePath, first))
+			return first;
+		for (Baudrate candidate : candidates)
+			if (candidate != first && test(devicePath, candidate))
+				return candidate;
+		return null;
+	}
+
+	/**
+	 * @return true if the self-test passed
+	 */
+	private boolean test(String devicePath, Baudrate baudrate) {
+		try {
+			linkTest.run(devicePath, baudrate);
+			log.log(Level.FINE, "Self-test of {0} at {1} passed", new Object[] { devicePath, baudrate });
+			return true;
+		} catch (Exception e) {
+			log.log(Level.FINE, "Self-test of {0} at {1} failed: {2}", new Object[] { devicePath, baudrate, e });
+			return false;
+		}
+	}
+
+	private boolean reconfigure(String devicePath, Baudrate current, Baudrate target) {
+		try {
+			linkTest.reconfigure(devicePath, current, target);
+			log.log(Level.FINE, "Switched {0} from {1} to {2}", new Object[] { devicePath, current, target });
+			return true;
+		} catch (Exception e) {
+			log.log(Level.FINE, "Failed to switch {0} from {1} to {2}: {3}", new Object[] { devicePath, current, target, e });
+			return false;
+		}
+	}
+
+	private static Baudrate getCached(Properties cache, String devicePath) {
+		String value = cache.getProperty(devicePath);
+		if (value != null) {
+			try {
+				return Baudrate.valueOf(value);
+			} catch (IllegalArgumentException e) {
+				log.log(Level.FINE, "Ignoring invalid cached baud rate {0}", value);
+			}
+		}
+		return null;
+	}
+
+	private Properties loadCache() {
+		Properties cache = new Properties();
+		if (cacheFile.exists()) {
+			try (InputStream stream = new FileInputStream(cacheFile)) {
+				cache.load(stream);
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Failed to load baud rate cache from " + cacheFile, e);
+			}
+		}
+		return cache;
+	}
+
+	private void storeCache(Properties cache) {
+		File parent = cacheFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists())
+			parent.mkdirs();
+
+		try (OutputStream stream = new FileOutputStream(cacheFile)) {
+			cache.store(stream, "Negotiated baud rates of NUR modules");
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Failed to store baud rate cache to " + cacheFile, e);
+		}
+	}
+}
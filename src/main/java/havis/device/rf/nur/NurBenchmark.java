@@ -0,0 +1,383 @@
+package havis.device.rf.nur;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks combinations of link profile, session, Q and rounds against the
+ * current transponder population. Each combination runs a number of
+ * inventory cycles and is rated by the unique transponders found per second,
+ * the completeness, i.e. the share of the transponders found by any
+ * combination, and the mean RSSI. The recommended combination is the fastest
+ * one reaching the minimum completeness, or the most complete one if none
+ * does.
+ */
+public class NurBenchmark {
+
+	private static final Logger log = Logger.getLogger(NurBenchmark.class.getName());
+
+	/**
+	 * A combination of settings to benchmark.
+	 */
+	public static class Candidate {
+		private final int linkFrequency;
+		private final int miller;
+		private final short session;
+		private final short q;
+		private final short rounds;
+
+		/**
+		 * Creates an instance of this class.
+		 *
+		 * @param linkFrequency
+		 *            the link frequency in kHz, 0 for the configured one
+		 * @param miller
+		 *            the RX encoding, 1 for FM0, 2, 4 or 8 for Miller encoding
+		 *            or 0 for the configured one
+		 * @param session
+		 *            the inventory session
+		 * @param q
+		 *            the Q value, 0 for automatic
+		 * @param rounds
+		 *            the inventory rounds, 0 for automatic
+		 */
+		public Candidate(int linkFrequency, int miller, short session, short q, short rounds) {
+			this.linkFrequency = linkFrequency;
+			this.miller = miller;
+			this.session = session;
+			this.q = q;
+			this.rounds = rounds;
+		}
+
+		public int getLinkFrequency() {
+			return linkFrequency;
+		}
+
+		public int getMiller() {
+			return miller;
+		}
+
+		public short getSession() {
+			return session;
+		}
+
+		public short getQ() {
+			return q;
+		}
+
+		public short getRounds() {
+			return rounds;
+		}
+
+		@Override
+		public String toString() {
+			return "linkFrequency=" + linkFrequency + ",miller=" + miller + ",session=" + session + ",q=" + q + ",rounds=" + rounds;
+		}
+	}
+
+	/**
+	 * The measurements of a candidate.
+	 */
+	public static class Result {
+		private final Candidate candidate;
+		private final int inventories;
+		private final long duration;
+		private final Set<String> tags;
+		private final double meanRssi;
+		private double completeness;
+
+		Result(Candidate candidate, int inventories, long duration, Set<String> tags, double meanRssi) {
+			this.candidate = candidate;
+			this.inventories = inventories;
+			this.duration = Math.max(1, duration);
+			this.tags = tags;
+			this.meanRssi = meanRssi;
+		}
+
+		public Candidate getCandidate() {
+			return candidate;
+		}
+
+		/**
+		 * @return the number of inventory cycles run
+		 */
+		public int getInventories() {
+			return inventories;
+		}
+
+		/**
+		 * @return the duration of all inventory cycles in milliseconds
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * @return the number of unique transponders found
+		 */
+		public int getUniqueTags() {
+			return tags.size();
+		}
+
+		/**
+		 * @return the number of unique transponders found per second
+		 */
+		public double getTagsPerSecond() {
+			return tags.size() * 1000.0 / duration;
+		}
+
+		/**
+		 * @return the share of the population found, from 0 to 1
+		 */
+		public double getCompleteness() {
+			return completeness;
+		}
+
+		/**
+		 * @return the mean RSSI of all reads in dBm or 0 if no transponder was
+		 *         found
+		 */
+		public double getMeanRssi() {
+			return meanRssi;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s,inventories=%d,duration=%d,uniqueTags=%d,tagsPerSecond=%.1f,completeness=%.3f,meanRssi=%.1f",
+					candidate, inventories, duration, getUniqueTags(), getTagsPerSecond(), completeness, meanRssi);
+		}
+	}
+
+	/**
+	 * The results of a benchmark.
+	 */
+	public static class Report {
+		private final List<Result> results;
+		private final int population;
+		private final Result best;
+
+		Report(List<Result> results, int population, Result best) {
+			this.results = Collections.unmodifiableList(results);
+			this.population = population;
+			this.best = best;
+		}
+
+		/**
+		 * @return the results in the order the candidates were run
+		 */
+		public List<Result> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the number of unique transponders found by any candidate
+		 */
+		public int getPopulation() {
+			return population;
+		}
+
+		/**
+		 * @return the result of the recommended candidate or null if no
+		 *         candidate was run
+		 */
+		public Result getBest() {
+			return best;
+		}
+
+		/**
+		 * Stores the report as a properties file.
+		 *
+		 * @param file
+		 *            the file to store the report to
+		 * @throws IOException
+		 *             if writing the file fails
+		 */
+		public void store(File file) throws IOException {
+			Properties properties = new Properties();
+			properties.setProperty("population", Integer.toString(population));
+			if (best != null)
+				properties.setProperty("best", best.getCandidate().toString());
+			for (int i = 0; i < results.size(); i++)
+				properties.setProperty(String.format("result.%03d", i), results.get(i).toString());
+
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.exists())
+				parent.mkdirs();
+
+			try (OutputStream stream = new FileOutputStream(file)) {
+				properties.store(stream, "Inventory benchmark");
+			}
+		}
+	}
+
+	/**
+	 * The module the benchmark is run on.
+	 */
+	interface Target {
+		/**
+		 * Applies the settings of a candidate.
+		 */
+		void apply(Candidate candidate) throws Exception;
+
+		/**
+		 * Runs a single inventory cycle.
+		 *
+		 * @return the RSSI in dBm by EPC (hex) of the transponders found
+		 */
+		Map<String, Integer> inventory() throws Exception;
+	}
+
+	private int[] linkFrequencies = { 0 };
+	private int[] millers = { 0 };
+	private short[] sessions = { 0, 1 };
+	private short[] qs = { 0, 4, 8 };
+	private short[] rounds = { 0 };
+	private int cycles = 10;
+	private double minCompleteness = 0.98;
+	private boolean apply;
+
+	/**
+	 * @param linkFrequencies
+	 *            the link frequencies in kHz, 0 for the configured one
+	 */
+	public void setLinkFrequencies(int... linkFrequencies) {
+		this.linkFrequencies = linkFrequencies;
+	}
+
+	/**
+	 * @param millers
+	 *            the RX encodings, 1 for FM0, 2, 4 or 8 for Miller encoding or
+	 *            0 for the configured one
+	 */
+	public void setMillers(int... millers) {
+		this.millers = millers;
+	}
+
+	public void setSessions(short... sessions) {
+		this.sessions = sessions;
+	}
+
+	/**
+	 * @param qs
+	 *            the Q values, 0 for automatic
+	 */
+	public void setQs(short... qs) {
+		this.qs = qs;
+	}
+
+	/**
+	 * @param rounds
+	 *            the inventory rounds, 0 for automatic
+	 */
+	public void setRounds(short... rounds) {
+		this.rounds = rounds;
+	}
+
+	/**
+	 * @param cycles
+	 *            the number of inventory cycles per candidate, 10 by default
+	 */
+	public void setCycles(int cycles) {
+		this.cycles = cycles;
+	}
+
+	/**
+	 * @param minCompleteness
+	 *            the completeness the recommended candidate has to reach, 0.98
+	 *            by default
+	 */
+	public void setMinCompleteness(double minCompleteness) {
+		this.minCompleteness = minCompleteness;
+	}
+
+	public boolean isApply() {
+		return apply;
+	}
+
+	/**
+	 * @param apply
+	 *            whether the recommended candidate is applied after the
+	 *            benchmark instead of restoring the previous settings
+	 */
+	public void setApply(boolean apply) {
+		this.apply = apply;
+	}
+
+	/**
+	 * @return the candidates of the matrix
+	 */
+	List<Candidate> getCandidates() {
+		List<Candidate> candidates = new ArrayList<>();
+		for (int linkFrequency : linkFrequencies)
+			for (int miller : millers)
+				for (short session : sessions)
+					for (short q : qs)
+						for (short round : rounds)
+							candidates.add(new Candidate(linkFrequency, miller, session, q, round));
+		return candidates;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param target
+	 *            the module to run the benchmark on
+	 * @return the report
+	 * @throws Exception
+	 *             if applying a candidate or an inventory fails
+	 */
+	Report run(Target target) throws Exception {
+		List<Result> results = new ArrayList<>();
+		Set<String> population = new HashSet<>();
+
+		for (Candidate candidate : getCandidates()) {
+			target.apply(candidate);
+
+			Set<String> tags = new HashSet<>();
+			long rssiSum = 0;
+			int reads = 0;
+			long start = currentTimeMillis();
+			for (int cycle = 0; cycle < cycles; cycle++) {
+				for (Map.Entry<String, Integer> tag : target.inventory().entrySet()) {
+					tags.add(tag.getKey());
+					rssiSum += tag.getValue();
+					reads++;
+				}
+			}
+			Result result = new Result(candidate, cycles, currentTimeMillis() - start, tags, reads > 0 ? (double) rssiSum / reads : 0);
+			results.add(result);
+			population.addAll(tags);
+
+			log.log(Level.FINE, "Benchmarked {0}", result);
+		}
+
+		Result best = null;
+		Result mostComplete = null;
+		for (Result result : results) {
+			result.completeness = population.isEmpty() ? 0 : (double) result.getUniqueTags() / population.size();
+			if (result.completeness >= minCompleteness && (best == null || result.getTagsPerSecond() > best.getTagsPerSecond()))
+				best = result;
+			if (mostComplete == null || result.getUniqueTags() > mostComplete.getUniqueTags()
+					|| result.getUniqueTags() == mostComplete.getUniqueTags() && result.getTagsPerSecond() > mostComplete.getTagsPerSecond())
+				mostComplete = result;
+		}
+
+		return new Report(results, population.size(), best != null ? best : mostComplete);
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
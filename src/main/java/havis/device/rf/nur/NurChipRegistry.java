@@ -0,0 +1,256 @@
+package havis.device.rf.nur;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of transponder chip capabilities keyed by the mask designer ID
+ * (MDID) and tag model number (TMN) of the TID bank. The capabilities are
+ * loaded from the resource <b>havis/device/rf/nur/chips.properties</b> and the
+ * optional file given by <b>havis.device.rf.nur.chipRegistryFile</b>, which
+ * takes precedence. Both use keys of the form
+ * <code>&lt;MDID&gt;.&lt;TMN&gt;.&lt;attribute&gt;</code> with MDID and TMN in
+ * hexadecimal notation.
+ *
+ * <p>
+ * Attributes:
+ * </p>
+ * <ul>
+ * <li><b>name</b>: the name of the chip</li>
+ * <li><b>userWords</b>: the size of the user bank in words</li>
+ * <li><b>tidWords</b>: the size of the TID bank in words</li>
+ * <li><b>blockWriteSize</b>: the number of words per BlockWrite command</li>
+ * <li><b>customCommands</b>: comma separated custom commands supported</li>
+ * <li><b>quirks</b>: comma separated special handling required</li>
+ * </ul>
+ */
+class NurChipRegistry {
+
+	private static final Logger log = Logger.getLogger(NurChipRegistry.class.getName());
+
+	private static final String RESOURCE = "havis/device/rf/nur/chips.properties";
+
+	/**
+	 * Quirk of chips which need the inventoried flag of session S0 to be reset
+	 * around access operations, e.g. EM4325.
+	 */
+	static final String QUIRK_RESET_INVENTORIED_STATE = "resetInventoriedState";
+
+	/**
+	 * Custom command of ETB sensor tags.
+	 */
+	static final String COMMAND_ETB_SENSOR = "etbSensor";
+
+	/**
+	 * The capabilities of a chip.
+	 */
+	static class Chip {
+		private final int mdid;
+		private final int tmn;
+		private String name;
+		private Integer userWords;
+		private Integer tidWords;
+		private int blockWriteSize;
+		private Set<String> customCommands = Collections.emptySet();
+		private Set<String> quirks = Collections.emptySet();
+
+		Chip(int mdid, int tmn) {
+			this.mdid = mdid;
+			this.tmn = tmn;
+		}
+
+		int getMdid() {
+			return mdid;
+		}
+
+		int getTmn() {
+			return tmn;
+		}
+
+		String getName() {
+			return name != null ? name : String.format("%03X.%03X", mdid, tmn);
+		}
+
+		/**
+		 * @return the size of the user bank in words or null if unknown
+		 */
+		Integer getUserWords() {
+			return userWords;
+		}
+
+		/**
+		 * @return the size of the TID bank in words or null if unknown
+		 */
+		Integer getTidWords() {
+			return tidWords;
+		}
+
+		/**
+		 * @return the number of words per BlockWrite command or 0 if block
+		 *         writes are not supported
+		 */
+		int getBlockWriteSize() {
+			return blockWriteSize;
+		}
+
+		boolean supportsCustomCommand(String command) {
+			return customCommands.contains(command);
+		}
+
+		boolean hasQuirk(String quirk) {
+			return quirks.contains(quirk);
+		}
+
+		@Override
+		public String toString() {
+			return getName();
+		}
+	}
+
+	private static NurChipRegistry instance;
+
+	private final Map<Integer, Chip> chips = new HashMap<>();
+
+	/**
+	 * Creates a registry from properties.
+	 *
+	 * @param properties
+	 *            the chip properties
+	 */
+	NurChipRegistry(Properties properties) {
+		for (String key : properties.stringPropertyNames()) {
+			String[] parts = key.split("\\.", 3);
+			if (parts.length != 3) {
+				log.log(Level.WARNING, "Ignoring invalid chip registry key {0}", key);
+				continue;
+			}
+
+			String value = properties.getProperty(key).trim();
+			try {
+				int mdid = Integer.parseInt(parts[0], 16);
+				int tmn = Integer.parseInt(parts[1], 16);
+				Chip chip = chips.get(key(mdid, tmn));
+				if (chip == null)
+					chips.put(key(mdid, tmn), chip = new Chip(mdid, tmn));
+
+				switch (parts[2]) {
+				case "name":
+					chip.name = value;
+					break;
+				case "userWords":
+					chip.userWords = Integer.valueOf(value);
+					break;
+				case "tidWords":
+					chip.tidWords = Integer.valueOf(value);
+					break;
+				case "blockWriteSize":
+					chip.blockWriteSize = Integer.parseInt(value);
+					break;
+				case "customCommands":
+					chip.customCommands = toSet(value);
+					break;
+				case "quirks":
+					chip.quirks = toSet(value);
+					break;
+				default:
+					log.log(Level.WARNING, "Ignoring unknown chip attribute {0}", key);
+				}
+			} catch (NumberFormatException e) {
+				log.log(Level.WARNING, "Ignoring invalid chip registry entry {0}={1}", new Object[] { key, value });
+			}
+		}
+	}
+
+	/**
+	 * @return the registry loaded from the resource and the configured file
+	 */
+	static synchronized NurChipRegistry getInstance() {
+		if (instance == null) {
+			Properties properties = new Properties();
+			try (InputStream stream = NurChipRegistry.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+				if (stream != null)
+					properties.load(stream);
+			} catch (IOException e) {
+				log.log(Level.SEVERE, "Failed to load chip registry from " + RESOURCE, e);
+			}
+
+			if (NurEnvironment.CHIP_REGISTRY_FILE != null) {
+				File file = new File(NurEnvironment.CHIP_REGISTRY_FILE);
+				if (file.exists()) {
+					try (InputStream stream = new FileInputStream(file)) {
+						properties.load(stream);
+					} catch (IOException e) {
+						log.log(Level.SEVERE, "Failed to load chip registry from " + file, e);
+					}
+				}
+			}
+			instance = new NurChipRegistry(properties);
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the capabilities of the chip identified by the first two words
+	 * of the TID bank.
+	 *
+	 * @param tid
+	 *            the TID bank data starting at word 0, e.g. the data read
+	 *            during inventory
+	 * @return the chip or null if the TID is unknown, shorter than two words
+	 *         or not of allocation class E2
+	 */
+	Chip get(byte[] tid) {
+		if (tid == null || tid.length < 4 || (tid[0] & 0xff) != 0xe2)
+			return null;
+		return chips.get(key(getMdid(tid), getTmn(tid)));
+	}
+
+	/**
+	 * Returns the number of words per BlockWrite command of a chip.
+	 *
+	 * @param tid
+	 *            the TID bank data starting at word 0 or null
+	 * @return the block size or 0 if the chip is unknown or does not support
+	 *         block writes
+	 */
+	int getBlockWriteSize(byte[] tid) {
+		Chip chip = get(tid);
+		return chip != null ? chip.getBlockWriteSize() : 0;
+	}
+
+	/**
+	 * @return the 9 bit mask designer ID of an E2 class TID
+	 */
+	static int getMdid(byte[] tid) {
+		return (((tid[1] & 0xff) << 4) | ((tid[2] & 0xff) >> 4)) & 0x1ff;
+	}
+
+	/**
+	 * @return the 12 bit tag model number of an E2 class TID
+	 */
+	static int getTmn(byte[] tid) {
+		return ((tid[2] & 0x0f) << 8) | (tid[3] & 0xff);
+	}
+
+	private static int key(int mdid, int tmn) {
+		return mdid << 12 | tmn;
+	}
+
+	private static Set<String> toSet(String value) {
+		Set<String> result = new HashSet<>();
+		for (String entry : value.split(","))
+			if (!entry.trim().isEmpty())
+				result.add(entry.trim());
+		return Collections.unmodifiableSet(result);
+	}
+}
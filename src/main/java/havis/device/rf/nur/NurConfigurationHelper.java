@@ -42,6 +42,9 @@ public class NurConfigurationHelper {
 
 	private Region region = Region.RegionUnspecified;
 
+	/* the link profile applied instead of the configured link settings or null */
+	private NurLinkProfile linkProfile;
+
 	/**
 	 * Creates an instance of this class
 	 * 
@@ -63,6 +66,7 @@ public class NurConfigurationHelper {
 	protected void loadModuleSetup() throws ImplementationException {
 		try {
 			this.nurSetup = nurApi.getModuleSetup();
+			this.linkProfile = null;
 			
 			if (this.nurSetup.antennaMask == NurApi.ANTENNAMASK_4)
 				this.nurSetup.antennaMask = 0;
@@ -101,6 +105,10 @@ public class NurConfigurationHelper {
 		if (nurSetup.antennaMask == 0) 
 			nurSetup.antennaMask = NurApi.ANTENNAMASK_4;
 		
+		/* the configured link settings replace an applied link profile */
+		if ((flags & (NurApi.SETUP_LINKFREQ | NurApi.SETUP_RXDEC)) > 0)
+			this.linkProfile = null;
+		
 		try {
 			this.nurApi.setModuleSetup(this.nurSetup, flags);
 			
@@ -134,6 +142,10 @@ public class NurConfigurationHelper {
 				flagStr += "REGION ";
 			if ((flags & NurApi.SETUP_LINKFREQ) > 0)
 				flagStr += "LINKFREQ ";			
+			if ((flags & NurApi.SETUP_RXDEC) > 0)
+				flagStr += "RXDEC ";
+			if ((flags & NurApi.SETUP_OPFLAGS) > 0)
+				flagStr += "OPFLAGS ";
 			if ((flags & NurApi.SETUP_INVRSSIFILTER) > 0)
 				flagStr += "INVRSSIFILTER ";			
 			if ((flags & NurApi.SETUP_INVQ) > 0)
@@ -546,8 +558,88 @@ public class NurConfigurationHelper {
 		
 		log.exiting(getClass().getName(), "setTxLevel");
 	}
-		
+
+	/**
+	 * Applies the TX levels of all antennas raised by the specified number of
+	 * dB to the module without changing the configured levels. A boost of 0
+	 * applies the configured levels again.
+	 *
+	 * @param boost
+	 *            the number of dB to raise the TX levels by, levels are
+	 *            limited to the maximum TX level
+	 * @throws ImplementationException
+	 *             if saving the module setup fails
+	 */
+	protected void applyTxLevelBoost(int boost) throws ImplementationException {
+		if (log.isLoggable(Level.FINER))
+			log.entering(getClass().getName(), "applyTxLevelBoost", boost);
+
+		int[] configured = this.nurSetup.antPower;
+		if (boost > 0) {
+			int[] boosted = new int[configured.length];
+			for (int iAntenna = 0; iAntenna < configured.length; iAntenna++)
+				boosted[iAntenna] = Math.max(NurApi.TXLEVEL_27, getEffectiveTxLevel(iAntenna) - boost);
+			this.nurSetup.antPower = boosted;
+		}
+
+		try {
+			this.saveModuleSetup(NurApi.SETUP_PERANTPOWER);
+		} finally {
+			this.nurSetup.antPower = configured;
+		}
+
+		log.exiting(getClass().getName(), "applyTxLevelBoost");
+	}
+
+	/**
+	 * Returns the number of dB the TX level of the weakest antenna can be
+	 * raised by until the maximum TX level is reached.
+	 *
+	 * @return the headroom in dB
+	 */
+	protected int getTxLevelHeadroom() {
+		int headroom = 0;
+		for (int iAntenna = 0; iAntenna < this.nurSetup.antPower.length; iAntenna++)
+			headroom = Math.max(headroom, getEffectiveTxLevel(iAntenna) - NurApi.TXLEVEL_27);
+		return headroom;
+	}
+
+	/**
+	 * Returns the NUR API TX level constant in effect for an antenna, i.e. the
+	 * default TX level if the antenna has no level of its own. The constants
+	 * are the attenuation from the maximum TX level in dB.
+	 */
+	private int getEffectiveTxLevel(int nurApiAntId) {
+		int level = this.nurSetup.antPower[nurApiAntId];
+		return level >= NurApi.TXLEVEL_27 && level <= NurApi.TXLEVEL_8 ? level : this.nurSetup.txLevel;
+	}
+
 	
+	/**
+	 * Enables or disables the frequency hop events of the module.
+	 * 
+	 * @param enabled
+	 *            whether the module reports each frequency hop
+	 * @return true if the setting has been changed
+	 * @throws ImplementationException
+	 *             if saving the module setup fails.
+	 */
+	protected boolean setHopEvents(boolean enabled) throws ImplementationException {
+		int oldVal = this.nurSetup.opFlags;
+		int newVal = enabled ? oldVal | NurApi.OPFLAGS_EN_HOPEVENTS : oldVal & ~NurApi.OPFLAGS_EN_HOPEVENTS;
+
+		if (oldVal != newVal) {
+			this.nurSetup.opFlags = newVal;
+			try {
+				this.saveModuleSetup(NurApi.SETUP_OPFLAGS);
+			} catch (ImplementationException e) {
+				this.nurSetup.opFlags = oldVal;
+				throw e;
+			}
+		}
+		return oldVal != newVal;
+	}
+
 	/**	 
 	 * Returns the module's link frequency.
 	 * 
@@ -588,6 +680,44 @@ public class NurConfigurationHelper {
 		log.exiting(getClass().getName(), "setLinkFrequency");
 	}
 
+	/**
+	 * Applies a link profile to the module instead of the configured link
+	 * settings. The link frequency and RX decoding are written by a single
+	 * setup command, which is omitted if the profile is applied already.
+	 * 
+	 * @param profile
+	 *            a {@link NurLinkProfile} instance or null to apply the
+	 *            configured link settings
+	 * @return true if the module setup has been written
+	 * @throws ImplementationException
+	 *             if saving the module setup fails.
+	 */
+	protected boolean applyLinkProfile(NurLinkProfile profile) throws ImplementationException {
+		if (profile == null ? this.linkProfile == null : profile.equals(this.linkProfile))
+			return false;
+
+		log.log(Level.FINER, "Changing link profile from {0} to {1}", new Object[] { this.linkProfile, profile });
+
+		int linkFreq = this.nurSetup.linkFreq;
+		int rxDecoding = this.nurSetup.rxDecoding;
+		if (profile != null) {
+			if (profile.linkFreq >= 0)
+				this.nurSetup.linkFreq = profile.linkFreq;
+			if (profile.rxDecoding >= 0)
+				this.nurSetup.rxDecoding = profile.rxDecoding;
+		}
+
+		try {
+			this.saveModuleSetup(NurApi.SETUP_LINKFREQ | NurApi.SETUP_RXDEC);
+		} finally {
+			this.nurSetup.linkFreq = linkFreq;
+			this.nurSetup.rxDecoding = rxDecoding;
+		}
+
+		this.linkProfile = profile;
+		return true;
+	}
+
 	/**
 	 * Returns the module's firmware version.
 	 * 
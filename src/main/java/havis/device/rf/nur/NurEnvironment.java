@@ -0,0 +1,278 @@
+package havis.device.rf.nur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class provides the NUR specific environment properties. The properties
+ * are read from the resource <b>havis.device.rf.properties</b> using the key
+ * prefix <b>havis.device.rf.nur.</b> and can be overridden by system
+ * properties of the same name.
+ *
+ */
+public class NurEnvironment {
+
+	private static final Logger log = Logger.getLogger(NurEnvironment.class.getName());
+
+	private static final String PROPERTIES_FILE = "havis.device.rf.properties";
+	private static final String PREFIX = "havis.device.rf.nur.";
+
+	private static final Properties properties = new Properties();
+
+	static {
+		try (InputStream stream = NurEnvironment.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+			if (stream != null)
+				properties.load(stream);
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "Failed to load environment properties from " + PROPERTIES_FILE, e);
+		}
+	}
+
+	/**
+	 * The serial device paths of all NUR modules to be aggregated by the
+	 * {@link NurMultiHardwareManager}. Socket addresses of the form
+	 * tcp://host[:port] are accepted as well. If the property is not set, the
+	 * default address of the {@link NurTransportFactory} is used.
+	 */
+	public static List<String> SERIAL_DEVICE_PATHS = getList("serialDevicePaths");
+
+	/**
+	 * The transport used to connect to the NUR module, either <b>serial</b>
+	 * (default) or <b>socket</b>.
+	 */
+	public static String TRANSPORT = get("transport", "serial");
+
+	/**
+	 * The host name of the NUR module if the socket transport is used.
+	 */
+	public static String SOCKET_HOST = get("socketHost");
+
+	/**
+	 * The TCP port of the NUR module if the socket transport is used.
+	 */
+	public static int SOCKET_PORT = getInt("socketPort", 4333);
+
+	/**
+	 * The timeout in milliseconds for establishing a socket connection.
+	 */
+	public static int SOCKET_CONNECT_TIMEOUT = getInt("socketConnectTimeout", 5000);
+
+	/**
+	 * The timeout in milliseconds of a single socket read. A read timing out
+	 * returns no data, which allows the reader thread of the NUR API to notice
+	 * a disconnect.
+	 */
+	public static int SOCKET_READ_TIMEOUT = getInt("socketReadTimeout", 1000);
+
+	/**
+	 * Whether Nagle's algorithm is disabled for socket connections.
+	 */
+	public static boolean SOCKET_TCP_NO_DELAY = getBoolean("socketTcpNoDelay", true);
+
+	/**
+	 * Whether TCP keepalive is enabled for socket connections.
+	 */
+	public static boolean SOCKET_KEEP_ALIVE = getBoolean("socketKeepAlive", true);
+
+	/**
+	 * Whether the baud rate of serial connections is negotiated with the
+	 * module, which is switched to the fastest rate passing the self-test,
+	 * instead of using the configured baud rate.
+	 */
+	public static boolean BAUDRATE_NEGOTIATION = getBoolean("baudrateNegotiation", false);
+
+	/**
+	 * The number of ping and reader info exchanges of the baud rate self-test.
+	 */
+	public static int BAUDRATE_SELF_TEST_ROUNDS = getInt("baudrateSelfTestRounds", 3);
+
+	/**
+	 * The file caching the negotiated baud rate per serial device.
+	 */
+	public static String BAUDRATE_CACHE_FILE = get("baudrateCacheFile", "conf/havis/device/rf/nur/baudrate.properties");
+
+	/**
+	 * The time in milliseconds an execute request waits for its result in the
+	 * {@link NurSharedSession} and closing the session waits for the worker.
+	 */
+	public static int SHARED_SESSION_TIMEOUT = getInt("sharedSessionTimeout", 60000);
+
+	/**
+	 * The capacity of the ring buffer of the {@link NurTagStream}.
+	 */
+	public static int TAG_STREAM_CAPACITY = getInt("tagStreamCapacity", 1024);
+
+	/**
+	 * Whether consecutive read operations on adjacent or overlapping ranges of
+	 * the same bank are performed with a single read command.
+	 */
+	public static boolean READ_COALESCING = getBoolean("readCoalescing", true);
+
+	/**
+	 * Whether consecutive lock operations with the same password and privilege
+	 * are performed with a single lock command.
+	 */
+	public static boolean LOCK_MERGING = getBoolean("lockMerging", true);
+
+	/**
+	 * Whether consecutive write operations on contiguous ranges of a bank with
+	 * the same password are performed by a single write command.
+	 */
+	public static boolean WRITE_COALESCING = getBoolean("writeCoalescing", true);
+
+	/**
+	 * The number of words written by a single BlockWrite command. Values less
+	 * than 2 disable block writes, i.e. the module writes word by word.
+	 */
+	public static int BLOCK_WRITE_SIZE = getInt("blockWriteSize", 0);
+
+	/**
+	 * Whether write operations only write the words differing from the current
+	 * memory content. The current content is taken from the inventory data if
+	 * available and read from the tag otherwise.
+	 */
+	public static boolean DIFF_WRITE = getBoolean("diffWrite", false);
+
+	/**
+	 * The file overriding and extending the chip capabilities of the
+	 * {@link NurChipRegistry}.
+	 */
+	public static String CHIP_REGISTRY_FILE = get("chipRegistryFile", "conf/havis/device/rf/nur/chips.properties");
+
+	/**
+	 * The upper bound in words when learning the user bank size of a
+	 * transponder model not covered by the {@link NurChipRegistry}.
+	 */
+	public static int USER_BANK_MAX_WORDS = getInt("userBankMaxWords", 512);
+
+	/**
+	 * The file persisting the learned user bank sizes.
+	 */
+	public static String USER_BANK_SIZE_CACHE_FILE = get("userBankSizeCacheFile", "conf/havis/device/rf/nur/userbank.properties");
+
+	/**
+	 * The file the report of the last {@link NurBenchmark} is stored to.
+	 */
+	public static String BENCHMARK_REPORT_FILE = get("benchmarkReportFile", "conf/havis/device/rf/nur/benchmark.properties");
+
+	/**
+	 * Whether operations on a tag singulated by a complete serialized TID
+	 * filter are performed without prior inventory. Inventory is only run if
+	 * the tag does not respond.
+	 */
+	public static boolean DIRECT_ACCESS = getBoolean("directAccess", true);
+
+	/**
+	 * Whether tags are singulated by the shortest EPC prefix identifying them
+	 * uniquely among the tags of the inventory round instead of the complete
+	 * EPC. This only applies to unfiltered executions of read operations.
+	 */
+	public static boolean EPC_PREFIX_SINGULATION = getBoolean("epcPrefixSingulation", false);
+
+	/**
+	 * The minimum number of EPC bits used for prefix singulation.
+	 */
+	public static int EPC_PREFIX_MIN_BITS = getInt("epcPrefixMinBits", 16);
+
+	/**
+	 * The number of dB the TX level is raised by above the configured level
+	 * for write, lock and kill operations, 0 to access tags with the
+	 * configured level.
+	 */
+	public static int ACCESS_POWER_BOOST = getInt("accessPowerBoost", 0);
+
+	/**
+	 * The maximum number of times a write, lock or kill operation failing with
+	 * insufficient power is repeated with a raised TX level, 0 to report the
+	 * error.
+	 */
+	public static int ACCESS_POWER_RAMP_STEPS = getInt("accessPowerRampSteps", 0);
+
+	/**
+	 * The number of dB the TX level is raised by per repetition of an
+	 * operation failing with insufficient power.
+	 */
+	public static int ACCESS_POWER_RAMP_STEP = getInt("accessPowerRampStep", 2);
+
+	/**
+	 * The link frequency in kHz applied for inventory, 0 to use the configured
+	 * link frequency.
+	 */
+	public static int INVENTORY_LINK_FREQUENCY = getInt("inventoryLinkFrequency", 0);
+
+	/**
+	 * The RX encoding applied for inventory, 1 for FM0, 2, 4 or 8 for Miller
+	 * encoding or 0 to use the configured encoding.
+	 */
+	public static int INVENTORY_MILLER = getInt("inventoryMiller", 0);
+
+	/**
+	 * The link frequency in kHz applied for access operations if the
+	 * operations write to the transponders, 0 to use the configured link
+	 * frequency.
+	 */
+	public static int ACCESS_LINK_FREQUENCY = getInt("accessLinkFrequency", 0);
+
+	/**
+	 * The RX encoding applied for access operations if the operations write to
+	 * the transponders, 1 for FM0, 2, 4 or 8 for Miller encoding or 0 to use
+	 * the configured encoding.
+	 */
+	public static int ACCESS_MILLER = getInt("accessMiller", 0);
+
+	/**
+	 * Returns the value of a NUR specific property. System properties take
+	 * precedence over the properties file.
+	 *
+	 * @param key
+	 *            the property key without the NUR prefix
+	 * @return the trimmed property value or null if the property is not set or
+	 *         empty
+	 */
+	static String get(String key) {
+		String value = System.getProperty(PREFIX + key, properties.getProperty(PREFIX + key));
+		if (value == null || value.trim().isEmpty())
+			return null;
+		return value.trim();
+	}
+
+	static String get(String key, String defaultValue) {
+		String value = get(key);
+		return value != null ? value : defaultValue;
+	}
+
+	static int getInt(String key, int defaultValue) {
+		String value = get(key);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			log.log(Level.SEVERE, "Invalid value ''{0}'' of property {1}, using {2}", new Object[] { value, PREFIX + key, defaultValue });
+			return defaultValue;
+		}
+	}
+
+	static boolean getBoolean(String key, boolean defaultValue) {
+		String value = get(key);
+		return value != null ? Boolean.parseBoolean(value) : defaultValue;
+	}
+
+	static List<String> getList(String key) {
+		String value = get(key);
+		if (value == null)
+			return null;
+
+		List<String> result = new ArrayList<>();
+		for (String entry : value.split(","))
+			if (!entry.trim().isEmpty())
+				result.add(entry.trim());
+		return Collections.unmodifiableList(result);
+	}
+}
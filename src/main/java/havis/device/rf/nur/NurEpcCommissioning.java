@@ -0,0 +1,195 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.util.RFUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurEpcEnumParam;
+import com.nordicid.nurapi.NurEventEpcEnum;
+
+/**
+ * Bulk commissioning of blank tags using the EPC enumeration of the module.
+ * The module writes an EPC built from a template to each new tag in the field
+ * autonomously. A serial number is placed at a bit range of the template and
+ * incremented for each tag, starting with the first serial number. Tags are
+ * told apart by their TID, so a tag is commissioned only once. The encoded
+ * tags are reported to a {@link Listener} while the commissioning is running.
+ */
+public class NurEpcCommissioning {
+
+	private static final Logger log = Logger.getLogger(NurEpcCommissioning.class.getName());
+
+	/**
+	 * Listener receiving the commissioned tags.
+	 */
+	public interface Listener {
+		/**
+		 * Is called on the event thread of the NUR API for each tag written by
+		 * the module.
+		 *
+		 * @param antenna
+		 *            the antenna ID
+		 * @param serial
+		 *            the serial number written
+		 * @param epc
+		 *            the EPC written
+		 * @param tid
+		 *            the TID of the tag
+		 */
+		void tagCommissioned(short antenna, long serial, byte[] epc, byte[] tid);
+	}
+
+	private final byte[] template;
+	private final int serialOffset;
+	private final int serialLength;
+	private final long firstSerial;
+	private final Listener listener;
+	private short antenna = 1;
+	private int tidWords = NurTagProcessor.WORD_COUNT_TID_BANK_WITH_SERIAL;
+	private boolean blockWrite;
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param template
+	 *            the EPC written to the tags, a multiple of 16 bits
+	 * @param serialOffset
+	 *            the bit offset of the serial number within the EPC
+	 * @param serialLength
+	 *            the number of bits of the serial number, at most 64
+	 * @param firstSerial
+	 *            the serial number written to the first tag
+	 * @param listener
+	 *            the listener receiving the commissioned tags
+	 * @throws IllegalArgumentException
+	 *             if the serial number range does not fit into the template
+	 */
+	public NurEpcCommissioning(byte[] template, int serialOffset, int serialLength, long firstSerial, Listener listener) {
+		if (template == null || template.length == 0 || template.length % 2 != 0)
+			throw new IllegalArgumentException("EPC template must be a non-empty multiple of 16 bits");
+		if (serialLength < 1 || serialLength > 64 || serialOffset < 0 || serialOffset + serialLength > template.length * 8)
+			throw new IllegalArgumentException("Serial number range " + serialOffset + "+" + serialLength + " exceeds EPC template");
+		if (serialLength < 64 && (firstSerial < 0 || firstSerial >>> serialLength != 0))
+			throw new IllegalArgumentException("First serial number " + firstSerial + " exceeds " + serialLength + " bits");
+
+		this.template = Arrays.copyOf(template, template.length);
+		this.serialOffset = serialOffset;
+		this.serialLength = serialLength;
+		this.firstSerial = firstSerial;
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the antenna ID used for commissioning, 1 by default
+	 */
+	public short getAntenna() {
+		return antenna;
+	}
+
+	/**
+	 * @param antenna
+	 *            the antenna ID used for commissioning
+	 */
+	public void setAntenna(short antenna) {
+		this.antenna = antenna;
+	}
+
+	/**
+	 * @return the number of TID words identifying a tag
+	 */
+	public int getTidWords() {
+		return tidWords;
+	}
+
+	/**
+	 * @param tidWords
+	 *            the number of TID words identifying a tag, which must include
+	 *            the serial number of the TID
+	 */
+	public void setTidWords(int tidWords) {
+		this.tidWords = tidWords;
+	}
+
+	/**
+	 * @return whether the EPC is written using BlockWrite commands
+	 */
+	public boolean isBlockWrite() {
+		return blockWrite;
+	}
+
+	/**
+	 * @param blockWrite
+	 *            whether the EPC is written using BlockWrite commands
+	 */
+	public void setBlockWrite(boolean blockWrite) {
+		this.blockWrite = blockWrite;
+	}
+
+	/**
+	 * @return the number of tags commissioned so far
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the parameters of the EPC enumeration of the module
+	 */
+	NurEpcEnumParam createParameters() {
+		NurEpcEnumParam param = new NurEpcEnumParam();
+		param.antenna = antenna - 1;
+		param.twAddr = 0;
+		param.twLen = tidWords;
+		param.useBlWrite = blockWrite;
+		param.epcLen = template.length;
+		param.baseEPC = Arrays.copyOf(template, template.length);
+		param.bitStart = serialOffset;
+		param.bitLen = serialLength;
+		param.startVal = new byte[8];
+		for (int i = 0; i < 8; i++)
+			param.startVal[i] = (byte) (firstSerial >>> (56 - 8 * i));
+		return param;
+	}
+
+	/**
+	 * Extracts the serial number from an EPC written by the module.
+	 *
+	 * @param epc
+	 *            the EPC
+	 * @return the serial number
+	 */
+	long getSerial(byte[] epc) {
+		long serial = 0;
+		for (int i = serialOffset; i < serialOffset + serialLength && i / 8 < epc.length; i++)
+			serial = serial << 1 | (epc[i / 8] >> (7 - i % 8)) & 1;
+		return serial;
+	}
+
+	/**
+	 * Handles an EPC enumeration event of the module.
+	 *
+	 * @param event
+	 *            the event
+	 */
+	void epcEnumerated(NurEventEpcEnum event) {
+		byte[] epc = event.epc != null ? event.epc : new byte[] {};
+		long serial = getSerial(epc);
+		count.incrementAndGet();
+
+		if (log.isLoggable(Level.FINER))
+			log.log(Level.FINER, "Tag {0} commissioned with EPC {1} on antenna {2}",
+					new Object[] { RFUtils.bytesToHex(event.tid), RFUtils.bytesToHex(epc), event.antennaID + 1 });
+
+		if (listener != null) {
+			try {
+				listener.tagCommissioned((short) (event.antennaID + 1), serial, epc, event.tid);
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Commissioning listener failed", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package havis.device.rf.nur;
+
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+/**
+ * Bit trie over the EPCs of an inventory round used to find the shortest EPC
+ * prefix which identifies a tag uniquely among the tags of the round. A
+ * shorter prefix shortens the select command preceding each access operation.
+ *
+ * <p>
+ * If another EPC of the round is a prefix of the EPC, the memory following the
+ * shorter EPC is unknown and the complete EPC is used for singulation. The same
+ * applies to EPCs found more than once.
+ * </p>
+ */
+class NurEpcPrefixTrie {
+
+	private static class Node {
+		private final Node[] children = new Node[2];
+
+		/* number of EPCs passing through or ending at this node */
+		private int count;
+
+		/* number of EPCs ending at this node */
+		private int ends;
+	}
+
+	private final Node root = new Node();
+
+	/**
+	 * Creates an empty trie.
+	 */
+	NurEpcPrefixTrie() {
+	}
+
+	/**
+	 * Creates a trie containing the EPCs of all tags of an inventory round.
+	 *
+	 * @param storage
+	 *            the tags of the round
+	 */
+	NurEpcPrefixTrie(NurTagStorage storage) {
+		for (int i = 0; i < storage.size(); i++) {
+			NurTag tag = storage.get(i);
+			if (tag.getEpc() != null)
+				add(tag.getEpc());
+		}
+	}
+
+	/**
+	 * Adds an EPC to the trie.
+	 *
+	 * @param epc
+	 *            the EPC
+	 */
+	void add(byte[] epc) {
+		Node node = root;
+		node.count++;
+		for (int i = 0; i < epc.length * 8; i++) {
+			int bit = bit(epc, i);
+			if (node.children[bit] == null)
+				node.children[bit] = new Node();
+			node = node.children[bit];
+			node.count++;
+		}
+		node.ends++;
+	}
+
+	/**
+	 * Returns the number of leading EPC bits which identify a tag uniquely
+	 * among the EPCs of the trie.
+	 *
+	 * @param epc
+	 *            the EPC of the tag, which must have been added to the trie
+	 * @param minBits
+	 *            the minimum number of bits to return
+	 * @return the length of the unique prefix in bits or the length of the
+	 *         complete EPC if the EPC is ambiguous or unknown
+	 */
+	int getUniquePrefixBits(byte[] epc, int minBits) {
+		int bits = epc.length * 8;
+		Node node = root;
+		for (int i = 0; i < bits; i++) {
+			node = node.children[bit(epc, i)];
+			if (node == null || node.ends > 0 && i + 1 < bits)
+				return bits;
+			if (node.count == 1 && i + 1 >= minBits)
+				return i + 1;
+		}
+		return bits;
+	}
+
+	private static int bit(byte[] data, int index) {
+		return (data[index / 8] >> (7 - index % 8)) & 1;
+	}
+}
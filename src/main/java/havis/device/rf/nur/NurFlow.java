@@ -0,0 +1,68 @@
+package havis.device.rf.nur;
+
+/**
+ * Interfaces for demand-driven publish/subscribe of inventory results. The
+ * interfaces are equivalent to those of java.util.concurrent.Flow, which is
+ * not available on the Java version targeted by this bundle, and follow the
+ * same rules. An adapter to the JDK interfaces only needs to delegate.
+ */
+public final class NurFlow {
+
+	private NurFlow() {
+	}
+
+	/**
+	 * A producer of items received by subscribers on demand.
+	 *
+	 * @param <T>
+	 *            the item type
+	 */
+	public interface Publisher<T> {
+		/**
+		 * Adds a subscriber. The subscriber receives
+		 * {@link Subscriber#onSubscribe(Subscription)} first and items only as
+		 * requested through the subscription.
+		 *
+		 * @param subscriber
+		 *            the subscriber
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of items. The methods of a subscriber are never called
+	 * concurrently.
+	 *
+	 * @param <T>
+	 *            the item type
+	 */
+	public interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	/**
+	 * The link between a publisher and one of its subscribers.
+	 */
+	public interface Subscription {
+		/**
+		 * Adds demand for n more items.
+		 *
+		 * @param n
+		 *            the number of items, a value less than 1 results in an
+		 *            {@link IllegalArgumentException} signaled to the
+		 *            subscriber
+		 */
+		void request(long n);
+
+		/**
+		 * Stops receiving items. Items may still be received for a short time.
+		 */
+		void cancel();
+	}
+}
@@ -31,22 +31,13 @@ import havis.device.rf.nur.firmware.FirmwareUpdater;
 import havis.device.rf.tag.Filter;
 import havis.device.rf.tag.TagData;
 import havis.device.rf.tag.TagDataList;
-import havis.device.rf.tag.operation.CustomOperation;
-import havis.device.rf.tag.operation.KillOperation;
 import havis.device.rf.tag.operation.LockOperation;
 import havis.device.rf.tag.operation.LockOperation.Field;
 import havis.device.rf.tag.operation.LockOperation.Privilege;
-import havis.device.rf.tag.operation.ReadOperation;
 import havis.device.rf.tag.operation.RequestOperation;
 import havis.device.rf.tag.operation.TagOperation;
-import havis.device.rf.tag.operation.WriteOperation;
-import havis.device.rf.tag.result.CustomResult;
-import havis.device.rf.tag.result.KillResult;
-import havis.device.rf.tag.result.LockResult;
 import havis.device.rf.tag.result.OperationResult;
-import havis.device.rf.tag.result.ReadResult;
 import havis.device.rf.tag.result.ReadResult.Result;
-import havis.device.rf.tag.result.WriteResult;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -55,17 +46,20 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
-import com.nordicid.nativeserial.NativeSerialTransport;
-import com.nordicid.nativeserial.SerialPort;
 import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiTransport;
 import com.nordicid.nurapi.NurGPIOConfig;
 import com.nordicid.nurapi.NurInventoryExtended;
 import com.nordicid.nurapi.NurInventoryExtendedFilter;
@@ -89,12 +83,26 @@ public class NurHardwareManager implements HardwareManager {
 	private static final String NUR_VENDOR = "04e6";
 	private static final String NUR_PRODUCT = "0112";
 
+	private static final NurBaudrateNegotiator baudrateNegotiator = new NurBaudrateNegotiator();
+
 	private NurApiListenerImpl nurApiListener = new NurApiListenerImpl();
-	private NativeSerialTransport transport = null;
-	private SerialPort serialPort = null;
+	private NurApiTransport transport = null;
 	private NurApi nurApi = null;
 	private NurConfigurationHelper setup;
 	private List<Short> connectedAntennas = new ArrayList<>();
+	private String address;
+	private final NurTagStream tagStream = new NurTagStream(NurEnvironment.TAG_STREAM_CAPACITY);
+
+	/* the running locator and whether its hop events are to be disabled when stopped */
+	private NurTagLocator locator;
+	private boolean locatorHopEvents;
+
+	/* the running trigger mode and the GPIO configuration to restore when stopped */
+	private NurTriggerMode triggerMode;
+	private NurGPIOConfig[] previousGpioConfig;
+
+	/* the link profile applied for inventory, replaced by an applied benchmark result */
+	private NurLinkProfile inventoryProfile = NurLinkProfile.getInventoryProfile();
 
 	/**
 	 * Creates an instance of this class.
@@ -104,9 +112,43 @@ public class NurHardwareManager implements HardwareManager {
 		log.log(Level.FINE, "{0} instantiated.", this.getClass().getName());
 	}
 
+	/**
+	 * Creates an instance of this class for the module with a specific
+	 * address.
+	 * 
+	 * @param address
+	 *            the path of the serial device, an address of the form
+	 *            tcp://host[:port] for modules connected via network or null
+	 *            to use the configured default address
+	 */
+	public NurHardwareManager(String address) {
+		this();
+		this.address = address;
+	}
+
+	/**
+	 * Returns the address of the module, i.e. the path of the serial device or
+	 * the socket address.
+	 * 
+	 * @return the address of the module
+	 */
+	String getAddress() {
+		return this.address != null ? this.address : NurTransportFactory.getDefaultAddress();
+	}
+
+	/**
+	 * Returns the stream of all transponders reported by the execute method.
+	 * 
+	 * @return the tag stream
+	 */
+	public NurTagStream getTagStream() {
+		return this.tagStream;
+	}
+
 	/**
 	 * Creates an instance of the NUR API and opens a connection to the
-	 * underlying RFID hardware using the native serial transport. Additionally,
+	 * underlying RFID hardware using the native serial transport or the socket
+	 * transport depending on the module address. Additionally,
 	 * the module setup is loaded and with that the
 	 * {@link NurConfigurationHelper} is started. Once the connection is
 	 * established some detailed technical information on the RFID module is
@@ -122,12 +164,21 @@ public class NurHardwareManager implements HardwareManager {
 			return;
 		}
 		
-		createDevice();
+		String address = getAddress();
+		if (!NurTransportFactory.isSocketAddress(address))
+			createDevice(address);
 
-		log.finer("Establishing new connection to RFID hardware.");
+		log.log(Level.FINER, "Establishing new connection to RFID hardware at {0}.", address);
 
-		this.serialPort = new SerialPort(Environment.SERIAL_DEVICE_PATH, Environment.SERIAL_DEVICE_PATH, 0);
-		this.transport = new NativeSerialTransport(serialPort, Environment.SERIAL_DEVICE_BAUDRATE.getValue());
+		try {
+			if (NurEnvironment.BAUDRATE_NEGOTIATION && !NurTransportFactory.isSocketAddress(address))
+				this.transport = NurTransportFactory.createTransport(address,
+						baudrateNegotiator.negotiate(address, Environment.SERIAL_DEVICE_BAUDRATE));
+			else
+				this.transport = NurTransportFactory.createTransport(address);
+		} catch (IllegalArgumentException ex) {
+			throw new ConnectionException(ex);
+		}
 
 		this.nurApi = new NurApi(transport);
 		this.nurApi.setListener(this.nurApiListener);
@@ -158,26 +209,37 @@ public class NurHardwareManager implements HardwareManager {
 		log.exiting(this.getClass().getName(), "openConnection");
 	}
 
-	private static void createDevice() {
-		if (!new File(Environment.SERIAL_DEVICE_PATH).exists()) {
-			log.finer("Creating serial device at " + Environment.SERIAL_DEVICE_PATH);
+	private static void createDevice(String devicePath) {
+		if (!new File(devicePath).exists()) {
+			log.finer("Creating serial device at " + devicePath);
 
 			if (hasNurUsbDevice()) {
 				try {
-					String command = "mknod -m 600 " + Environment.SERIAL_DEVICE_PATH + " c 166 0";
+					String command = "mknod -m 600 " + devicePath + " c 166 " + getMinorNumber(devicePath);
 					Process process = Runtime.getRuntime().exec(command);
 					int exitCode;
 					if ((exitCode = process.waitFor()) != 0) {
-						log.log(Level.SEVERE, "Failed to create serial device at " + Environment.SERIAL_DEVICE_PATH + ": \"" + command
+						log.log(Level.SEVERE, "Failed to create serial device at " + devicePath + ": \"" + command
 								+ "\" failed with exit code " + exitCode);
 					}
 				} catch (IOException | InterruptedException e) {
-					log.log(Level.SEVERE, "Failed to create serial device at " + Environment.SERIAL_DEVICE_PATH, e);
+					log.log(Level.SEVERE, "Failed to create serial device at " + devicePath, e);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Returns the minor device number of an ACM device path, i.e. the trailing
+	 * number of the path (e.g. 1 for /dev/ttyACM1) or 0 if there is none.
+	 */
+	private static int getMinorNumber(String devicePath) {
+		int start = devicePath.length();
+		while (start > 0 && Character.isDigit(devicePath.charAt(start - 1)))
+			start--;
+		return start < devicePath.length() ? Integer.parseInt(devicePath.substring(start)) : 0;
+	}
+
 	private static boolean hasNurUsbDevice() {
 		File deviceRoot = new File("/sys/bus/usb/devices");
 		File[] devices = deviceRoot.listFiles(new FileFilter() {
@@ -235,6 +297,10 @@ public class NurHardwareManager implements HardwareManager {
 				if (this.nurApi.isConnected()) {
 					log.finer("Closing connection to RFID hardware.");
 
+					/* the module keeps the configured link settings */
+					if (this.setup != null)
+						applyLinkProfile(null);
+
 					this.nurApi.disconnect();
 					this.nurApiListener.waitForDisconnectedEvent();
 				}
@@ -250,7 +316,6 @@ public class NurHardwareManager implements HardwareManager {
 
 			this.nurApi = null;
 			this.transport = null;
-			this.serialPort = null;
 
 			log.finer("Connection to RFID hardware closed");
 		}
@@ -258,6 +323,407 @@ public class NurHardwareManager implements HardwareManager {
 		log.exiting(this.getClass().getName(), "closeConnection");
 	}
 
+	/**
+	 * Writes data to all transponders matching a set of {@link Filter}
+	 * instances and verifies the written data by a single inventory round for
+	 * all transponders. Only transponders with mismatching data are written
+	 * again.
+	 * 
+	 * @param antennas
+	 *            a {@link List} of antenna IDs to be used, the single value 0
+	 *            implies all antennas.
+	 * @param filters
+	 *            a {@link List} of {@link Filter} to limit the transponders
+	 *            written, can be empty (but not null).
+	 * @param encoding
+	 *            the {@link NurBatchEncoding} defining the data written
+	 * @return a {@link TagDataList} instance containing a write result for
+	 *         each transponder written
+	 * @throws ImplementationException
+	 *             if applying the antenna selection fails
+	 */
+	public TagDataList encode(List<Short> antennas, final List<Filter> filters, NurBatchEncoding encoding) throws ImplementationException {
+		if (log.isLoggable(Level.FINER))
+			log.entering(this.getClass().getName(), "encode",
+					new Object[] { RFUtils.serializeList(antennas, Short.class), RFUtils.serializeList(filters, Filter.class), encoding });
+
+		TagDataList result = new TagDataList();
+
+		if (this.setup.getRegion() == Region.RegionUnspecified) {
+			log.finer("Module region is set to 'Unspecified'. Aborting encoding.");
+			return result;
+		}
+
+		antennas = getEffectiveAntennaList(antennas);
+		if (antennas.size() == 0 || this.setup.applyAntennaSelection(antennas) == 0) {
+			log.finer("No active antenna selected. Aborting encoding.");
+			return result;
+		}
+
+		NurBatchEncoder encoder = new NurBatchEncoder(new NurTagProcessor(this.nurApi), encoding) {
+			@Override
+			NurTagStorage inventory(int irBank, int irAddr, int irWords) throws Exception {
+				return NurHardwareManager.this.inventory(filters, irBank, irAddr, irWords);
+			}
+		};
+
+		try {
+			encoder.encode(result.getEntryList());
+		} catch (TimeoutException | ArrayIndexOutOfBoundsException | IOException ex) {
+			log.log(Level.FINE, "Inventory failed during encoding: {0}", ex);
+		} catch (Exception e) {
+			log.log(Level.SEVERE, "Failed to execute encoding", e);
+		}
+
+		this.tagStream.publish(result.getEntryList());
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(this.getClass().getName(), "encode", RFUtils.serializeList(result.getEntryList(), TagData.class));
+
+		return result;
+	}
+
+	/**
+	 * Runs a {@link NurBenchmark} against the current transponder population.
+	 * Afterwards either the recommended combination is applied or the
+	 * previous singulation and link settings are restored. Applied link
+	 * settings replace the inventory profile of this instance, they are not
+	 * persisted. The report is stored to the file given by
+	 * <b>havis.device.rf.nur.benchmarkReportFile</b>.
+	 * 
+	 * @param antennas
+	 *            a {@link List} of antenna IDs to be used, the single value 0
+	 *            implies all antennas.
+	 * @param benchmark
+	 *            the {@link NurBenchmark} defining the combinations to run
+	 * @return the report or null if no antenna is active
+	 * @throws ImplementationException
+	 *             if applying the settings or an inventory fails
+	 */
+	public NurBenchmark.Report benchmark(List<Short> antennas, NurBenchmark benchmark) throws ImplementationException {
+		log.entering(this.getClass().getName(), "benchmark", benchmark);
+
+		antennas = getEffectiveAntennaList(antennas);
+		if (this.setup.getRegion() == Region.RegionUnspecified || antennas.size() == 0 || this.setup.applyAntennaSelection(antennas) == 0) {
+			log.finer("No active antenna selected. Aborting benchmark.");
+			return null;
+		}
+
+		final SingulationControl previous = getSingulationControl();
+		NurBenchmark.Report report;
+		try {
+			report = benchmark.run(new NurBenchmark.Target() {
+				@Override
+				public void apply(NurBenchmark.Candidate candidate) throws Exception {
+					setup.applyLinkProfile(NurLinkProfile.create(candidate.getLinkFrequency(), candidate.getMiller()));
+
+					SingulationControl singulation = new SingulationControl();
+					singulation.setSession(candidate.getSession());
+					singulation.setQValue(candidate.getQ());
+					singulation.setRounds(candidate.getRounds());
+					singulation.setTransitTime(previous.getTransitTime());
+					setup.setSingulationControl(singulation);
+
+					/* transponders found by the previous candidate respond again */
+					nurApi.resetToTarget(candidate.getSession(), true);
+				}
+
+				@Override
+				public Map<String, Integer> inventory() throws Exception {
+					NurTagStorage storage = runInventory(Collections.<Filter> emptyList(), -1, 0, 0);
+					Map<String, Integer> tags = new HashMap<>();
+					for (int i = 0; i < storage.size(); i++)
+						tags.put(storage.get(i).getEpcString(), storage.get(i).getRssi());
+					return tags;
+				}
+			});
+		} catch (ImplementationException e) {
+			this.setup.setSingulationControl(previous);
+			applyLinkProfile(this.inventoryProfile);
+			throw e;
+		} catch (Exception e) {
+			this.setup.setSingulationControl(previous);
+			applyLinkProfile(this.inventoryProfile);
+			throw new ImplementationException("Failed to run benchmark", e);
+		}
+
+		NurBenchmark.Candidate best = report.getBest() != null ? report.getBest().getCandidate() : null;
+		if (benchmark.isApply() && best != null) {
+			log.log(Level.INFO, "Applying benchmark result {0}", report.getBest());
+			SingulationControl singulation = new SingulationControl();
+			singulation.setSession(best.getSession());
+			singulation.setQValue(best.getQ());
+			singulation.setRounds(best.getRounds());
+			singulation.setTransitTime(previous.getTransitTime());
+			this.setup.setSingulationControl(singulation);
+
+			/* the link settings are applied by the inventory profile of this instance */
+			this.inventoryProfile = NurLinkProfile.create(best.getLinkFrequency(), best.getMiller());
+		} else
+			this.setup.setSingulationControl(previous);
+
+		/* the link settings of the last candidate are not kept */
+		applyLinkProfile(this.inventoryProfile);
+
+		try {
+			report.store(new File(NurEnvironment.BENCHMARK_REPORT_FILE));
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Failed to store benchmark report to " + NurEnvironment.BENCHMARK_REPORT_FILE, e);
+		}
+
+		log.exiting(this.getClass().getName(), "benchmark", report.getBest());
+		return report;
+	}
+
+	/**
+	 * Starts the bulk commissioning of tags using the EPC enumeration of the
+	 * module. The module writes the EPCs autonomously until
+	 * {@link #stopEpcCommissioning()} is called, reporting each tag to the
+	 * listener of the commissioning.
+	 * 
+	 * @param commissioning
+	 *            the commissioning
+	 * @throws ImplementationException
+	 *             if the EPC enumeration could not be started
+	 */
+	public synchronized void startEpcCommissioning(NurEpcCommissioning commissioning) throws ImplementationException {
+		if (log.isLoggable(Level.FINER))
+			log.entering(this.getClass().getName(), "startEpcCommissioning", commissioning);
+
+		this.nurApiListener.setEpcCommissioning(commissioning);
+		try {
+			this.nurApi.startEpcEnumeration(commissioning.createParameters());
+		} catch (Exception e) {
+			this.nurApiListener.setEpcCommissioning(null);
+			throw new ImplementationException("Failed to start EPC commissioning.", e);
+		}
+
+		log.exiting(this.getClass().getName(), "startEpcCommissioning");
+	}
+
+	/**
+	 * Stops the bulk commissioning of tags started by
+	 * {@link #startEpcCommissioning(NurEpcCommissioning)}.
+	 * 
+	 * @throws ImplementationException
+	 *             if the EPC enumeration could not be stopped
+	 */
+	public synchronized void stopEpcCommissioning() throws ImplementationException {
+		log.entering(this.getClass().getName(), "stopEpcCommissioning");
+
+		try {
+			this.nurApi.stopContinuous();
+		} catch (Exception e) {
+			throw new ImplementationException("Failed to stop EPC commissioning.", e);
+		} finally {
+			this.nurApiListener.setEpcCommissioning(null);
+		}
+
+		log.exiting(this.getClass().getName(), "stopEpcCommissioning");
+	}
+
+	/**
+	 * Starts locating a single transponder using the continuous trace tag mode
+	 * of the module, which reports the transponder at the highest rate the
+	 * module supports until {@link #stopLocating()} is called. The samples are
+	 * passed to the given locator.
+	 * 
+	 * @param antennas
+	 *            a {@link List} of antenna IDs to be used, the single value 0
+	 *            implies all antennas.
+	 * @param locator
+	 *            the {@link NurTagLocator} identifying the transponder and
+	 *            receiving the samples
+	 * @throws ImplementationException
+	 *             if no antenna is active or the trace could not be started
+	 */
+	public synchronized void startLocating(List<Short> antennas, NurTagLocator locator) throws ImplementationException {
+		if (log.isLoggable(Level.FINER))
+			log.entering(this.getClass().getName(), "startLocating", new Object[] { RFUtils.serializeList(antennas, Short.class), locator });
+
+		if (this.locator != null)
+			stopLocating();
+
+		antennas = getEffectiveAntennaList(antennas);
+		if (antennas.size() == 0 || this.setup.applyAntennaSelection(antennas) == 0)
+			throw new ImplementationException("No active antenna selected.");
+
+		applyLinkProfile(this.inventoryProfile);
+
+		/* without hop events the channel of the samples is unknown */
+		try {
+			this.locatorHopEvents = this.setup.setHopEvents(true);
+		} catch (ImplementationException e) {
+			log.log(Level.FINE, "Failed to enable frequency hop events: {0}", e);
+		}
+
+		this.nurApiListener.setTagLocator(locator);
+		try {
+			/* the EPC is not reported to shorten the response of the tag */
+			this.nurApi.traceTag(locator.getBank(), locator.getBitAddress(), locator.getMask().length * 8, locator.getMask(),
+					NurApi.TRACETAG_START_CONTINUOUS | NurApi.TRACETAG_NO_EPC);
+		} catch (Exception e) {
+			this.nurApiListener.setTagLocator(null);
+			throw new ImplementationException("Failed to start locating.", e);
+		}
+
+		this.locator = locator;
+		log.exiting(this.getClass().getName(), "startLocating");
+	}
+
+	/**
+	 * Stops locating started by
+	 * {@link #startLocating(List, NurTagLocator)}.
+	 * 
+	 * @throws ImplementationException
+	 *             if the trace could not be stopped
+	 */
+	public synchronized void stopLocating() throws ImplementationException {
+		log.entering(this.getClass().getName(), "stopLocating");
+
+		NurTagLocator locator = this.locator;
+		this.locator = null;
+		if (locator != null) {
+			try {
+				this.nurApi.traceTag(locator.getBank(), locator.getBitAddress(), locator.getMask().length * 8, locator.getMask(),
+						NurApi.TRACETAG_STOP_CONTINUOUS);
+			} catch (Exception e) {
+				throw new ImplementationException("Failed to stop locating.", e);
+			} finally {
+				this.nurApiListener.setTagLocator(null);
+				if (this.locatorHopEvents) {
+					try {
+						this.setup.setHopEvents(false);
+					} catch (ImplementationException e) {
+						log.log(Level.FINE, "Failed to disable frequency hop events: {0}", e);
+					}
+				}
+			}
+		}
+
+		log.exiting(this.getClass().getName(), "stopLocating");
+	}
+
+	/**
+	 * Starts reading transponders triggered by GPIO inputs of the module. The
+	 * inputs are configured as triggers on the module, so a trigger starts
+	 * the scan or inventory with the latency of the module only. The
+	 * transponders are delivered to the listener of the trigger mode until
+	 * {@link #stopTriggerMode()} is called.
+	 * 
+	 * @param antennas
+	 *            a {@link List} of antenna IDs to be used, the single value 0
+	 *            implies all antennas.
+	 * @param mode
+	 *            the {@link NurTriggerMode} defining the trigger inputs
+	 * @throws ParameterException
+	 *             if a GPIO of the trigger mode is not available
+	 * @throws ImplementationException
+	 *             if no antenna is active or the GPIO configuration fails
+	 */
+	public synchronized void startTriggerMode(List<Short> antennas, NurTriggerMode mode) throws ParameterException, ImplementationException {
+		log.entering(this.getClass().getName(), "startTriggerMode", mode);
+
+		if (this.triggerMode != null)
+			stopTriggerMode();
+
+		antennas = getEffectiveAntennaList(antennas);
+		if (antennas.size() == 0 || this.setup.applyAntennaSelection(antennas) == 0)
+			throw new ImplementationException("No active antenna selected.");
+
+		applyLinkProfile(this.inventoryProfile);
+
+		NurGPIOConfig[] previous;
+		NurGPIOConfig[] configs;
+		try {
+			previous = this.nurApi.getGPIOConfigure();
+		} catch (Exception e) {
+			throw new ImplementationException("Failed to get GPIO configuration.", e);
+		}
+		try {
+			configs = mode.configure(previous != null ? previous : new NurGPIOConfig[0]);
+		} catch (IllegalArgumentException e) {
+			throw new ParameterException(e.getMessage());
+		}
+
+		mode.setModule(new NurTriggerMode.Module() {
+			@Override
+			public void startInventory() throws Exception {
+				nurApi.clearIdBuffer(true);
+				nurApi.startInventoryStream();
+			}
+
+			@Override
+			public void stopInventory() throws Exception {
+				nurApi.stopInventoryStream();
+			}
+
+			@Override
+			public List<TagData> fetchTags() {
+				List<TagData> tags = new ArrayList<>();
+				NurTagStorage storage = nurApi.getStorage();
+				synchronized (storage) {
+					for (int i = 0; i < storage.size(); i++) {
+						NurTag tag = storage.get(i);
+						TagData tagData = new TagData();
+						tagData.setTagDataId(i);
+						tagData.setAntennaID((short) (tag.getAntennaId() + 1));
+						tagData.setChannel((short) tag.getChannel());
+						tagData.setRssi(tag.getRssi());
+						tagData.setPc((short) tag.getPC());
+						tagData.setEpc(tag.getEpc());
+						tagData.setResultList(new ArrayList<OperationResult>());
+						tags.add(tagData);
+					}
+					storage.clear();
+				}
+				return tags;
+			}
+		});
+
+		this.nurApiListener.setTriggerMode(mode);
+		try {
+			this.nurApi.setGPIOConfigure(configs);
+		} catch (Exception e) {
+			this.nurApiListener.setTriggerMode(null);
+			mode.stop();
+			throw new ImplementationException("Failed to configure GPIO triggers.", e);
+		}
+
+		this.triggerMode = mode;
+		this.previousGpioConfig = previous;
+		log.exiting(this.getClass().getName(), "startTriggerMode");
+	}
+
+	/**
+	 * Stops reading transponders started by
+	 * {@link #startTriggerMode(List, NurTriggerMode)} and restores the
+	 * previous GPIO configuration.
+	 * 
+	 * @throws ImplementationException
+	 *             if the GPIO configuration could not be restored
+	 */
+	public synchronized void stopTriggerMode() throws ImplementationException {
+		log.entering(this.getClass().getName(), "stopTriggerMode");
+
+		NurTriggerMode mode = this.triggerMode;
+		this.triggerMode = null;
+		if (mode != null) {
+			this.nurApiListener.setTriggerMode(null);
+			mode.stop();
+			try {
+				if (this.previousGpioConfig != null)
+					this.nurApi.setGPIOConfigure(this.previousGpioConfig);
+			} catch (Exception e) {
+				throw new ImplementationException("Failed to restore GPIO configuration.", e);
+			} finally {
+				this.previousGpioConfig = null;
+			}
+		}
+
+		log.exiting(this.getClass().getName(), "stopTriggerMode");
+	}
+
 	/**
 	 * Executes a set of {@link TagOperation} objects using a set of antennas on
 	 * all transponders matching a set of {@link Filter} instances. The results
@@ -341,9 +807,30 @@ public class NurHardwareManager implements HardwareManager {
 		if (Environment.OPTIMIZED_TID_BANK_READING)
 			opListInspResult = RFUtils.inspectOperationList(operations);
 
+		NurOperationPlan plan = NurOperationPlan.compile(operations, Environment.OPTIMIZED_TID_BANK_READING,
+				Environment.HANDLE_TRANSPONDER_EPC_CHANGE);
+
+		/* a tag singulated by its complete TID is accessed without inventory */
+		if (NurEnvironment.DIRECT_ACCESS && sing.getStrategy() == SingulationStrategy.TID && filters.size() == 1 && antennas.size() == 1
+				&& !operations.isEmpty()) {
+			if (plan.isWriting())
+				applyLinkProfile(NurLinkProfile.getAccessProfile());
+			TagData tagData = directAccess(antennas.get(0), tagProcessor, sing, plan, consumer);
+			if (tagData != null) {
+				result.getEntryList().add(tagData);
+				this.tagStream.publish(result.getEntryList());
+
+				if (log.isLoggable(Level.FINER))
+					log.exiting(this.getClass().getName(), "execute", RFUtils.serializeList(result.getEntryList(), TagData.class));
+
+				return result;
+			}
+			log.finer("No tag responded to direct access, falling back to inventory.");
+		}
+
 		NurTagStorage storage = null;
 		try {
-			storage = this.inventory(filters, sing, opListInspResult);			
+			storage = this.inventory(filters, sing, opListInspResult, plan.requiresTid());
 		} 
 		/* internal NUR API issues we cannot handle should result in empty storage (as if no tag has been found) */
 		catch (TimeoutException | ArrayIndexOutOfBoundsException | IOException ex) { 
@@ -358,26 +845,178 @@ public class NurHardwareManager implements HardwareManager {
 			return result;
 		}
 		
-		final byte[] em4325Tid = new byte[] { (byte)0xe2, (byte)0x80, (byte)0xb0, 0x40 };
+		/* the access profile is kept until the next inventory */
+		if (plan.isWriting())
+			applyLinkProfile(NurLinkProfile.getAccessProfile());
+
+		NurChipRegistry chipRegistry = NurChipRegistry.getInstance();
+		NurPowerPolicy power = operations.isEmpty() ? null : NurPowerPolicy.create(this.setup);
 		
-		boolean em4325InField = false;
-		for (int tagIndex = 0; tagIndex < storage.size(); tagIndex++) {
-			NurErrorMap.RFCError tagError = null;
-			NurTag tag = storage.get(tagIndex);
+		/* operations of a batch consumer are requested once for all tags */
+		boolean batched = consumer instanceof NurBatchConsumer && plan.getRequestIndex(0) >= 0;
+		List<NurOperationPlan.TagContext> contexts = new ArrayList<>();
+
+		/*
+		 * prefixes are only unique among the tags of the filtered round, so
+		 * tags outside of it or tags whose EPC is changed could be accessed as
+		 * well, operations changing the tags use the complete EPC
+		 */
+		NurEpcPrefixTrie epcTrie = null;
+		if (NurEnvironment.EPC_PREFIX_SINGULATION && sing.getStrategy() == SingulationStrategy.EPC && !operations.isEmpty() && filters.isEmpty()
+				&& plan.isReadOnly())
+			epcTrie = new NurEpcPrefixTrie(storage);
+
+		try {
+			/*
+			 * the inventoried state is reset once before the first tag
+			 * requiring it is accessed and once after the round
+			 */
+			boolean resetPending = false;
+			Set<NurOperationPlan.TagContext> resetContexts = new HashSet<>();
+			for (int tagIndex = 0; tagIndex < storage.size(); tagIndex++) {
+				NurErrorMap.RFCError tagError = null;
+				NurTag tag = storage.get(tagIndex);
 			
-			if (!em4325InField && tag.getIrData() != null && tag.getIrData().length >= 4) { // IR data contains at least 2 words
-				em4325InField = (tag.getIrData()[1] == em4325Tid[1] && tag.getIrData()[2] == em4325Tid[2] && tag.getIrData()[3] == em4325Tid[3]);
-				if (em4325InField)
-					log.log(Level.INFO, "EM4325 tag detected.");
-			}			
+				NurChipRegistry.Chip chip = chipRegistry.get(tag.getIrData());
+				boolean resetRequired = !operations.isEmpty() && chip != null && chip.hasQuirk(NurChipRegistry.QUIRK_RESET_INVENTORIED_STATE);
+				if (resetRequired)
+					log.log(Level.FINE, "{0} tag detected.", chip);
+			
+				TagData tagData = new TagData();
+				tagData.setTagDataId(tagIndex);
+				tagData.setAntennaID((short) (tag.getAntennaId() + 1));
+				tagData.setChannel((short) tag.getChannel());
+				tagData.setRssi(tag.getRssi());
+				tagData.setResultList(new ArrayList<OperationResult>());
+				result.getEntryList().add(tagData);
+
+				EpcBankData epcData = tagProcessor.readEpcBankData(sing, tag, false);
+				if (epcData.getResult() == Result.SUCCESS) {
+					tagData.setCrc(epcData.getCrc());
+					tagData.setPc(epcData.getPc());
+					tagData.setEpc(epcData.getEpc());
+					tagData.setXpc(epcData.getXpc());
+				} else {
+					tagData.setEpc(new byte[] {});
+					tagError = NurErrorMap.RFCError.NonSpecificTagError;
+				}
+
+				if (epcTrie != null)
+					sing = Singulation.getEPCInstance(tag.getEpc(), epcTrie.getUniquePrefixBits(tag.getEpc(), NurEnvironment.EPC_PREFIX_MIN_BITS));
+				else if (sing.getStrategy() == Singulation.SingulationStrategy.EPC)
+					sing = Singulation.getInstance(SingulationStrategy.EPC, tag);
+
+				NurOperationPlan.TagContext context = new NurOperationPlan.TagContext(tagProcessor, tagData, sing, tag, consumer, tagError);
+				context.power = power;
+				if (batched) {
+					contexts.add(context);
+					if (resetRequired)
+						resetContexts.add(context);
+					continue;
+				}
+
+				if (resetRequired && !resetPending) {
+					resetInventoriedState();
+					resetPending = true;
+				}
 			
-			TagData tagData = new TagData();
-			tagData.setTagDataId(tagIndex);
-			tagData.setAntennaID((short) (tag.getAntennaId() + 1));
-			tagData.setChannel((short) tag.getChannel());
-			tagData.setRssi(tag.getRssi());
-			tagData.setResultList(new ArrayList<OperationResult>());
-			result.getEntryList().add(tagData);
+				tagError = plan.run(context);
+			}
+
+			if (resetPending)
+				resetInventoriedState();
+
+			if (batched)
+				runBatched(plan, contexts, (NurBatchConsumer) consumer, resetContexts);
+		} finally {
+			/* the inventory of the next execution runs with the configured TX level again */
+			if (power != null)
+				power.restore();
+		}
+
+		this.tagStream.publish(result.getEntryList());
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(this.getClass().getName(), "execute", RFUtils.serializeList(result.getEntryList(), TagData.class));
+		
+		return result;
+	}
+
+	/**
+	 * Runs a plan containing request operations for all tags of an inventory
+	 * round. The steps up to a request operation are run for all tags, then
+	 * the operations of all tags are requested from the consumer at once and
+	 * performed in the order of the tags. The inventoried state is reset once
+	 * per phase if any of the given reset contexts is accessed.
+	 */
+	private void runBatched(NurOperationPlan plan, List<NurOperationPlan.TagContext> contexts, NurBatchConsumer consumer,
+			Set<NurOperationPlan.TagContext> resetContexts) throws ParameterException {
+		int from = 0;
+		while (true) {
+			int request = plan.getRequestIndex(from);
+			int to = request < 0 ? plan.getSteps().size() : request;
+			boolean resetPending = false;
+			for (NurOperationPlan.TagContext context : contexts) {
+				/* a phase without steps does not access the tags */
+				if (!resetPending && from < to && resetContexts.contains(context)) {
+					resetInventoriedState();
+					resetPending = true;
+				}
+				plan.run(context, from, to);
+			}
+			if (resetPending)
+				resetInventoriedState();
+
+			if (request < 0)
+				break;
+
+			List<NurOperationPlan.TagContext> requesting = new ArrayList<>();
+			List<TagData> tags = new ArrayList<>();
+			for (NurOperationPlan.TagContext context : contexts) {
+				if (context.tagError == null) {
+					requesting.add(context);
+					tags.add(context.tagData);
+				}
+			}
+
+			if (!tags.isEmpty()) {
+				log.log(Level.FINER, "Requesting operations of {0} tags from consumer: {1}", new Object[] { tags.size(), consumer });
+				List<List<TagOperation>> requested = consumer.getOperations(tags);
+				resetPending = false;
+				for (int i = 0; i < requesting.size(); i++) {
+					List<TagOperation> tagOperations = requested != null && i < requested.size() ? requested.get(i) : null;
+					if (!resetPending && resetContexts.contains(requesting.get(i))) {
+						resetInventoriedState();
+						resetPending = true;
+					}
+					plan.runRequested(requesting.get(i), request, tagOperations);
+				}
+				if (resetPending)
+					resetInventoriedState();
+			}
+			from = request + 1;
+		}
+	}
+
+	/**
+	 * Performs the operations on a tag singulated by its complete TID without
+	 * prior inventory.
+	 * 
+	 * @return the tag data or null if no tag responded
+	 */
+	private TagData directAccess(short antenna, NurTagProcessor tagProcessor, Singulation sing, NurOperationPlan plan, RFConsumer consumer)
+			throws ParameterException {
+		NurErrorMap.RFCError tagError = null;
+		NurTag tag = null;
+		TagData tagData = new TagData();
+		tagData.setTagDataId(0);
+		tagData.setAntennaID(antenna);
+		tagData.setResultList(new ArrayList<OperationResult>());
+
+		try {
+			tag = tagProcessor.accessDirectly(sing, antenna - 1);
+			if (tag == null)
+				return null;
 
 			EpcBankData epcData = tagProcessor.readEpcBankData(sing, tag, false);
 			if (epcData.getResult() == Result.SUCCESS) {
@@ -389,22 +1028,45 @@ public class NurHardwareManager implements HardwareManager {
 				tagData.setEpc(new byte[] {});
 				tagError = NurErrorMap.RFCError.NonSpecificTagError;
 			}
+		} catch (Exception e) {
+			log.log(Level.FINE, "Direct access failed: {0}", e);
+			tagData.setEpc(new byte[] {});
+			tagError = NurErrorMap.RFCError.NonSpecificTagError;
+		}
 
-			if (sing.getStrategy() == Singulation.SingulationStrategy.EPC)
-				sing = Singulation.getInstance(SingulationStrategy.EPC, tag);
+		NurChipRegistry.Chip chip = NurChipRegistry.getInstance().get(sing.getData());
+		boolean resetRequired = chip != null && chip.hasQuirk(NurChipRegistry.QUIRK_RESET_INVENTORIED_STATE);
 
-			if (em4325InField && !operations.isEmpty()) resetInventoriedState();
-			
-			for (TagOperation op : operations)
-				tagError = performOperation(op, tagProcessor, tagData, sing, tagError, tag, consumer);
-			
-			if (em4325InField && !operations.isEmpty()) resetInventoriedState();
+		if (resetRequired) resetInventoriedState();
+
+		NurOperationPlan.TagContext context = new NurOperationPlan.TagContext(tagProcessor, tagData, sing, tag, consumer, tagError);
+		context.power = NurPowerPolicy.create(this.setup);
+		try {
+			plan.run(context);
+		} finally {
+			if (context.power != null)
+				context.power.restore();
 		}
 
-		if (log.isLoggable(Level.FINER))
-			log.exiting(this.getClass().getName(), "execute", RFUtils.serializeList(result.getEntryList(), TagData.class));
-		
-		return result;
+		if (resetRequired) resetInventoriedState();
+
+		return tagData;
+	}
+
+	/**
+	 * Applies a link profile unless it is applied already. A failure is
+	 * logged and the current link settings are kept.
+	 */
+	private void applyLinkProfile(NurLinkProfile profile) {
+		try {
+			this.setup.applyLinkProfile(profile);
+		} catch (ImplementationException e) {
+			LogRecord logRec = new LogRecord(Level.FINE, "Failed to apply link profile: {0}");
+			logRec.setThrown(e);
+			logRec.setParameters(new Object[] { e });
+			logRec.setLoggerName(log.getName());
+			log.log(logRec);
+		}
 	}
 
 	private void resetInventoriedState() {
@@ -492,123 +1154,9 @@ public class NurHardwareManager implements HardwareManager {
 				RFUtils.serialize(op), tagProcessor, RFUtils.serialize(tagData), 
 				RFUtils.serialize(sing), tagError, nurTag, consumer });
 
-		if (op instanceof ReadOperation) {
-			ReadResult rRes = null;
-			ReadOperation rdOp = (ReadOperation) op;
-			if (tagError == null) {
-				rRes = rdOp.getLength() == 0 ? 
-						tagProcessor.readCompleteBank(sing, rdOp, tagData, nurTag, Environment.OPTIMIZED_TID_BANK_READING ? nurTag.getIrData() : null) : 
-						tagProcessor.read(sing, rdOp, Environment.OPTIMIZED_TID_BANK_READING ? nurTag.getIrData() : null);
-
-				if (rRes.getResult() != ReadResult.Result.SUCCESS)
-					tagError = NurErrorMap.RFCError.NonSpecificTagError;
-			} else {
-				rRes = new ReadResult();
-				rRes.setReadData(new byte[] {});
-				rRes.setOperationId(op.getOperationId());
-				rRes.setResult(NurErrorMap.rfcErrorToReadResult(tagError));
-			}
-
-			tagData.getResultList().add(rRes);
-		}
-
-		else if (op instanceof WriteOperation) {
-			WriteResult wRes = null;
-			WriteOperation wrOp = (WriteOperation) op;
-			if (tagError == null) {
-				wRes = tagProcessor.write(sing, wrOp);
-
-				if (wrOp.getBank() == RFUtils.BANK_EPC && Environment.HANDLE_TRANSPONDER_EPC_CHANGE) {
-					byte[] newEpc = sing.epcChanged(nurTag, wrOp);
-					if (log.isLoggable(Level.FINER))
-						log.log(Level.FINER, "Stored changed EPC '{0}' in tag object with former EPC '{1}'", 
-							new Object[] { RFUtils.bytesToHex(newEpc), nurTag.getEpcString() });
-				}
-
-				if (wRes.getResult() != WriteResult.Result.SUCCESS)
-					tagError = NurErrorMap.RFCError.NonSpecificTagError;
-
-			} else {
-				wRes = new WriteResult();
-				wRes.setOperationId(op.getOperationId());
-				wRes.setResult(NurErrorMap.rfcErrorToWriteResult(tagError));
-			}
-
-			tagData.getResultList().add(wRes);
-		}
-
-		else if (op instanceof LockOperation) {
-			LockResult lRes = null;
-			LockOperation lOp = (LockOperation) op;
-			if (tagError == null) {
-				lRes = tagProcessor.lock(sing, lOp);
-				if (lRes.getResult() != LockResult.Result.SUCCESS)
-					tagError = NurErrorMap.RFCError.NonSpecificTagError;
-			} else {
-				lRes = new LockResult();
-				lRes.setOperationId(op.getOperationId());
-				lRes.setResult(NurErrorMap.rfcErrorToLockResult(tagError));
-			}
-
-			tagData.getResultList().add(lRes);
-		}
-
-		else if (op instanceof KillOperation) {
-			KillResult kRes = null;
-			KillOperation kOp = (KillOperation) op;
-			if (tagError == null) {
-				kRes = tagProcessor.kill(sing, kOp);
-				if (kRes.getResult() != KillResult.Result.SUCCESS)
-					tagError = NurErrorMap.RFCError.NonSpecificTagError;
-			} else {
-				kRes = new KillResult();
-				kRes.setOperationId(op.getOperationId());
-				kRes.setResult(NurErrorMap.rfcErrorToKillResult(tagError));
-			}
-
-			tagData.getResultList().add(kRes);
-			
-		} else if (op instanceof CustomOperation) {
-			CustomResult cRes = null;
-			CustomOperation cOp = (CustomOperation) op;
-			if (tagError == null) {
-				cRes = tagProcessor.custom(nurTag, sing, cOp);
-				if (cRes.getResult() != CustomResult.Result.SUCCESS)
-					tagError = NurErrorMap.RFCError.NonSpecificTagError;
-			} else {
-				cRes = new CustomResult();
-				cRes.setOperationId(op.getOperationId());
-				cRes.setResult(NurErrorMap.rfcErrorToCustomResult(tagError));
-			}
-			tagData.getResultList().add(cRes);
-		} else if (op instanceof RequestOperation && consumer != null) {
-			log.log(Level.FINER, "Request operation received, reqesting additional ops from consumer: {0} ", consumer);
-
-			/*
-			 * get additional operations from consumer only if not error
-			 * occurred so far, otherwise create a new empty list.
-			 */
-			List<TagOperation> additionalOps = tagError == null ? consumer.getOperations(tagData) : new ArrayList<TagOperation>();
-
-			if (log.isLoggable(Level.FINER)) {
-				log.log(Level.FINER, "Additional ops from consumer received: {0} ", RFUtils.serializeList(additionalOps, TagOperation.class));
-
-				if (tagData.getResultList().size() > 0) {
-					OperationResult opRes = tagData.getResultList().get(0);
-					if (opRes instanceof ReadResult) {
-						ReadResult rdRes = (ReadResult) tagData.getResultList().get(0);
-						if (log.isLoggable(Level.FINER)) 
-							log.log(Level.FINER, "Read result data used: {0} ", RFUtils.bytesToHex(rdRes.getReadData()));
-					} else
-						log.log(Level.FINER, "Operation result in TagData object is no instance of ReadResult but {0}.", opRes.getClass());
-				} else
-					log.finer("TagData object has empty result list.");
-			}
-
-			for (TagOperation additionalOp : additionalOps)
-				// to avoid recursive request ops, we pass null as consumer
-				tagError = performOperation(additionalOp, tagProcessor, tagData, sing, tagError, nurTag, null);
-		}
+		NurOperationPlan plan = NurOperationPlan.compile(Collections.singletonList(op), Environment.OPTIMIZED_TID_BANK_READING,
+				Environment.HANDLE_TRANSPONDER_EPC_CHANGE);
+		tagError = plan.run(new NurOperationPlan.TagContext(tagProcessor, tagData, sing, nurTag, consumer, tagError));
 
 		if (log.isLoggable(Level.FINER))
 			log.exiting( this.getClass().getName(), "performOperation", new Object [] { tagError, RFUtils.serialize(tagData) });
@@ -638,22 +1186,89 @@ public class NurHardwareManager implements HardwareManager {
 	 *             if something goes wrong when calling methods of the NUR API.
 	 */
 	NurTagStorage inventory(List<Filter> filters, Singulation sing, OperationListInspectionResult opListInspResult) throws Exception {
-		long now = new Date().getTime();
-		
+		return inventory(filters, sing, opListInspResult, false);
+	}
+
+	/**
+	 * Performs an inventory reading the TID bank of each tag if the TID is
+	 * used for singulation, read by the operations or required to identify
+	 * the transponder model.
+	 * 
+	 * @param filters
+	 *            a list of {@link Filter} instances.
+	 * @param sing
+	 *            a {@link Singulation} instance.
+	 * @param opListInspResult
+	 *            the inspection result of the operation list or null
+	 * @param tidRequired
+	 *            whether the TID is required to identify the transponder
+	 *            model, e.g. to look up the size of the user bank, the block
+	 *            write size or quirks
+	 * @return a NurTagStorage instance containing the tags found during
+	 *         inventory.
+	 * @throws Exception
+	 *             if something goes wrong when calling methods of the NUR API.
+	 */
+	NurTagStorage inventory(List<Filter> filters, Singulation sing, OperationListInspectionResult opListInspResult, boolean tidRequired)
+			throws Exception {
 		if (log.isLoggable(Level.FINER))
-			log.entering(this.getClass().getName(), "inventory", new Object[] { RFUtils.serializeList(filters, Filter.class), RFUtils.serialize(sing), opListInspResult } );			
+			log.entering(this.getClass().getName(), "inventory", new Object[] { RFUtils.serializeList(filters, Filter.class), RFUtils.serialize(sing),
+					opListInspResult, tidRequired });
 
-		this.nurApi.clearIdBuffer(true);		
+		NurTagStorage storage;
 		
 		/* if singulation strategy is TID, read secure amount of words from TID bank during inventory */
 		if (sing.getStrategy() == Singulation.SingulationStrategy.TID)			
-			this.nurApi.setIRConfig(NurApi.IRTYPE_EPCDATA, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
+			storage = inventory(filters, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
 		
 		/* else if operation list contains a read TID operation, read secure amount of words from TID bank */
 		else if (opListInspResult != null && (opListInspResult.getFlags() & RFUtils.OperationListInspectionResult.LIST_INSPECTION_TID_READ_OPERATION) != 0)			
-			this.nurApi.setIRConfig(NurApi.IRTYPE_EPCDATA, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
+			storage = inventory(filters, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
+
+		/* else if the transponder model has to be known, read the TID bank as well */
+		else if (tidRequired)
+			storage = inventory(filters, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
 
 		/* disable IRConfig */
+		else storage = inventory(filters, -1, 0, 0);
+
+		log.exiting(this.getClass().getName(), "inventory", storage);
+		return storage;
+	}
+
+	/**
+	 * Performs an inventory optionally reading memory of each tag found.
+	 * 
+	 * @param filters
+	 *            a list of {@link Filter} instances.
+	 * @param irBank
+	 *            the memory bank read during inventory or -1 to disable
+	 *            inventory read
+	 * @param irAddr
+	 *            the word address read during inventory
+	 * @param irWords
+	 *            the number of words read during inventory
+	 * @return a NurTagStorage instance containing the tags found during
+	 *         inventory.
+	 * 
+	 * @throws Exception
+	 *             if something goes wrong when calling methods of the NUR API.
+	 */
+	NurTagStorage inventory(List<Filter> filters, int irBank, int irAddr, int irWords) throws Exception {
+		applyLinkProfile(this.inventoryProfile);
+		return runInventory(filters, irBank, irAddr, irWords);
+	}
+
+	/**
+	 * Performs an inventory with the link settings currently applied.
+	 */
+	private NurTagStorage runInventory(List<Filter> filters, int irBank, int irAddr, int irWords) throws Exception {
+		long now = new Date().getTime();
+
+		this.nurApi.clearIdBuffer(true);		
+		
+		if (irBank >= 0)
+			this.nurApi.setIRConfig(NurApi.IRTYPE_EPCDATA, irBank, irAddr, irWords);
 		else this.nurApi.setIRState(false);
 		
 		NurInventoryExtended nie = new NurInventoryExtended();		
@@ -673,7 +1288,6 @@ public class NurHardwareManager implements HardwareManager {
 		if (log.isLoggable(Level.FINE))			 
 			log.log(Level.FINE, "Inventory cycle took {0} ms. Tags found: {1}.", new Object[] { (new Date().getTime() - now), inv.numTagsFound });										
 
-		log.exiting(this.getClass().getName(), "inventory", storage);
 		return storage;
 	}
 
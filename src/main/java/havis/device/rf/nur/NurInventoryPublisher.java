@@ -0,0 +1,273 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link NurFlow.Publisher} running continuous inventory rounds and
+ * publishing the reported transponders. Inventory is driven by the demand of
+ * the subscribers: a round is only started while there is at least one
+ * subscriber and every subscriber has outstanding demand and has received all
+ * tags of the previous round. If a subscriber lags, inventory pauses until it
+ * requests more tags, so at most the tags of one round are buffered per
+ * subscriber.
+ *
+ * <p>
+ * The hardware manager must be connected by the caller. Closing the publisher
+ * completes all subscriptions, cancelling the last subscription pauses
+ * inventory. A round in progress is always finished by the module, its tags
+ * are discarded for cancelled subscriptions.
+ * </p>
+ *
+ * <p>
+ * If an inventory round fails, the error terminates all current
+ * subscriptions, since their rounds cannot be continued, and undelivered tags
+ * are discarded. The publisher stays usable, new subscriptions start
+ * inventory again. All signals of a subscription, including the terminal
+ * ones, are delivered serially.
+ * </p>
+ */
+public class NurInventoryPublisher implements NurFlow.Publisher<TagData>, AutoCloseable {
+
+	private static final Logger log = Logger.getLogger(NurInventoryPublisher.class.getName());
+
+	/* terminal signal of a completed subscription */
+	private static final Object COMPLETE = new Object();
+
+	private final HardwareManager hardwareManager;
+	private final List<Short> antennas;
+	private final List<Filter> filters;
+	private final List<TagOperation> operations;
+
+	private final List<InventorySubscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final Object lock = new Object();
+	private Thread worker;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a publisher.
+	 *
+	 * @param hardwareManager
+	 *            the connected hardware manager
+	 * @param antennas
+	 *            the antennas of the inventory rounds
+	 * @param filters
+	 *            the filters of the inventory rounds
+	 * @param operations
+	 *            the operations to be executed on each transponder
+	 */
+	public NurInventoryPublisher(HardwareManager hardwareManager, List<Short> antennas, List<Filter> filters, List<TagOperation> operations) {
+		this.hardwareManager = hardwareManager;
+		this.antennas = antennas;
+		this.filters = filters;
+		this.operations = operations;
+	}
+
+	@Override
+	public void subscribe(NurFlow.Subscriber<? super TagData> subscriber) {
+		InventorySubscription subscription = new InventorySubscription(subscriber);
+		synchronized (lock) {
+			if (closed) {
+				subscriber.onSubscribe(subscription);
+				subscriber.onComplete();
+				return;
+			}
+			subscriptions.add(subscription);
+			if (worker == null) {
+				worker = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, "NurInventoryPublisher");
+				worker.setDaemon(true);
+				worker.start();
+			}
+		}
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * Stops inventory and completes all subscriptions.
+	 */
+	@Override
+	public void close() {
+		Thread worker;
+		synchronized (lock) {
+			closed = true;
+			worker = this.worker;
+			lock.notifyAll();
+		}
+		if (worker != null && worker != Thread.currentThread()) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (InventorySubscription subscription : subscriptions)
+			subscription.complete();
+		subscriptions.clear();
+	}
+
+	/**
+	 * Returns whether a round may be started, i.e. if all subscribers have
+	 * demand and no pending tags.
+	 */
+	private boolean isReady() {
+		if (subscriptions.isEmpty())
+			return false;
+		for (InventorySubscription subscription : subscriptions)
+			if (subscription.demand.get() == 0 || !subscription.pending.isEmpty())
+				return false;
+		return true;
+	}
+
+	private void signal() {
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	private void work() {
+		while (true) {
+			synchronized (lock) {
+				while (!closed && !isReady()) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed)
+					return;
+			}
+
+			TagDataList result;
+			try {
+				result = hardwareManager.execute(antennas, filters, operations, null);
+			} catch (Exception e) {
+				log.log(Level.FINE, "Inventory failed: {0}", e);
+				for (InventorySubscription subscription : subscriptions)
+					subscription.fail(e);
+				subscriptions.clear();
+				continue;
+			}
+
+			for (InventorySubscription subscription : subscriptions) {
+				subscription.pending.addAll(result.getEntryList());
+				subscription.drain();
+			}
+		}
+	}
+
+	private class InventorySubscription implements NurFlow.Subscription {
+		private final NurFlow.Subscriber<? super TagData> subscriber;
+		private final ConcurrentLinkedQueue<TagData> pending = new ConcurrentLinkedQueue<>();
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger work = new AtomicInteger();
+		/* the error to be signalled on termination or COMPLETE */
+		private final AtomicReference<Object> terminal = new AtomicReference<>();
+		private volatile boolean cancelled;
+
+		InventorySubscription(NurFlow.Subscriber<? super TagData> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (cancelled)
+				return;
+			if (n <= 0) {
+				fail(new IllegalArgumentException("Non-positive request " + n));
+				return;
+			}
+
+			long current;
+			do {
+				current = demand.get();
+				if (current == Long.MAX_VALUE)
+					break;
+			} while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+
+			drain();
+			signal();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			pending.clear();
+			signal();
+		}
+
+		/**
+		 * Delivers pending tags up to the demand and the terminal signal.
+		 * Calls from several threads are serialized, the thread entering first
+		 * delivers on behalf of all.
+		 */
+		void drain() {
+			if (work.getAndIncrement() != 0)
+				return;
+			do {
+				while (!cancelled && terminal.get() == null && demand.get() > 0 && !pending.isEmpty()) {
+					TagData tagData = pending.poll();
+					if (demand.get() != Long.MAX_VALUE)
+						demand.decrementAndGet();
+					try {
+						subscriber.onNext(tagData);
+					} catch (RuntimeException e) {
+						log.log(Level.WARNING, "Subscriber failed to handle tag", e);
+						cancel();
+					}
+				}
+
+				Object signal = terminal.get();
+				if (signal != null && !cancelled) {
+					cancelled = true;
+					pending.clear();
+					if (signal instanceof Throwable)
+						subscriber.onError((Throwable) signal);
+					else
+						subscriber.onComplete();
+				}
+			} while (work.decrementAndGet() != 0);
+
+			if (pending.isEmpty())
+				signal();
+		}
+
+		void fail(Throwable throwable) {
+			terminate(throwable);
+		}
+
+		void complete() {
+			terminate(COMPLETE);
+		}
+
+		/**
+		 * Requests the terminal signal, which is delivered by the drain loop
+		 * after a tag currently delivered by another thread.
+		 */
+		private void terminate(Object signal) {
+			if (cancelled || !terminal.compareAndSet(null, signal))
+				return;
+			subscriptions.remove(this);
+			pending.clear();
+			drain();
+		}
+	}
+}
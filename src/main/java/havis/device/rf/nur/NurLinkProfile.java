@@ -0,0 +1,116 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.nur.Constants.LinkFrequency;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurApi;
+
+/**
+ * Link settings applied to the module for a phase of an execution instead of
+ * the configured ones, e.g. a fast profile for inventory and a robust profile
+ * for access operations writing to the transponders. Settings not specified
+ * by a profile keep their configured value.
+ */
+class NurLinkProfile {
+
+	private static final Logger log = Logger.getLogger(NurLinkProfile.class.getName());
+
+	/**
+	 * the NUR API link frequency constant or -1 for the configured one
+	 */
+	final int linkFreq;
+
+	/**
+	 * the NUR API RX decoding constant or -1 for the configured one
+	 */
+	final int rxDecoding;
+
+	NurLinkProfile(int linkFreq, int rxDecoding) {
+		this.linkFreq = linkFreq;
+		this.rxDecoding = rxDecoding;
+	}
+
+	/**
+	 * @return the profile applied for inventory or null to use the configured
+	 *         link settings
+	 */
+	static NurLinkProfile getInventoryProfile() {
+		return create(NurEnvironment.INVENTORY_LINK_FREQUENCY, NurEnvironment.INVENTORY_MILLER);
+	}
+
+	/**
+	 * @return the profile applied for access operations writing to the
+	 *         transponders or null to use the configured link settings
+	 */
+	static NurLinkProfile getAccessProfile() {
+		return create(NurEnvironment.ACCESS_LINK_FREQUENCY, NurEnvironment.ACCESS_MILLER);
+	}
+
+	/**
+	 * Creates a profile.
+	 *
+	 * @param kHz
+	 *            the link frequency in kHz or 0 for the configured one
+	 * @param miller
+	 *            the number of subcarrier cycles per symbol, i.e. 1 for FM0, 2,
+	 *            4 or 8 for Miller encoding, or 0 for the configured one
+	 * @return the profile or null if neither setting is specified or a setting
+	 *         is invalid
+	 */
+	static NurLinkProfile create(int kHz, int miller) {
+		if (kHz <= 0 && miller <= 0)
+			return null;
+
+		int linkFreq = -1;
+		if (kHz > 0) {
+			try {
+				linkFreq = LinkFrequency.fromKHz((short) kHz).nurApiConstant;
+			} catch (IllegalArgumentException e) {
+				log.log(Level.WARNING, "Ignoring link profile with invalid link frequency {0} kHz", kHz);
+				return null;
+			}
+		}
+
+		int rxDecoding = -1;
+		switch (miller) {
+		case 0:
+			break;
+		case 1:
+			rxDecoding = NurApi.RXDECODING_FM0;
+			break;
+		case 2:
+			rxDecoding = NurApi.RXDECODING_M2;
+			break;
+		case 4:
+			rxDecoding = NurApi.RXDECODING_M4;
+			break;
+		case 8:
+			rxDecoding = NurApi.RXDECODING_M8;
+			break;
+		default:
+			log.log(Level.WARNING, "Ignoring link profile with invalid Miller encoding {0}", miller);
+			return null;
+		}
+		return new NurLinkProfile(linkFreq, rxDecoding);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof NurLinkProfile))
+			return false;
+		NurLinkProfile other = (NurLinkProfile) obj;
+		return linkFreq == other.linkFreq && rxDecoding == other.rxDecoding;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * linkFreq + rxDecoding;
+	}
+
+	@Override
+	public String toString() {
+		return "NurLinkProfile [linkFreq=" + linkFreq + ", rxDecoding=" + rxDecoding + "]";
+	}
+}
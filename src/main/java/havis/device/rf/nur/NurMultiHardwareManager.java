@@ -0,0 +1,663 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.Environment;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.AntennaProperties;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.nur.firmware.FirmwareUpdater;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.OperationResult;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link HardwareManager} implementation aggregating several NUR modules
+ * attached to one gateway. Each module is driven by its own
+ * {@link NurHardwareManager} instance. The antennas of all modules are mapped
+ * into one global antenna ID space in the order of the modules, i.e. if the
+ * first module has two antennas, antenna 1 of the second module has the
+ * global ID 3. Inventories are run concurrently on all modules involved in an
+ * execute and the results are merged into a single {@link TagDataList}.
+ *
+ * <p>
+ * The serial devices of the modules are configured by the property
+ * <b>havis.device.rf.nur.serialDevicePaths</b> as comma separated list.
+ * Modules connected via network are given as <b>tcp://host[:port]</b>.
+ * </p>
+ */
+public class NurMultiHardwareManager implements HardwareManager {
+
+	private static final Logger log = Logger.getLogger(NurMultiHardwareManager.class.getName());
+
+	private final List<HardwareManager> modules;
+
+	/* global antenna ID of antenna 1 of each module minus 1 */
+	private int[] antennaOffsets;
+
+	private ExecutorService executor;
+
+	private final NurTagStream tagStream = new NurTagStream(NurEnvironment.TAG_STREAM_CAPACITY);
+
+	/**
+	 * Creates an instance of this class using the serial device paths of the
+	 * {@link NurEnvironment}.
+	 */
+	public NurMultiHardwareManager() {
+		this(createModules(NurEnvironment.SERIAL_DEVICE_PATHS));
+	}
+
+	/**
+	 * Creates an instance of this class aggregating the given modules.
+	 *
+	 * @param modules
+	 *            the hardware managers of the modules
+	 */
+	NurMultiHardwareManager(List<HardwareManager> modules) {
+		super();
+		this.modules = modules;
+		log.log(Level.FINE, "{0} instantiated with {1} module(s).", new Object[] { this.getClass().getName(), modules.size() });
+	}
+
+	private static List<HardwareManager> createModules(List<String> devicePaths) {
+		if (devicePaths == null || devicePaths.isEmpty())
+			devicePaths = Arrays.asList(NurTransportFactory.getDefaultAddress());
+
+		List<HardwareManager> modules = new ArrayList<>();
+		for (String devicePath : devicePaths)
+			modules.add(new NurHardwareManager(devicePath));
+		return modules;
+	}
+
+	/**
+	 * Returns the stream of all transponders reported by the execute method,
+	 * with global antenna IDs.
+	 *
+	 * @return the tag stream
+	 */
+	public NurTagStream getTagStream() {
+		return tagStream;
+	}
+
+	/**
+	 * Opens the connections to all modules and calculates the global antenna
+	 * mapping from the number of antennas each module supports. If opening one
+	 * of the connections fails, the connections opened so far are closed
+	 * again.
+	 */
+	@Override
+	public void openConnection() throws ConnectionException, ImplementationException {
+		log.entering(this.getClass().getName(), "openConnection");
+
+		int[] offsets = new int[modules.size()];
+		int offset = 0;
+		for (int i = 0; i < modules.size(); i++) {
+			try {
+				modules.get(i).openConnection();
+				offsets[i] = offset;
+				offset += modules.get(i).getMaxAntennas();
+			} catch (ConnectionException | ImplementationException e) {
+				for (int j = 0; j < i; j++) {
+					try {
+						modules.get(j).closeConnection();
+					} catch (ConnectionException ex) {
+						log.log(Level.FINE, "Failed to close connection of module {0}: {1}", new Object[] { j, ex });
+					}
+				}
+				throw e;
+			}
+		}
+		this.antennaOffsets = offsets;
+
+		if (this.executor == null)
+			this.executor = Executors.newFixedThreadPool(modules.size());
+
+		log.exiting(this.getClass().getName(), "openConnection");
+	}
+
+	@Override
+	public void closeConnection() throws ConnectionException {
+		log.entering(this.getClass().getName(), "closeConnection");
+
+		ConnectionException error = null;
+		for (HardwareManager module : modules) {
+			try {
+				module.closeConnection();
+			} catch (ConnectionException e) {
+				error = e;
+			}
+		}
+
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+		this.antennaOffsets = null;
+
+		if (error != null)
+			throw error;
+
+		log.exiting(this.getClass().getName(), "closeConnection");
+	}
+
+	/**
+	 * Executes the operations on all modules having at least one of the given
+	 * antennas concurrently. The antenna IDs of the results are mapped to the
+	 * global antenna ID space and transponders seen by more than one module are
+	 * reported only once, using the observation with the highest RSSI.
+	 * {@link RFConsumer} calls are serialized since the modules may request
+	 * operations concurrently.
+	 *
+	 * <p>
+	 * If the operations may access a transponder beyond reading, i.e. they
+	 * contain write, lock, kill, custom or request operations, the modules
+	 * run an inventory first. The operations are then
+	 * executed only by the module which observed a transponder with the
+	 * highest RSSI, singulating the transponder by its PC and EPC.
+	 * </p>
+	 */
+	@Override
+	public TagDataList execute(List<Short> antennas, List<Filter> filters, final List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+
+		if (log.isLoggable(Level.FINER))
+			log.entering(this.getClass().getName(), "execute", new Object[] { RFUtils.serializeList(antennas, Short.class),
+					RFUtils.serializeList(filters, Filter.class), RFUtils.serializeList(operations, TagOperation.class), consumer });
+
+		checkConnection();
+
+		final List<Filter> moduleFilters = filters;
+		final RFConsumer moduleConsumer = consumer != null ? new SynchronizedConsumer(consumer) : null;
+		Map<Integer, List<Short>> moduleAntennas = splitAntennas(antennas);
+
+		Map<Integer, Callable<TagDataList>> tasks = new LinkedHashMap<>();
+		if (!isAccessing(operations)) {
+			for (Map.Entry<Integer, List<Short>> entry : moduleAntennas.entrySet()) {
+				final HardwareManager module = modules.get(entry.getKey());
+				final List<Short> localAntennas = entry.getValue();
+				tasks.put(entry.getKey(), new Callable<TagDataList>() {
+					@Override
+					public TagDataList call() throws Exception {
+						return module.execute(localAntennas, moduleFilters, operations, moduleConsumer);
+					}
+				});
+			}
+		} else {
+			for (Map.Entry<Integer, List<Short>> entry : moduleAntennas.entrySet()) {
+				final HardwareManager module = modules.get(entry.getKey());
+				final List<Short> localAntennas = entry.getValue();
+				tasks.put(entry.getKey(), new Callable<TagDataList>() {
+					@Override
+					public TagDataList call() throws Exception {
+						return module.execute(localAntennas, moduleFilters, new ArrayList<TagOperation>(), null);
+					}
+				});
+			}
+
+			/* access the transponders with the module that won the deduplication only */
+			Map<Integer, List<TagData>> selected = select(run(tasks));
+			tasks.clear();
+			for (Map.Entry<Integer, List<TagData>> entry : selected.entrySet()) {
+				final HardwareManager module = modules.get(entry.getKey());
+				final List<TagData> tags = entry.getValue();
+				tasks.put(entry.getKey(), new Callable<TagDataList>() {
+					@Override
+					public TagDataList call() throws Exception {
+						TagDataList result = new TagDataList();
+						for (TagData tagData : tags)
+							result.getEntryList().add(access(module, tagData, moduleFilters, operations, moduleConsumer));
+						return result;
+					}
+				});
+			}
+		}
+
+		TagDataList result = merge(run(tasks));
+		tagStream.publish(result.getEntryList());
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(this.getClass().getName(), "execute", RFUtils.serializeList(result.getEntryList(), TagData.class));
+
+		return result;
+	}
+
+	/**
+	 * Returns whether operations may access transponders beyond reading, i.e.
+	 * contain other than read operations. Request operations are included
+	 * since the requested operations are not known in advance.
+	 */
+	private static boolean isAccessing(List<TagOperation> operations) {
+		for (TagOperation operation : operations)
+			if (!(operation instanceof ReadOperation))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Runs the tasks of several modules concurrently.
+	 *
+	 * @param tasks
+	 *            a map of module indices to the tasks
+	 * @return a map of module indices to the results of the tasks
+	 */
+	private Map<Integer, TagDataList> run(Map<Integer, Callable<TagDataList>> tasks) throws ImplementationException, ParameterException {
+		Map<Integer, Future<TagDataList>> futures = new LinkedHashMap<>();
+		for (Map.Entry<Integer, Callable<TagDataList>> entry : tasks.entrySet())
+			futures.put(entry.getKey(), executor.submit(entry.getValue()));
+
+		Map<Integer, TagDataList> results = new LinkedHashMap<>();
+		for (Map.Entry<Integer, Future<TagDataList>> entry : futures.entrySet())
+			results.put(entry.getKey(), await(entry.getValue()));
+		return results;
+	}
+
+	/**
+	 * Selects the module which observed each transponder with the highest
+	 * RSSI. Transponders without EPC cannot be singulated and are skipped.
+	 *
+	 * @param results
+	 *            a map of module indices to the inventory results of the
+	 *            module
+	 * @return a map of module indices to the transponders to be accessed by
+	 *         the module, with module local antenna IDs
+	 */
+	Map<Integer, List<TagData>> select(Map<Integer, TagDataList> results) {
+		Map<String, Integer> winners = new LinkedHashMap<>();
+		Map<String, TagData> unique = new HashMap<>();
+		for (Map.Entry<Integer, TagDataList> entry : results.entrySet()) {
+			for (TagData tagData : entry.getValue().getEntryList()) {
+				if (tagData.getEpc() == null || tagData.getEpc().length == 0)
+					continue;
+				String key = RFUtils.bytesToHex(tagData.getEpc());
+				TagData known = unique.get(key);
+				if (known == null || known.getRssi() < tagData.getRssi()) {
+					unique.put(key, tagData);
+					winners.put(key, entry.getKey());
+				}
+			}
+		}
+
+		Map<Integer, List<TagData>> selected = new LinkedHashMap<>();
+		for (Integer module : results.keySet()) {
+			List<TagData> tags = new ArrayList<>();
+			for (Map.Entry<String, Integer> entry : winners.entrySet())
+				if (entry.getValue().equals(module))
+					tags.add(unique.get(entry.getKey()));
+			if (!tags.isEmpty())
+				selected.put(module, tags);
+		}
+		return selected;
+	}
+
+	/**
+	 * Executes the operations on a single transponder, singulated by its PC
+	 * and EPC on the antenna it was observed with. If the transponder is not
+	 * found again, the inventory observation is reported without results.
+	 */
+	private static TagData access(HardwareManager module, TagData tagData, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+		byte[] epc = tagData.getEpc();
+		byte[] data = new byte[epc.length + 2];
+		data[0] = (byte) (tagData.getPc() >> 8);
+		data[1] = (byte) tagData.getPc();
+		System.arraycopy(epc, 0, data, 2, epc.length);
+		byte[] mask = new byte[data.length];
+		Arrays.fill(mask, (byte) 0xFF);
+
+		Filter filter = new Filter();
+		filter.setBank((short) 1);
+		filter.setBitOffset((short) 16);
+		filter.setBitLength((short) (data.length * 8));
+		filter.setData(data);
+		filter.setMask(mask);
+		filter.setMatch(true);
+
+		List<Filter> tagFilters = new ArrayList<>(filters);
+		tagFilters.add(filter);
+
+		for (TagData accessed : module.execute(Arrays.asList(tagData.getAntennaID()), tagFilters, operations, consumer).getEntryList())
+			if (Arrays.equals(epc, accessed.getEpc()))
+				return accessed;
+
+		log.log(Level.FINE, "Transponder {0} not found again for access.", RFUtils.bytesToHex(epc));
+		TagData result = copy(tagData);
+		result.setResultList(new ArrayList<OperationResult>());
+		return result;
+	}
+
+	private TagDataList await(Future<TagDataList> future) throws ImplementationException, ParameterException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImplementationException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ImplementationException)
+				throw (ImplementationException) e.getCause();
+			if (e.getCause() instanceof ParameterException)
+				throw (ParameterException) e.getCause();
+			throw new ImplementationException(e.getCause());
+		}
+	}
+
+	/**
+	 * Splits a list of global antenna IDs into lists of module local antenna
+	 * IDs. The antenna ID 0 is passed to all modules.
+	 *
+	 * @param antennas
+	 *            a list of global antenna IDs
+	 * @return a map of module indices to module local antenna IDs, containing
+	 *         only the modules to be used
+	 */
+	Map<Integer, List<Short>> splitAntennas(List<Short> antennas) {
+		Map<Integer, List<Short>> result = new LinkedHashMap<>();
+
+		if (antennas.contains((short) 0)) {
+			for (int i = 0; i < modules.size(); i++)
+				result.put(i, Arrays.asList((short) 0));
+			return result;
+		}
+
+		for (Short antenna : antennas) {
+			int module = getModuleIndex(antenna);
+			if (module < 0) {
+				log.log(Level.FINER, "Ignoring unknown antenna {0}.", antenna);
+				continue;
+			}
+			List<Short> localAntennas = result.get(module);
+			if (localAntennas == null) {
+				localAntennas = new ArrayList<>();
+				result.put(module, localAntennas);
+			}
+			localAntennas.add((short) (antenna - antennaOffsets[module]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the index of the module a global antenna ID belongs to.
+	 *
+	 * @param antenna
+	 *            a global antenna ID greater than 0
+	 * @return the module index or -1 if the antenna ID exceeds the antennas of
+	 *         all modules
+	 */
+	int getModuleIndex(short antenna) {
+		for (int i = antennaOffsets.length - 1; i >= 0; i--)
+			if (antenna > antennaOffsets[i])
+				return i + 1 < antennaOffsets.length || antenna <= getAntennaCount() ? i : -1;
+		return -1;
+	}
+
+	private int getAntennaCount() {
+		try {
+			int last = modules.size() - 1;
+			return antennaOffsets[last] + modules.get(last).getMaxAntennas();
+		} catch (ImplementationException e) {
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Merges the results of several modules. Antenna IDs are mapped to the
+	 * global antenna ID space, transponders reported by more than one module
+	 * are reduced to the entry with the highest RSSI and the tag data IDs are
+	 * renumbered. The results of the modules are not modified.
+	 *
+	 * @param results
+	 *            a map of module indices to the results of the module
+	 * @return the merged result
+	 */
+	TagDataList merge(Map<Integer, TagDataList> results) {
+		Map<String, TagData> unique = new LinkedHashMap<>();
+		List<TagData> unidentified = new ArrayList<>();
+
+		for (Map.Entry<Integer, TagDataList> entry : results.entrySet()) {
+			int offset = antennaOffsets[entry.getKey()];
+			for (TagData moduleTagData : entry.getValue().getEntryList()) {
+				TagData tagData = copy(moduleTagData);
+				tagData.setAntennaID((short) (tagData.getAntennaID() + offset));
+
+				if (tagData.getEpc() == null || tagData.getEpc().length == 0) {
+					unidentified.add(tagData);
+					continue;
+				}
+
+				String key = RFUtils.bytesToHex(tagData.getEpc());
+				TagData known = unique.get(key);
+				if (known == null || known.getRssi() < tagData.getRssi())
+					unique.put(key, tagData);
+			}
+		}
+
+		TagDataList result = new TagDataList();
+		result.getEntryList().addAll(unique.values());
+		result.getEntryList().addAll(unidentified);
+		for (int i = 0; i < result.getEntryList().size(); i++)
+			result.getEntryList().get(i).setTagDataId(i);
+		return result;
+	}
+
+	private static TagData copy(TagData tagData) {
+		TagData copy = new TagData();
+		copy.setTagDataId(tagData.getTagDataId());
+		copy.setAntennaID(tagData.getAntennaID());
+		copy.setChannel(tagData.getChannel());
+		copy.setRssi(tagData.getRssi());
+		copy.setCrc(tagData.getCrc());
+		copy.setPc(tagData.getPc());
+		copy.setXpc(tagData.getXpc());
+		copy.setEpc(tagData.getEpc());
+		copy.setResultList(tagData.getResultList() != null ? new ArrayList<>(tagData.getResultList()) : null);
+		return copy;
+	}
+
+	/**
+	 * Throws an exception if the connections have not been opened, since the
+	 * antenna mapping is not known before.
+	 */
+	private void checkConnection() throws ImplementationException {
+		if (this.antennaOffsets == null)
+			throw new ImplementationException(new ConnectionException("Connection has not been opened"));
+	}
+
+	@Override
+	public String getRegion() {
+		return modules.get(0).getRegion();
+	}
+
+	@Override
+	public void setRegion(RFRegion rfcRegion, AntennaConfigurationList antennaConfigurationList) throws ParameterException, ImplementationException {
+		checkConnection();
+		for (int i = 0; i < modules.size(); i++) {
+			AntennaConfigurationList moduleConfigurations = new AntennaConfigurationList();
+			for (AntennaConfiguration antennaConfiguration : antennaConfigurationList.getEntryList())
+				if (antennaConfiguration.getId() == 0 || getModuleIndex(antennaConfiguration.getId()) == i)
+					moduleConfigurations.getEntryList().add(antennaConfiguration);
+
+			short[] ids = toLocalIds(moduleConfigurations, i);
+			try {
+				modules.get(i).setRegion(rfcRegion, moduleConfigurations);
+			} finally {
+				restoreIds(moduleConfigurations, ids);
+			}
+		}
+	}
+
+	@Override
+	public void setAntennaConfiguration(AntennaConfiguration antennaConfiguration, RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+		checkConnection();
+		short id = antennaConfiguration.getId();
+		if (id == 0) {
+			for (HardwareManager module : modules)
+				module.setAntennaConfiguration(antennaConfiguration, regulatoryCapabilities, forceTune);
+			return;
+		}
+
+		int module = getModuleIndex(id);
+		if (module < 0)
+			throw new ParameterException("No module found for antenna " + id);
+
+		/* the configuration is passed with the module local ID and restored afterwards */
+		antennaConfiguration.setId((short) (id - antennaOffsets[module]));
+		try {
+			modules.get(module).setAntennaConfiguration(antennaConfiguration, regulatoryCapabilities, forceTune);
+		} finally {
+			antennaConfiguration.setId(id);
+		}
+	}
+
+	private short[] toLocalIds(AntennaConfigurationList configurations, int module) {
+		short[] ids = new short[configurations.getEntryList().size()];
+		for (int i = 0; i < ids.length; i++) {
+			AntennaConfiguration configuration = configurations.getEntryList().get(i);
+			ids[i] = configuration.getId();
+			if (ids[i] != 0)
+				configuration.setId((short) (ids[i] - antennaOffsets[module]));
+		}
+		return ids;
+	}
+
+	private void restoreIds(AntennaConfigurationList configurations, short[] ids) {
+		for (int i = 0; i < ids.length; i++)
+			configurations.getEntryList().get(i).setId(ids[i]);
+	}
+
+	@Override
+	public AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		checkConnection();
+		AntennaPropertyList result = new AntennaPropertyList();
+		for (int i = 0; i < modules.size(); i++) {
+			int maxAntennas = modules.get(i).getMaxAntennas();
+			Map<Short, ConnectType> moduleMap = new HashMap<>();
+			for (short local = 1; local <= maxAntennas; local++) {
+				short global = (short) (local + antennaOffsets[i]);
+				if (connectTypeMap.containsKey(global))
+					moduleMap.put(local, connectTypeMap.get(global));
+			}
+			if (moduleMap.isEmpty())
+				continue;
+
+			for (AntennaProperties properties : modules.get(i).getAntennaProperties(moduleMap).getEntryList()) {
+				properties.setId((short) (properties.getId() + antennaOffsets[i]));
+				result.getEntryList().add(properties);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String getFirmwareVersion() throws ImplementationException {
+		return modules.get(0).getFirmwareVersion();
+	}
+
+	/**
+	 * Closes the connections to all modules, runs the firmware installation
+	 * script once and opens the connections again.
+	 */
+	@Override
+	public synchronized void installFirmware() throws ImplementationException {
+		try {
+			log.info("Closing connections to RFID modules.");
+			this.closeConnection();
+			log.info("Running firmware installation script.");
+			new FirmwareUpdater(new File(Environment.FIRMWARE_UPDATE_SCRIPT)).execute();
+		} catch (havis.device.rf.nur.firmware.ExecutionException | ConnectionException e) {
+			throw new ImplementationException(e);
+		} finally {
+			log.info("Re-establishing connections to RFID modules.");
+			try {
+				this.openConnection();
+			} catch (ConnectionException ex) {
+				throw new ImplementationException(ex);
+			}
+		}
+	}
+
+	@Override
+	public RssiFilter getRssiFilter() {
+		return modules.get(0).getRssiFilter();
+	}
+
+	@Override
+	public SingulationControl getSingulationControl() {
+		return modules.get(0).getSingulationControl();
+	}
+
+	@Override
+	public void setRssiFilter(RssiFilter rssiFilter) throws ImplementationException {
+		for (HardwareManager module : modules)
+			module.setRssiFilter(rssiFilter);
+	}
+
+	@Override
+	public void setSingulationControl(SingulationControl singulation) throws ImplementationException {
+		for (HardwareManager module : modules)
+			module.setSingulationControl(singulation);
+	}
+
+	@Override
+	public int getMaxAntennas() throws ImplementationException {
+		int result = 0;
+		for (HardwareManager module : modules)
+			result += module.getMaxAntennas();
+		return result;
+	}
+
+	/**
+	 * {@link RFConsumer} wrapper serializing the calls of concurrently running
+	 * modules.
+	 */
+	private static class SynchronizedConsumer implements RFConsumer {
+		private final RFConsumer consumer;
+
+		SynchronizedConsumer(RFConsumer consumer) {
+			this.consumer = consumer;
+		}
+
+		@Override
+		public synchronized void keepAlive() {
+			consumer.keepAlive();
+		}
+
+		@Override
+		public synchronized List<TagOperation> getOperations(TagData tagData) {
+			return consumer.getOperations(tagData);
+		}
+
+		@Override
+		public synchronized void connectionAttempted() {
+			consumer.connectionAttempted();
+		}
+	}
+}
@@ -0,0 +1,810 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.nur.NurErrorMap.RFCError;
+import havis.device.rf.nur.NurTagProcessor.Singulation;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.CustomOperation;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.RequestOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.CustomResult;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurTag;
+
+/**
+ * An immutable execution plan compiled from the list of {@link TagOperation}
+ * instances of an execute call. The plan consists of typed steps with all
+ * decisions not depending on the individual transponder taken at compile time,
+ * e.g. whether a read operation reads a complete bank or whether it is served
+ * from the data read during inventory (IR data). Running the plan for a
+ * transponder just runs its steps.
+ *
+ * <p>
+ * If a step fails, all subsequent steps are skipped and report the error of
+ * the failed step, except for steps requesting operations from the
+ * {@link RFConsumer}, which are omitted.
+ * </p>
+ */
+class NurOperationPlan {
+
+	private static final Logger log = Logger.getLogger(NurOperationPlan.class.getName());
+
+	/**
+	 * maximum number of words read by a single combined read command
+	 */
+	static final int MAX_COALESCED_READ_WORDS = 32;
+
+	/**
+	 * maximum number of words written by a single combined write command
+	 */
+	static final int MAX_COALESCED_WRITE_WORDS = 32;
+
+	/**
+	 * The transponder specific state a plan is run with.
+	 */
+	static class TagContext {
+		final NurTagProcessor tagProcessor;
+		final TagData tagData;
+		final Singulation sing;
+		final NurTag nurTag;
+		final RFConsumer consumer;
+
+		/* the error of the last failed step or null */
+		RFCError tagError;
+
+		/* the TX level policy of write, lock and kill operations or null */
+		NurPowerPolicy power;
+
+		TagContext(NurTagProcessor tagProcessor, TagData tagData, Singulation sing, NurTag nurTag, RFConsumer consumer, RFCError tagError) {
+			this.tagProcessor = tagProcessor;
+			this.tagData = tagData;
+			this.sing = sing;
+			this.nurTag = nurTag;
+			this.consumer = consumer;
+			this.tagError = tagError;
+		}
+
+		void raisePower() {
+			if (power != null)
+				power.raise();
+		}
+
+		boolean rampPower() {
+			return power != null && power.ramp();
+		}
+	}
+
+	/**
+	 * A step of the plan performing one operation.
+	 */
+	abstract static class Step {
+		final TagOperation operation;
+
+		Step(TagOperation operation) {
+			this.operation = operation;
+		}
+
+		/**
+		 * Performs the operation and adds its result to the tag data.
+		 *
+		 * @return the error to be reported by subsequent steps or null on
+		 *         success
+		 */
+		abstract RFCError perform(TagContext context) throws ParameterException;
+
+		/**
+		 * Adds the result of the skipped operation to the tag data.
+		 */
+		abstract void skip(TagContext context);
+	}
+
+	static class ReadStep extends Step {
+		final ReadOperation read;
+		final boolean completeBank;
+		final boolean irData;
+		final boolean irServed;
+
+		ReadStep(ReadOperation read, boolean irData) {
+			super(read);
+			this.read = read;
+			this.completeBank = read.getLength() == 0;
+			this.irData = irData;
+			this.irServed = irData && read.getBank() == RFUtils.BANK_TID
+					&& (completeBank || read.getOffset() + read.getLength() <= NurTagProcessor.WORD_COUNT_TID_BANK);
+		}
+
+		@Override
+		RFCError perform(TagContext context) {
+			byte[] ir = irData ? context.nurTag.getIrData() : null;
+			ReadResult result = completeBank ? context.tagProcessor.readCompleteBank(context.sing, read, context.tagData, context.nurTag, ir)
+					: context.tagProcessor.read(context.sing, read, ir);
+			context.tagData.getResultList().add(result);
+			return result.getResult() != ReadResult.Result.SUCCESS ? RFCError.NonSpecificTagError : null;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			ReadResult result = new ReadResult();
+			result.setReadData(new byte[] {});
+			result.setOperationId(operation.getOperationId());
+			result.setResult(NurErrorMap.rfcErrorToReadResult(context.tagError));
+			context.tagData.getResultList().add(result);
+		}
+	}
+
+	/**
+	 * Step performing consecutive read steps on the same bank with the same
+	 * password and adjacent or overlapping ranges with a single read command.
+	 * If the combined read fails, the read steps are performed individually to
+	 * report their specific results.
+	 */
+	static class CoalescedReadStep extends Step {
+		final List<ReadStep> reads;
+		private final List<ReadOperation> operations;
+
+		CoalescedReadStep(List<ReadStep> reads) {
+			super(reads.get(0).operation);
+			this.reads = Collections.unmodifiableList(reads);
+			this.operations = new ArrayList<>(reads.size());
+			for (ReadStep read : reads)
+				this.operations.add(read.read);
+		}
+
+		@Override
+		RFCError perform(TagContext context) throws ParameterException {
+			List<ReadResult> results = context.tagProcessor.readCoalesced(context.sing, operations);
+			if (results != null) {
+				context.tagData.getResultList().addAll(results);
+				return null;
+			}
+
+			log.log(Level.FINER, "Combined read failed, performing {0} read operations individually", reads.size());
+			for (ReadStep read : reads) {
+				if (context.tagError == null)
+					context.tagError = read.perform(context);
+				else
+					read.skip(context);
+			}
+			return context.tagError;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			for (ReadStep read : reads)
+				read.skip(context);
+		}
+	}
+
+	static class WriteStep extends Step {
+		final WriteOperation write;
+		final boolean epcChange;
+		final boolean diffWrite;
+		private final boolean irData;
+		private final boolean handleEpcChange;
+
+		WriteStep(WriteOperation write, boolean irData, boolean handleEpcChange) {
+			super(write);
+			this.write = write;
+			this.epcChange = handleEpcChange && write.getBank() == RFUtils.BANK_EPC;
+			this.diffWrite = NurEnvironment.DIFF_WRITE && write.getData() != null && write.getData().length > 0;
+			this.irData = irData;
+			this.handleEpcChange = handleEpcChange;
+		}
+
+		@Override
+		RFCError perform(TagContext context) {
+			context.raisePower();
+			WriteResult result = write(context);
+			while (result.getResult() == WriteResult.Result.INSUFFICIENT_POWER && context.rampPower())
+				result = write(context);
+
+			if (epcChange) {
+				byte[] newEpc = context.sing.epcChanged(context.nurTag, write);
+				if (log.isLoggable(Level.FINER))
+					log.log(Level.FINER, "Stored changed EPC '{0}' in tag object with former EPC '{1}'", new Object[] { RFUtils.bytesToHex(newEpc),
+							context.nurTag.getEpcString() });
+			}
+
+			context.tagData.getResultList().add(result);
+			return result.getResult() != WriteResult.Result.SUCCESS ? RFCError.NonSpecificTagError : null;
+		}
+
+		private WriteResult write(TagContext context) {
+			/* the block size of the chip takes precedence over the configured one */
+			int blockSize = NurChipRegistry.getInstance().getBlockWriteSize(context.nurTag.getIrData());
+			if (diffWrite)
+				return context.tagProcessor.writeChanged(context.sing, write, blockSize > 0 ? blockSize : NurEnvironment.BLOCK_WRITE_SIZE,
+						NurTagProcessor.getKnownData(context.nurTag, write, handleEpcChange, irData ? context.nurTag.getIrData() : null));
+			if (blockSize > 0)
+				return context.tagProcessor.write(context.sing, write, blockSize);
+			return context.tagProcessor.write(context.sing, write);
+		}
+
+		@Override
+		void skip(TagContext context) {
+			WriteResult result = new WriteResult();
+			result.setOperationId(operation.getOperationId());
+			result.setResult(NurErrorMap.rfcErrorToWriteResult(context.tagError));
+			context.tagData.getResultList().add(result);
+		}
+	}
+
+	/**
+	 * Step performing consecutive write steps on contiguous ranges of the same
+	 * bank with the same password by a single write command, so the tag is
+	 * singulated and accessed once for all of them. If the combined write
+	 * fails, e.g. because the tag was lost in between, the write steps are
+	 * performed individually.
+	 */
+	static class CoalescedWriteStep extends Step {
+		final List<WriteStep> writes;
+		private final WriteOperation combined;
+
+		CoalescedWriteStep(List<WriteStep> writes) {
+			super(writes.get(0).operation);
+			this.writes = Collections.unmodifiableList(writes);
+
+			WriteOperation first = writes.get(0).write;
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			for (WriteStep write : writes)
+				data.write(write.write.getData(), 0, write.write.getData().length);
+
+			this.combined = new WriteOperation();
+			this.combined.setOperationId(first.getOperationId());
+			this.combined.setBank(first.getBank());
+			this.combined.setOffset(first.getOffset());
+			this.combined.setPassword(first.getPassword());
+			this.combined.setData(data.toByteArray());
+		}
+
+		@Override
+		RFCError perform(TagContext context) {
+			context.raisePower();
+			int blockSize = NurChipRegistry.getInstance().getBlockWriteSize(context.nurTag.getIrData());
+			WriteResult result = blockSize > 0 ? context.tagProcessor.write(context.sing, combined, blockSize) : context.tagProcessor.write(
+					context.sing, combined);
+
+			if (result.getResult() == WriteResult.Result.SUCCESS) {
+				for (WriteStep write : writes) {
+					WriteResult writeResult = new WriteResult();
+					writeResult.setOperationId(write.operation.getOperationId());
+					writeResult.setResult(WriteResult.Result.SUCCESS);
+					writeResult.setWordsWritten((short) (write.write.getData().length / 2));
+					context.tagData.getResultList().add(writeResult);
+				}
+				return null;
+			}
+
+			log.log(Level.FINER, "Combined write failed, performing {0} write operations individually", writes.size());
+			for (WriteStep write : writes) {
+				if (context.tagError == null)
+					context.tagError = write.perform(context);
+				else
+					write.skip(context);
+			}
+			return context.tagError;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			for (WriteStep write : writes)
+				write.skip(context);
+		}
+	}
+
+	static class LockStep extends Step {
+		final LockOperation lock;
+
+		LockStep(LockOperation lock) {
+			super(lock);
+			this.lock = lock;
+		}
+
+		@Override
+		RFCError perform(TagContext context) throws ParameterException {
+			context.raisePower();
+			LockResult result = context.tagProcessor.lock(context.sing, lock);
+			while (result.getResult() == LockResult.Result.INSUFFICIENT_POWER && context.rampPower())
+				result = context.tagProcessor.lock(context.sing, lock);
+			context.tagData.getResultList().add(result);
+			return result.getResult() != LockResult.Result.SUCCESS ? RFCError.NonSpecificTagError : null;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			LockResult result = new LockResult();
+			result.setOperationId(operation.getOperationId());
+			result.setResult(NurErrorMap.rfcErrorToLockResult(context.tagError));
+			context.tagData.getResultList().add(result);
+		}
+	}
+
+	/**
+	 * Step performing consecutive lock steps with the same password and
+	 * privilege with a single lock command. Each lock operation gets its own
+	 * result reporting the outcome of the combined command.
+	 */
+	static class CombinedLockStep extends Step {
+		final List<LockStep> locks;
+		private final List<LockOperation> operations;
+
+		CombinedLockStep(List<LockStep> locks) {
+			super(locks.get(0).operation);
+			this.locks = Collections.unmodifiableList(locks);
+			this.operations = new ArrayList<>(locks.size());
+			for (LockStep lock : locks)
+				this.operations.add(lock.lock);
+		}
+
+		@Override
+		RFCError perform(TagContext context) throws ParameterException {
+			context.raisePower();
+			List<LockResult> results = context.tagProcessor.lock(context.sing, operations);
+			while (results.get(0).getResult() == LockResult.Result.INSUFFICIENT_POWER && context.rampPower())
+				results = context.tagProcessor.lock(context.sing, operations);
+			context.tagData.getResultList().addAll(results);
+			return results.get(0).getResult() != LockResult.Result.SUCCESS ? RFCError.NonSpecificTagError : null;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			for (LockStep lock : locks)
+				lock.skip(context);
+		}
+	}
+
+	static class KillStep extends Step {
+		final KillOperation kill;
+
+		KillStep(KillOperation kill) {
+			super(kill);
+			this.kill = kill;
+		}
+
+		@Override
+		RFCError perform(TagContext context) {
+			context.raisePower();
+			KillResult result = context.tagProcessor.kill(context.sing, kill);
+			while (result.getResult() == KillResult.Result.INSUFFICIENT_POWER && context.rampPower())
+				result = context.tagProcessor.kill(context.sing, kill);
+			context.tagData.getResultList().add(result);
+			return result.getResult() != KillResult.Result.SUCCESS ? RFCError.NonSpecificTagError : null;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			KillResult result = new KillResult();
+			result.setOperationId(operation.getOperationId());
+			result.setResult(NurErrorMap.rfcErrorToKillResult(context.tagError));
+			context.tagData.getResultList().add(result);
+		}
+	}
+
+	static class CustomStep extends Step {
+		final CustomOperation custom;
+
+		CustomStep(CustomOperation custom) {
+			super(custom);
+			this.custom = custom;
+		}
+
+		@Override
+		RFCError perform(TagContext context) {
+			CustomResult result = context.tagProcessor.custom(context.nurTag, context.sing, custom);
+			context.tagData.getResultList().add(result);
+			return result.getResult() != CustomResult.Result.SUCCESS ? RFCError.NonSpecificTagError : null;
+		}
+
+		@Override
+		void skip(TagContext context) {
+			CustomResult result = new CustomResult();
+			result.setOperationId(operation.getOperationId());
+			result.setResult(NurErrorMap.rfcErrorToCustomResult(context.tagError));
+			context.tagData.getResultList().add(result);
+		}
+	}
+
+	/**
+	 * Step requesting additional operations from the {@link RFConsumer}. The
+	 * operations are compiled and run when received, operations requested by
+	 * them are ignored.
+	 */
+	static class RequestStep extends Step {
+		private final boolean irData;
+		private final boolean handleEpcChange;
+
+		RequestStep(RequestOperation request, boolean irData, boolean handleEpcChange) {
+			super(request);
+			this.irData = irData;
+			this.handleEpcChange = handleEpcChange;
+		}
+
+		@Override
+		RFCError perform(TagContext context) throws ParameterException {
+			if (context.consumer == null)
+				return null;
+
+			log.log(Level.FINER, "Request operation received, reqesting additional ops from consumer: {0} ", context.consumer);
+			return perform(context, context.consumer.getOperations(context.tagData));
+		}
+
+		/**
+		 * Performs the operations requested from the consumer.
+		 *
+		 * @param operations
+		 *            the requested operations or null
+		 * @return the error of the failed operation or null on success
+		 */
+		RFCError perform(TagContext context, List<TagOperation> operations) throws ParameterException {
+			if (log.isLoggable(Level.FINER))
+				log.log(Level.FINER, "Additional ops from consumer received: {0} ", RFUtils.serializeList(operations, TagOperation.class));
+
+			if (operations == null)
+				return null;
+
+			/* to avoid recursive request ops, the consumer is not passed */
+			TagContext requested = new TagContext(context.tagProcessor, context.tagData, context.sing, context.nurTag, null, null);
+			requested.power = context.power;
+			return compile(operations, irData, handleEpcChange).run(requested);
+		}
+
+		@Override
+		void skip(TagContext context) {
+			/* no operations are requested after an error */
+		}
+	}
+
+	private final List<Step> steps;
+	private final boolean irData;
+
+	private NurOperationPlan(List<Step> steps, boolean irData) {
+		this.steps = Collections.unmodifiableList(steps);
+		this.irData = irData;
+	}
+
+	/**
+	 * Compiles a list of operations.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @param irData
+	 *            whether read operations may use the data read during
+	 *            inventory (optimized TID bank reading)
+	 * @param handleEpcChange
+	 *            whether the singulation data is updated when the EPC is
+	 *            written
+	 * @return the plan
+	 */
+	static NurOperationPlan compile(List<TagOperation> operations, boolean irData, boolean handleEpcChange) {
+		List<Step> steps = new ArrayList<>(operations.size());
+		for (TagOperation operation : operations) {
+			if (operation instanceof ReadOperation)
+				steps.add(new ReadStep((ReadOperation) operation, irData));
+			else if (operation instanceof WriteOperation)
+				steps.add(new WriteStep((WriteOperation) operation, irData, handleEpcChange));
+			else if (operation instanceof LockOperation)
+				steps.add(new LockStep((LockOperation) operation));
+			else if (operation instanceof KillOperation)
+				steps.add(new KillStep((KillOperation) operation));
+			else if (operation instanceof CustomOperation)
+				steps.add(new CustomStep((CustomOperation) operation));
+			else if (operation instanceof RequestOperation)
+				steps.add(new RequestStep((RequestOperation) operation, irData, handleEpcChange));
+			else
+				log.log(Level.FINE, "Ignoring unknown operation type {0}", operation != null ? operation.getClass() : null);
+		}
+		if (NurEnvironment.READ_COALESCING)
+			steps = coalesceReads(steps);
+		if (NurEnvironment.WRITE_COALESCING)
+			steps = coalesceWrites(steps);
+		if (NurEnvironment.LOCK_MERGING)
+			steps = mergeLocks(steps);
+		return new NurOperationPlan(steps, irData);
+	}
+
+	/**
+	 * Replaces runs of consecutive read steps which can be performed with a
+	 * single read command by a {@link CoalescedReadStep}. Complete bank reads
+	 * and reads served from IR data are left as they are.
+	 */
+	static List<Step> coalesceReads(List<Step> steps) {
+		List<Step> result = new ArrayList<>(steps.size());
+		List<ReadStep> run = new ArrayList<>();
+		int start = 0, end = 0;
+		for (Step step : steps) {
+			ReadStep read = step instanceof ReadStep && !((ReadStep) step).completeBank && !((ReadStep) step).irServed ? (ReadStep) step : null;
+			if (read != null && !run.isEmpty()) {
+				ReadOperation first = run.get(0).read;
+				int readStart = read.read.getOffset();
+				int readEnd = readStart + read.read.getLength();
+				if (read.read.getBank() == first.getBank() && read.read.getPassword() == first.getPassword() && readStart <= end && readEnd >= start
+						&& Math.max(end, readEnd) - Math.min(start, readStart) <= MAX_COALESCED_READ_WORDS) {
+					run.add(read);
+					start = Math.min(start, readStart);
+					end = Math.max(end, readEnd);
+					continue;
+				}
+			}
+
+			flushReads(run, result);
+			if (read != null) {
+				run.add(read);
+				start = read.read.getOffset();
+				end = start + read.read.getLength();
+			} else
+				result.add(step);
+		}
+		flushReads(run, result);
+		return result;
+	}
+
+	private static void flushReads(List<ReadStep> run, List<Step> result) {
+		if (run.size() == 1)
+			result.add(run.get(0));
+		else if (run.size() > 1)
+			result.add(new CoalescedReadStep(new ArrayList<>(run)));
+		run.clear();
+	}
+
+	/**
+	 * Replaces runs of consecutive write steps on contiguous ranges of the same
+	 * bank with the same password by a {@link CoalescedWriteStep}. Writes to
+	 * the EPC bank, which may change the singulation data, and diff writes are
+	 * left as they are.
+	 */
+	static List<Step> coalesceWrites(List<Step> steps) {
+		List<Step> result = new ArrayList<>(steps.size());
+		List<WriteStep> run = new ArrayList<>();
+		int end = 0;
+		for (Step step : steps) {
+			WriteStep write = step instanceof WriteStep && isCoalescable((WriteStep) step) ? (WriteStep) step : null;
+
+			if (write != null && !run.isEmpty()) {
+				WriteOperation first = run.get(0).write;
+				int writeEnd = write.write.getOffset() + write.write.getData().length / 2;
+				if (write.write.getBank() == first.getBank() && write.write.getPassword() == first.getPassword() && write.write.getOffset() == end
+						&& writeEnd - first.getOffset() <= MAX_COALESCED_WRITE_WORDS) {
+					run.add(write);
+					end = writeEnd;
+					continue;
+				}
+			}
+
+			flushWrites(run, result);
+			if (write != null) {
+				run.add(write);
+				end = write.write.getOffset() + write.write.getData().length / 2;
+			} else
+				result.add(step);
+		}
+		flushWrites(run, result);
+		return result;
+	}
+
+	private static boolean isCoalescable(WriteStep write) {
+		byte[] data = write.write.getData();
+		return write.write.getBank() != RFUtils.BANK_EPC && !write.diffWrite && data != null && data.length > 0 && data.length % 2 == 0;
+	}
+
+	private static void flushWrites(List<WriteStep> run, List<Step> result) {
+		if (run.size() == 1)
+			result.add(run.get(0));
+		else if (run.size() > 1)
+			result.add(new CoalescedWriteStep(new ArrayList<>(run)));
+		run.clear();
+	}
+
+	/**
+	 * Replaces runs of consecutive lock steps with the same password and
+	 * privilege by a {@link CombinedLockStep}.
+	 */
+	static List<Step> mergeLocks(List<Step> steps) {
+		List<Step> result = new ArrayList<>(steps.size());
+		List<LockStep> run = new ArrayList<>();
+		for (Step step : steps) {
+			LockStep lock = step instanceof LockStep ? (LockStep) step : null;
+			if (lock != null && !run.isEmpty()) {
+				LockOperation first = run.get(0).lock;
+				if (lock.lock.getPassword() == first.getPassword() && lock.lock.getPrivilege() == first.getPrivilege()) {
+					run.add(lock);
+					continue;
+				}
+			}
+
+			flushLocks(run, result);
+			if (lock != null)
+				run.add(lock);
+			else
+				result.add(step);
+		}
+		flushLocks(run, result);
+		return result;
+	}
+
+	private static void flushLocks(List<LockStep> run, List<Step> result) {
+		if (run.size() == 1)
+			result.add(run.get(0));
+		else if (run.size() > 1)
+			result.add(new CombinedLockStep(new ArrayList<>(run)));
+		run.clear();
+	}
+
+	/**
+	 * @return the steps of the plan
+	 */
+	List<Step> getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @return true if the plan is empty
+	 */
+	boolean isEmpty() {
+		return steps.isEmpty();
+	}
+
+	/**
+	 * @return true if any read step is served from the data read during
+	 *         inventory
+	 */
+	boolean usesIrData() {
+		if (irData)
+			for (Step step : steps)
+				if (step instanceof ReadStep && ((ReadStep) step).irServed)
+					return true;
+		return false;
+	}
+
+	/**
+	 * @return true if any read step reads the complete user bank, its size is
+	 *         looked up by the TID read during inventory
+	 */
+	boolean readsCompleteUserBank() {
+		for (Step step : steps)
+			if (step instanceof ReadStep && ((ReadStep) step).completeBank && ((ReadStep) step).read.getBank() == RFUtils.BANK_USR)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns whether the transponder model has to be known from the TID read
+	 * during inventory, i.e. the plan reads the complete user bank, writes,
+	 * locks or kills, where the chip registry provides the block write size
+	 * and quirks, or contains custom operations. Operations requested from
+	 * the consumer are not known in advance and are not taken into account.
+	 *
+	 * @return true if the TID is to be read during inventory
+	 */
+	boolean requiresTid() {
+		if (readsCompleteUserBank() || isWriting())
+			return true;
+		for (Step step : steps)
+			if (step instanceof CustomStep)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Runs the plan for a transponder.
+	 *
+	 * @param context
+	 *            the transponder context, the result of each step is added to
+	 *            its tag data
+	 * @return the error of the failed step or the error the context was
+	 *         created with, null if no error occurred
+	 * @throws ParameterException
+	 *             if a lock operation contains an undefined privilege or field
+	 */
+	RFCError run(TagContext context) throws ParameterException {
+		return run(context, 0, steps.size());
+	}
+
+	/**
+	 * Runs a range of steps of the plan for a transponder.
+	 *
+	 * @param context
+	 *            the transponder context
+	 * @param from
+	 *            the index of the first step, inclusive
+	 * @param to
+	 *            the index of the last step, exclusive
+	 * @return the error of the failed step or the error of the context, null
+	 *         if no error occurred
+	 * @throws ParameterException
+	 *             if a lock operation contains an undefined privilege or field
+	 */
+	RFCError run(TagContext context, int from, int to) throws ParameterException {
+		for (Step step : steps.subList(from, to)) {
+			if (context.tagError == null) {
+				RFCError error = step.perform(context);
+				if (error != null)
+					context.tagError = error;
+			} else
+				step.skip(context);
+		}
+		return context.tagError;
+	}
+
+	/**
+	 * Returns the index of the next step requesting operations from the
+	 * consumer.
+	 *
+	 * @param from
+	 *            the index of the step to start searching at
+	 * @return the index of the request step or -1 if there is none
+	 */
+	int getRequestIndex(int from) {
+		for (int i = from; i < steps.size(); i++)
+			if (steps.get(i) instanceof RequestStep)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Returns whether the plan writes to the transponders, i.e. contains
+	 * write, lock or kill steps. Operations requested from the consumer are
+	 * not known in advance and are not taken into account.
+	 *
+	 * @return true if a step writes to the transponders
+	 */
+	boolean isWriting() {
+		for (Step step : steps)
+			if (step instanceof WriteStep || step instanceof CoalescedWriteStep || step instanceof LockStep || step instanceof CombinedLockStep
+					|| step instanceof KillStep)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns whether the plan only reads from the transponders. Plans
+	 * containing custom or request steps are not considered read only since
+	 * their effect is not known in advance.
+	 *
+	 * @return true if all steps are read steps
+	 */
+	boolean isReadOnly() {
+		for (Step step : steps)
+			if (!(step instanceof ReadStep || step instanceof CoalescedReadStep))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Performs operations requested from the consumer in place of a request
+	 * step, e.g. if the operations of all transponders of an inventory round
+	 * are requested at once.
+	 *
+	 * @param context
+	 *            the transponder context, which must not have an error
+	 * @param index
+	 *            the index of the request step
+	 * @param operations
+	 *            the operations requested for the transponder or null
+	 * @return the error of the failed operation or null on success
+	 * @throws ParameterException
+	 *             if a lock operation contains an undefined privilege or field
+	 */
+	RFCError runRequested(TagContext context, int index, List<TagOperation> operations) throws ParameterException {
+		RFCError error = ((RequestStep) steps.get(index)).perform(context, operations);
+		if (error != null)
+			context.tagError = error;
+		return context.tagError;
+	}
+}
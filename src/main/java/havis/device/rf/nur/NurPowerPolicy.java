@@ -0,0 +1,112 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.exception.ImplementationException;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Raises the TX level of all antennas for write, lock and kill operations
+ * above the configured level, so the inventory keeps running with the
+ * configured (lower) level. If an operation fails with insufficient power,
+ * the level is raised further in bounded steps and the operation is
+ * repeated. The raised level is kept for the following operations of the
+ * execution and the configured level is restored by {@link #restore()}.
+ */
+class NurPowerPolicy {
+
+	private static final Logger log = Logger.getLogger(NurPowerPolicy.class.getName());
+
+	private final NurConfigurationHelper setup;
+	private final int boost;
+	private final int rampStep;
+	private final int rampSteps;
+
+	/* the number of dB currently applied above the configured level */
+	private int applied;
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param setup
+	 *            the configuration helper applying the TX levels
+	 * @param boost
+	 *            the number of dB the TX level is raised by for access
+	 *            operations
+	 * @param rampStep
+	 *            the number of dB the TX level is raised by per retry
+	 * @param rampSteps
+	 *            the maximum number of retries of an operation failing with
+	 *            insufficient power
+	 */
+	NurPowerPolicy(NurConfigurationHelper setup, int boost, int rampStep, int rampSteps) {
+		this.setup = setup;
+		this.boost = Math.max(0, boost);
+		this.rampStep = Math.max(1, rampStep);
+		this.rampSteps = Math.max(0, rampSteps);
+	}
+
+	/**
+	 * Creates a policy using the {@link NurEnvironment} properties.
+	 *
+	 * @param setup
+	 *            the configuration helper applying the TX levels
+	 * @return the policy or null if neither a boost nor a ramp is configured
+	 */
+	static NurPowerPolicy create(NurConfigurationHelper setup) {
+		if (NurEnvironment.ACCESS_POWER_BOOST <= 0 && NurEnvironment.ACCESS_POWER_RAMP_STEPS <= 0)
+			return null;
+		return new NurPowerPolicy(setup, NurEnvironment.ACCESS_POWER_BOOST, NurEnvironment.ACCESS_POWER_RAMP_STEP,
+				NurEnvironment.ACCESS_POWER_RAMP_STEPS);
+	}
+
+	/**
+	 * @return the number of dB currently applied above the configured level
+	 */
+	int getApplied() {
+		return applied;
+	}
+
+	/**
+	 * Raises the TX level by the boost unless it is raised already. Called
+	 * before each access operation.
+	 */
+	void raise() {
+		if (applied < boost)
+			apply(Math.min(boost, setup.getTxLevelHeadroom()));
+	}
+
+	/**
+	 * Raises the TX level by another step after an operation failed with
+	 * insufficient power.
+	 *
+	 * @return true if the level was raised and the operation is to be
+	 *         repeated, false if the ramp or the maximum TX level is reached
+	 */
+	boolean ramp() {
+		int target = Math.min(Math.min(applied + rampStep, boost + rampSteps * rampStep), setup.getTxLevelHeadroom());
+		if (target <= applied)
+			return false;
+		log.log(Level.FINE, "Insufficient power, raising TX level by {0} dB", target);
+		return apply(target);
+	}
+
+	/**
+	 * Restores the configured TX level if it was raised.
+	 */
+	void restore() {
+		if (applied > 0)
+			apply(0);
+	}
+
+	private boolean apply(int dB) {
+		try {
+			setup.applyTxLevelBoost(dB);
+			applied = dB;
+			return true;
+		} catch (ImplementationException e) {
+			log.log(Level.FINE, "Failed to apply TX level boost of {0} dB: {1}", new Object[] { dB, e });
+			return false;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.capabilities.RegulatoryCapabilities;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.configuration.AntennaConfigurationList;
+import havis.device.rf.configuration.AntennaPropertyList;
+import havis.device.rf.configuration.ConnectType;
+import havis.device.rf.configuration.RFRegion;
+import havis.device.rf.configuration.RssiFilter;
+import havis.device.rf.configuration.SingulationControl;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link HardwareManager} implementation sharing one NUR module between
+ * several service consumers. Each instance is a lightweight handle to the
+ * {@link NurSharedSession} of the bundle, which owns the module exclusively,
+ * queues the execute requests of all handles by priority and merges
+ * compatible requests into one inventory round.
+ *
+ * <p>
+ * To be used, the property <b>havis.device.rf.common.hardwareManager.class</b>
+ * has to name this class. The handles provide the {@link HardwareManager}
+ * methods only, batch encoding, benchmarks, locating, trigger mode and EPC
+ * commissioning of the {@link NurHardwareManager} run continuously or outside
+ * the queue and are therefore not available.
+ * </p>
+ */
+public class NurSharedHardwareManager implements HardwareManager {
+
+	private static final Logger log = Logger.getLogger(NurSharedHardwareManager.class.getName());
+
+	/**
+	 * The default priority of execute requests.
+	 */
+	public static final int DEFAULT_PRIORITY = 0;
+
+	private final NurSharedSession session;
+	private boolean open;
+	private volatile int priority = DEFAULT_PRIORITY;
+
+	/**
+	 * Creates a handle to the shared session of the bundle.
+	 */
+	public NurSharedHardwareManager() {
+		this(NurSharedSession.getInstance());
+	}
+
+	NurSharedHardwareManager(NurSharedSession session) {
+		super();
+		this.session = session;
+		log.log(Level.FINE, "{0} instantiated.", this.getClass().getName());
+	}
+
+	/**
+	 * Returns the priority of the execute requests of this handle.
+	 *
+	 * @return the priority
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Sets the priority of the execute requests of this handle. Requests with
+	 * higher priority are processed before queued requests with lower
+	 * priority, requests with the same priority in the order of their arrival.
+	 *
+	 * @param priority
+	 *            the priority
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Returns the stream of all transponders reported by the shared module.
+	 * 
+	 * @return the tag stream
+	 */
+	public NurTagStream getTagStream() {
+		return session.getTagStream();
+	}
+
+	@Override
+	public synchronized void openConnection() throws ConnectionException, ImplementationException {
+		if (!open) {
+			session.open();
+			open = true;
+		}
+	}
+
+	@Override
+	public synchronized void closeConnection() throws ConnectionException {
+		if (open) {
+			open = false;
+			session.close();
+		}
+	}
+
+	@Override
+	public TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer)
+			throws ImplementationException, ParameterException {
+		return session.execute(antennas, filters, operations, consumer, priority);
+	}
+
+	@Override
+	public String getRegion() {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			return hardwareManager.getRegion();
+		}
+	}
+
+	@Override
+	public void setRegion(RFRegion rfcRegion, AntennaConfigurationList antennaConfigurationList) throws ParameterException, ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			hardwareManager.setRegion(rfcRegion, antennaConfigurationList);
+		}
+	}
+
+	@Override
+	public void setAntennaConfiguration(AntennaConfiguration antennaConfiguration, RegulatoryCapabilities regulatoryCapabilities, boolean forceTune)
+			throws ParameterException, ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			hardwareManager.setAntennaConfiguration(antennaConfiguration, regulatoryCapabilities, forceTune);
+		}
+	}
+
+	@Override
+	public AntennaPropertyList getAntennaProperties(Map<Short, ConnectType> connectTypeMap) throws ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			return hardwareManager.getAntennaProperties(connectTypeMap);
+		}
+	}
+
+	@Override
+	public String getFirmwareVersion() throws ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			return hardwareManager.getFirmwareVersion();
+		}
+	}
+
+	@Override
+	public void installFirmware() throws ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			hardwareManager.installFirmware();
+		}
+	}
+
+	@Override
+	public RssiFilter getRssiFilter() {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			return hardwareManager.getRssiFilter();
+		}
+	}
+
+	@Override
+	public SingulationControl getSingulationControl() {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			return hardwareManager.getSingulationControl();
+		}
+	}
+
+	@Override
+	public void setRssiFilter(RssiFilter rssiFilter) throws ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			hardwareManager.setRssiFilter(rssiFilter);
+		}
+	}
+
+	@Override
+	public void setSingulationControl(SingulationControl singulation) throws ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			hardwareManager.setSingulationControl(singulation);
+		}
+	}
+
+	@Override
+	public int getMaxAntennas() throws ImplementationException {
+		HardwareManager hardwareManager = session.getHardwareManager();
+		synchronized (hardwareManager) {
+			return hardwareManager.getMaxAntennas();
+		}
+	}
+}
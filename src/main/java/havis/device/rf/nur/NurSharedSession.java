@@ -0,0 +1,398 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A session owning one NUR module exclusively on behalf of several
+ * {@link NurSharedHardwareManager} handles. Execute requests of all handles
+ * are queued by priority and processed by a single worker thread. Queued
+ * requests which are compatible with the request to be processed next, i.e.
+ * which have the same antennas and filters and only the same read operations,
+ * are merged into the same inventory round and each request receives its own
+ * copy of the results.
+ *
+ * <p>
+ * The module connection is opened with the first handle opening its
+ * connection and closed with the last handle closing its connection.
+ * </p>
+ */
+class NurSharedSession {
+
+	private static final Logger log = Logger.getLogger(NurSharedSession.class.getName());
+
+	private static NurSharedSession instance;
+
+	/**
+	 * Returns the session shared by all handles of this bundle.
+	 *
+	 * @return the shared session
+	 */
+	static synchronized NurSharedSession getInstance() {
+		if (instance == null)
+			instance = new NurSharedSession(new NurHardwareManager());
+		return instance;
+	}
+
+	private final HardwareManager hardwareManager;
+	private final PriorityBlockingQueue<Request> queue = new PriorityBlockingQueue<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final Object connectionLock = new Object();
+
+	/* used if the hardware manager does not provide a stream */
+	private final NurTagStream tagStream = new NurTagStream(NurEnvironment.TAG_STREAM_CAPACITY);
+
+	/* queued by close to stop the worker after the request in progress */
+	private final Request stop = new Request(null, null, null, null, Integer.MAX_VALUE, -1);
+
+	private int openCount;
+	private Thread worker;
+
+	NurSharedSession(HardwareManager hardwareManager) {
+		this.hardwareManager = hardwareManager;
+	}
+
+	/**
+	 * Returns the hardware manager of the module. Any access besides execute
+	 * must be synchronized on the hardware manager.
+	 */
+	HardwareManager getHardwareManager() {
+		return hardwareManager;
+	}
+
+	/**
+	 * Returns the stream of all transponders reported by the module.
+	 */
+	NurTagStream getTagStream() {
+		if (hardwareManager instanceof NurHardwareManager)
+			return ((NurHardwareManager) hardwareManager).getTagStream();
+		return tagStream;
+	}
+
+	/**
+	 * Registers an open handle. The connection to the module is opened and the
+	 * worker started for the first handle.
+	 */
+	void open() throws ConnectionException, ImplementationException {
+		synchronized (connectionLock) {
+			if (openCount == 0) {
+				synchronized (hardwareManager) {
+					hardwareManager.openConnection();
+				}
+				worker = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, "NurSharedSession");
+				worker.setDaemon(true);
+				worker.start();
+			}
+			openCount++;
+			log.log(Level.FINER, "Shared session opened by {0} handle(s).", openCount);
+		}
+	}
+
+	/**
+	 * Unregisters an open handle. The worker is stopped and the connection to
+	 * the module is closed for the last handle.
+	 */
+	void close() throws ConnectionException {
+		synchronized (connectionLock) {
+			if (openCount == 0)
+				return;
+			openCount--;
+			log.log(Level.FINER, "Shared session opened by {0} handle(s).", openCount);
+			if (openCount > 0)
+				return;
+
+			/* the NUR API may swallow an interrupt, so the worker is stopped by a request */
+			Thread worker = this.worker;
+			this.worker = null;
+			queue.add(stop);
+			try {
+				worker.join(NurEnvironment.SHARED_SESSION_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			Request request;
+			while ((request = queue.poll()) != null)
+				request.fail(new ImplementationException("Shared session closed"));
+
+			if (worker.isAlive()) {
+				/* closing the connection aborts the request the worker is blocked in */
+				log.log(Level.WARNING, "Worker of shared session did not stop within {0} ms, closing connection.",
+						NurEnvironment.SHARED_SESSION_TIMEOUT);
+				worker.interrupt();
+				hardwareManager.closeConnection();
+			} else {
+				synchronized (hardwareManager) {
+					hardwareManager.closeConnection();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queues an execute request and waits for its result, at most the time
+	 * given by <b>havis.device.rf.nur.sharedSessionTimeout</b>.
+	 *
+	 * @param priority
+	 *            the priority of the request, requests with higher priority
+	 *            are processed first
+	 */
+	TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer, int priority)
+			throws ImplementationException, ParameterException {
+		Request request = new Request(antennas, filters, operations, consumer, priority, sequence.getAndIncrement());
+		synchronized (connectionLock) {
+			if (openCount == 0)
+				throw new ImplementationException("Shared session not open");
+			queue.add(request);
+		}
+		try {
+			return request.await(NurEnvironment.SHARED_SESSION_TIMEOUT);
+		} finally {
+			/* a request timed out before being processed is dropped */
+			queue.remove(request);
+		}
+	}
+
+	private void work() {
+		while (true) {
+			Request leader;
+			try {
+				leader = queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (leader == stop)
+				break;
+
+			List<Request> requests = new ArrayList<>();
+			requests.add(leader);
+			if (leader.key != null) {
+				for (Iterator<Request> it = queue.iterator(); it.hasNext();) {
+					Request request = it.next();
+					if (leader.key.equals(request.key) && queue.remove(request))
+						requests.add(request);
+				}
+			}
+			process(requests);
+		}
+	}
+
+	void process(List<Request> requests) {
+		Request leader = requests.get(0);
+		if (requests.size() > 1)
+			log.log(Level.FINER, "Merging {0} requests into one inventory round.", requests.size());
+
+		TagDataList result;
+		try {
+			synchronized (hardwareManager) {
+				result = hardwareManager.execute(leader.antennas, leader.filters, leader.operations,
+						requests.size() > 1 ? new MergedConsumer(requests) : leader.consumer);
+			}
+		} catch (ImplementationException | ParameterException e) {
+			for (Request request : requests)
+				request.fail(e);
+			return;
+		} catch (RuntimeException e) {
+			for (Request request : requests)
+				request.fail(new ImplementationException(e));
+			return;
+		}
+
+		leader.complete(result);
+		for (int i = 1; i < requests.size(); i++)
+			requests.get(i).complete(copy(result, leader.operations, requests.get(i).operations));
+	}
+
+	/**
+	 * Creates the key identifying compatible requests or null if a request
+	 * must not be merged, i.e. if it contains other than read operations or
+	 * lacks any of the lists. Operation IDs are not part of the key.
+	 */
+	static String createKey(List<Short> antennas, List<Filter> filters, List<TagOperation> operations) {
+		if (antennas == null || filters == null || operations == null)
+			return null;
+
+		StringBuilder key = new StringBuilder();
+		key.append(new TreeSet<>(antennas)).append('|');
+
+		for (Filter filter : filters)
+			key.append(filter.getBank()).append(',').append(filter.getBitOffset()).append(',').append(filter.getBitLength()).append(',')
+					.append(RFUtils.bytesToHex(filter.getData())).append(',').append(RFUtils.bytesToHex(filter.getMask())).append(',')
+					.append(filter.isMatch()).append(';');
+		key.append('|');
+
+		for (TagOperation operation : operations) {
+			if (!(operation instanceof ReadOperation))
+				return null;
+			ReadOperation read = (ReadOperation) operation;
+			key.append(read.getBank()).append(',').append(read.getOffset()).append(',').append(read.getLength()).append(',')
+					.append(read.getPassword()).append(';');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Copies the result of a merged round for another request, replacing the
+	 * operation IDs of the executed operations by those of the request.
+	 */
+	static TagDataList copy(TagDataList source, List<TagOperation> sourceOperations, List<TagOperation> targetOperations) {
+		Map<String, String> operationIds = new HashMap<>();
+		for (int i = 0; i < sourceOperations.size(); i++)
+			operationIds.put(sourceOperations.get(i).getOperationId(), targetOperations.get(i).getOperationId());
+
+		TagDataList target = new TagDataList();
+		for (TagData tagData : source.getEntryList()) {
+			TagData copy = new TagData();
+			copy.setTagDataId(tagData.getTagDataId());
+			copy.setAntennaID(tagData.getAntennaID());
+			copy.setChannel(tagData.getChannel());
+			copy.setRssi(tagData.getRssi());
+			copy.setCrc(tagData.getCrc());
+			copy.setPc(tagData.getPc());
+			copy.setXpc(tagData.getXpc());
+			copy.setEpc(tagData.getEpc() != null ? Arrays.copyOf(tagData.getEpc(), tagData.getEpc().length) : null);
+
+			if (tagData.getResultList() != null) {
+				List<OperationResult> results = new ArrayList<>();
+				for (OperationResult result : tagData.getResultList()) {
+					ReadResult read = (ReadResult) result;
+					ReadResult readCopy = new ReadResult();
+					readCopy.setOperationId(operationIds.get(read.getOperationId()));
+					readCopy.setResult(read.getResult());
+					readCopy.setReadData(read.getReadData() != null ? Arrays.copyOf(read.getReadData(), read.getReadData().length) : null);
+					results.add(readCopy);
+				}
+				copy.setResultList(results);
+			}
+			target.getEntryList().add(copy);
+		}
+		return target;
+	}
+
+	/**
+	 * A queued execute request.
+	 */
+	static class Request implements Comparable<Request> {
+		final List<Short> antennas;
+		final List<Filter> filters;
+		final List<TagOperation> operations;
+		final RFConsumer consumer;
+		final int priority;
+		final long sequence;
+		final String key;
+
+		private final CountDownLatch done = new CountDownLatch(1);
+		private TagDataList result;
+		private Exception error;
+
+		Request(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer, int priority, long sequence) {
+			this.antennas = antennas;
+			this.filters = filters;
+			this.operations = operations;
+			this.consumer = consumer;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.key = createKey(antennas, filters, operations);
+		}
+
+		@Override
+		public int compareTo(Request other) {
+			if (priority != other.priority)
+				return priority > other.priority ? -1 : 1;
+			return Long.compare(sequence, other.sequence);
+		}
+
+		void complete(TagDataList result) {
+			this.result = result;
+			done.countDown();
+		}
+
+		void fail(Exception error) {
+			this.error = error;
+			done.countDown();
+		}
+
+		/**
+		 * Waits for the result of the request.
+		 *
+		 * @param timeout
+		 *            the maximum time to wait in milliseconds
+		 */
+		TagDataList await(long timeout) throws ImplementationException, ParameterException {
+			try {
+				if (!done.await(timeout, TimeUnit.MILLISECONDS))
+					throw new ImplementationException("No result received within " + timeout + " ms");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ImplementationException(e);
+			}
+			if (error instanceof ParameterException)
+				throw (ParameterException) error;
+			if (error instanceof ImplementationException)
+				throw (ImplementationException) error;
+			return result;
+		}
+	}
+
+	/**
+	 * {@link RFConsumer} of a merged round notifying the consumers of all
+	 * merged requests. Since merged requests contain read operations only, no
+	 * operations are requested.
+	 */
+	private static class MergedConsumer implements RFConsumer {
+		private final List<Request> requests;
+
+		MergedConsumer(List<Request> requests) {
+			this.requests = requests;
+		}
+
+		@Override
+		public void keepAlive() {
+			for (Request request : requests)
+				if (request.consumer != null)
+					request.consumer.keepAlive();
+		}
+
+		@Override
+		public List<TagOperation> getOperations(TagData tagData) {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public void connectionAttempted() {
+			for (Request request : requests)
+				if (request.consumer != null)
+					request.consumer.connectionAttempted();
+		}
+	}
+}
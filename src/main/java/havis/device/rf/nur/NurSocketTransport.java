@@ -0,0 +1,168 @@
+package havis.device.rf.nur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurApiTransport;
+
+/**
+ * A {@link NurApiTransport} implementation connecting to a NUR module over a
+ * TCP socket, e.g. a reader with Ethernet interface or a serial-over-TCP
+ * bridge. In contrast to the socket transport of the NUR API, the socket
+ * options relevant for the small request/response frames of the NUR protocol
+ * can be tuned.
+ */
+class NurSocketTransport implements NurApiTransport {
+
+	private static final Logger log = Logger.getLogger(NurSocketTransport.class.getName());
+
+	private final String host;
+	private final int port;
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final boolean tcpNoDelay;
+	private final boolean keepAlive;
+
+	private volatile Socket socket;
+	private InputStream input;
+	private OutputStream output;
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param host
+	 *            the host name of the module
+	 * @param port
+	 *            the TCP port of the module
+	 * @param connectTimeout
+	 *            the connect timeout in milliseconds, 0 for no timeout
+	 * @param readTimeout
+	 *            the read timeout in milliseconds, 0 for no timeout
+	 * @param tcpNoDelay
+	 *            whether Nagle's algorithm is disabled
+	 * @param keepAlive
+	 *            whether TCP keepalive is enabled
+	 */
+	NurSocketTransport(String host, int port, int connectTimeout, int readTimeout, boolean tcpNoDelay, boolean keepAlive) {
+		this.host = host;
+		this.port = port;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.tcpNoDelay = tcpNoDelay;
+		this.keepAlive = keepAlive;
+	}
+
+	String getHost() {
+		return host;
+	}
+
+	int getPort() {
+		return port;
+	}
+
+	Socket getSocket() {
+		return socket;
+	}
+
+	@Override
+	public synchronized void connect() throws Exception {
+		if (isConnected())
+			return;
+
+		log.log(Level.FINER, "Connecting to {0}:{1}", new Object[] { host, port });
+
+		Socket socket = new Socket();
+		try {
+			socket.setTcpNoDelay(tcpNoDelay);
+			socket.setKeepAlive(keepAlive);
+			socket.setSoTimeout(readTimeout);
+			socket.connect(new InetSocketAddress(host, port), connectTimeout);
+			this.input = socket.getInputStream();
+			this.output = socket.getOutputStream();
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		this.socket = socket;
+	}
+
+	@Override
+	public synchronized void disconnect() {
+		if (socket == null)
+			return;
+
+		log.log(Level.FINER, "Disconnecting from {0}:{1}", new Object[] { host, port });
+		try {
+			socket.close();
+		} catch (IOException e) {
+			log.log(Level.FINE, "Failed to close socket: {0}", e);
+		}
+		socket = null;
+		input = null;
+		output = null;
+	}
+
+	@Override
+	public boolean isConnected() {
+		Socket socket = this.socket;
+		return socket != null && socket.isConnected() && !socket.isClosed();
+	}
+
+	/**
+	 * Reads the available data. If no data is received within the read
+	 * timeout, 0 is returned.
+	 *
+	 * @throws IOException
+	 *             if the connection is not open or has been closed by the
+	 *             module
+	 */
+	@Override
+	public int readData(byte[] buffer) throws Exception {
+		InputStream input = this.input;
+		if (input == null)
+			throw new IOException("Not connected to " + host + ":" + port);
+
+		int count;
+		try {
+			count = input.read(buffer);
+		} catch (SocketTimeoutException e) {
+			return 0;
+		}
+
+		if (count < 0) {
+			disconnect();
+			throw new IOException("Connection closed by " + host + ":" + port);
+		}
+		return count;
+	}
+
+	@Override
+	public int writeData(byte[] buffer, int len) throws Exception {
+		OutputStream output = this.output;
+		if (output == null)
+			throw new IOException("Not connected to " + host + ":" + port);
+
+		output.write(buffer, 0, len);
+		output.flush();
+		return len;
+	}
+
+	/*
+	 * The following methods are part of the transport interface of newer NUR
+	 * API versions only.
+	 */
+
+	public boolean disableAck() {
+		return true;
+	}
+
+	public String getAddress() {
+		return host + ":" + port;
+	}
+}
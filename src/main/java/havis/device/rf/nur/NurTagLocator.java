@@ -0,0 +1,304 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.util.RFUtils;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurApi;
+
+/**
+ * Locates a single transponder identified by its EPC or TID using the
+ * continuous trace tag mode of the module. Each trace reports the RSSI and
+ * antenna of the transponder, the channel is taken from the frequency hop
+ * events of the module. The samples are kept in a ring buffer of fixed size
+ * which does not allocate memory per sample, and an exponential moving
+ * average of the RSSI is maintained for smoothing.
+ */
+public class NurTagLocator {
+
+	private static final Logger log = Logger.getLogger(NurTagLocator.class.getName());
+
+	/**
+	 * A single sample. Instances are filled by the locator and may be reused
+	 * by the caller.
+	 */
+	public static class Sample {
+		long sequence;
+		long timestamp;
+		int rssi;
+		int scaledRssi;
+		double smoothedRssi;
+		short antenna;
+		short channel;
+
+		/**
+		 * @return the number of the sample, starting at 0
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return the time the sample was received in milliseconds since the
+		 *         epoch
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return the RSSI in dBm
+		 */
+		public int getRssi() {
+			return rssi;
+		}
+
+		/**
+		 * @return the RSSI scaled to the range from 0 to 100
+		 */
+		public int getScaledRssi() {
+			return scaledRssi;
+		}
+
+		/**
+		 * @return the exponential moving average of the RSSI in dBm including
+		 *         this sample
+		 */
+		public double getSmoothedRssi() {
+			return smoothedRssi;
+		}
+
+		/**
+		 * @return the antenna ID starting at 1
+		 */
+		public short getAntenna() {
+			return antenna;
+		}
+
+		/**
+		 * @return the channel index or -1 if unknown
+		 */
+		public short getChannel() {
+			return channel;
+		}
+	}
+
+	/**
+	 * Listener notified of each sample.
+	 */
+	public interface Listener {
+		/**
+		 * Called by the event thread of the NUR API for each sample. The
+		 * sample instance is reused for the next call and must not be kept.
+		 *
+		 * @param sample
+		 *            the sample
+		 */
+		void sampleReceived(Sample sample);
+	}
+
+	private final int bank;
+	private final int bitAddress;
+	private final byte[] mask;
+
+	private final long[] timestamps;
+	private final int[] rssis;
+	private final int[] scaledRssis;
+	private final double[] smoothedRssis;
+	private final short[] antennas;
+	private final short[] channels;
+
+	/* the sample passed to the listener */
+	private final Sample current = new Sample();
+
+	private double smoothing = 1;
+	private Listener listener;
+
+	private long count;
+	private volatile short channel = -1;
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param bank
+	 *            the memory bank identifying the transponder
+	 * @param bitAddress
+	 *            the bit address of the mask within the bank
+	 * @param mask
+	 *            the data identifying the transponder
+	 * @param capacity
+	 *            the number of samples kept
+	 * @throws IllegalArgumentException
+	 *             if the mask is empty or the capacity is less than 1
+	 */
+	NurTagLocator(int bank, int bitAddress, byte[] mask, int capacity) {
+		if (mask == null || mask.length == 0)
+			throw new IllegalArgumentException("The transponder to locate must be identified by data");
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+		this.bank = bank;
+		this.bitAddress = bitAddress;
+		this.mask = Arrays.copyOf(mask, mask.length);
+
+		this.timestamps = new long[capacity];
+		this.rssis = new int[capacity];
+		this.scaledRssis = new int[capacity];
+		this.smoothedRssis = new double[capacity];
+		this.antennas = new short[capacity];
+		this.channels = new short[capacity];
+	}
+
+	/**
+	 * Creates a locator for the transponder with the given EPC.
+	 *
+	 * @param epc
+	 *            the EPC
+	 * @param capacity
+	 *            the number of samples kept
+	 * @return the locator
+	 */
+	public static NurTagLocator forEpc(byte[] epc, int capacity) {
+		return new NurTagLocator(NurApi.BANK_EPC, 32, epc, capacity);
+	}
+
+	/**
+	 * Creates a locator for the transponder with the given TID.
+	 *
+	 * @param tid
+	 *            the TID bank data starting at word 0, usually including the
+	 *            serial number
+	 * @param capacity
+	 *            the number of samples kept
+	 * @return the locator
+	 */
+	public static NurTagLocator forTid(byte[] tid, int capacity) {
+		return new NurTagLocator(NurApi.BANK_TID, 0, tid, capacity);
+	}
+
+	int getBank() {
+		return bank;
+	}
+
+	int getBitAddress() {
+		return bitAddress;
+	}
+
+	byte[] getMask() {
+		return mask;
+	}
+
+	/**
+	 * @param smoothing
+	 *            the weight of a new sample in the moving average of the RSSI
+	 *            from 0 (exclusive) to 1, 1 disables smoothing (default)
+	 * @throws IllegalArgumentException
+	 *             if the weight is out of range
+	 */
+	public synchronized void setSmoothing(double smoothing) {
+		if (!(smoothing > 0 && smoothing <= 1))
+			throw new IllegalArgumentException("Invalid smoothing: " + smoothing);
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * @param listener
+	 *            the listener notified of each sample or null
+	 */
+	public synchronized void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the number of samples received, the sequence number of the next
+	 *         sample
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets a sample from the ring buffer.
+	 *
+	 * @param sequence
+	 *            the sequence number of the sample
+	 * @param sample
+	 *            the instance to fill
+	 * @return false if the sample has not been received yet or has been
+	 *         overwritten
+	 */
+	public synchronized boolean getSample(long sequence, Sample sample) {
+		if (sequence < 0 || sequence >= count || sequence < count - timestamps.length)
+			return false;
+
+		int index = (int) (sequence % timestamps.length);
+		sample.sequence = sequence;
+		sample.timestamp = timestamps[index];
+		sample.rssi = rssis[index];
+		sample.scaledRssi = scaledRssis[index];
+		sample.smoothedRssi = smoothedRssis[index];
+		sample.antenna = antennas[index];
+		sample.channel = channels[index];
+		return true;
+	}
+
+	/**
+	 * Gets the latest sample.
+	 *
+	 * @param sample
+	 *            the instance to fill
+	 * @return false if no sample has been received yet
+	 */
+	public synchronized boolean getLatest(Sample sample) {
+		return getSample(count - 1, sample);
+	}
+
+	/**
+	 * Stores a trace of the transponder reported by the module.
+	 *
+	 * @param rssi
+	 *            the RSSI in dBm
+	 * @param scaledRssi
+	 *            the RSSI scaled to the range from 0 to 100
+	 * @param antennaId
+	 *            the NUR API antenna ID starting at 0
+	 */
+	synchronized void traced(int rssi, int scaledRssi, int antennaId) {
+		int index = (int) (count % timestamps.length);
+		double smoothed = count == 0 ? rssi : smoothedRssis[(int) ((count - 1) % timestamps.length)] * (1 - smoothing) + rssi * smoothing;
+
+		current.sequence = count;
+		current.timestamp = timestamps[index] = System.currentTimeMillis();
+		current.rssi = rssis[index] = rssi;
+		current.scaledRssi = scaledRssis[index] = scaledRssi;
+		current.smoothedRssi = smoothedRssis[index] = smoothed;
+		current.antenna = antennas[index] = (short) (antennaId + 1);
+		current.channel = channels[index] = channel;
+		count++;
+
+		if (listener != null) {
+			try {
+				listener.sampleReceived(current);
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Locator listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Stores the channel the module hopped to.
+	 *
+	 * @param channel
+	 *            the channel index
+	 */
+	void hopped(int channel) {
+		this.channel = (short) channel;
+	}
+
+	@Override
+	public String toString() {
+		return "NurTagLocator [bank=" + bank + ", bitAddress=" + bitAddress + ", mask=" + RFUtils.bytesToHex(mask) + "]";
+	}
+}
@@ -10,6 +10,8 @@ import havis.device.rf.tag.TagData;
 import havis.device.rf.tag.operation.CustomOperation;
 import havis.device.rf.tag.operation.KillOperation;
 import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.LockOperation.Field;
+import havis.device.rf.tag.operation.LockOperation.Privilege;
 import havis.device.rf.tag.operation.ReadOperation;
 import havis.device.rf.tag.operation.WriteOperation;
 import havis.device.rf.tag.result.CustomResult;
@@ -20,6 +22,7 @@ import havis.device.rf.tag.result.ReadResult.Result;
 import havis.device.rf.tag.result.WriteResult;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
@@ -27,6 +30,7 @@ import java.util.logging.Logger;
 
 import com.nordicid.nurapi.CustomExchangeParams;
 import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
 import com.nordicid.nurapi.NurApiException;
 import com.nordicid.nurapi.NurRespCustomExchange;
 import com.nordicid.nurapi.NurTag;
@@ -40,8 +44,6 @@ import com.nordicid.nurapi.NurTag;
 class NurTagProcessor {
 
 	private static final byte[] ETB_SENSOR_BYTES_DEPRECATED = new byte[] { (byte) 0xE0, 0x02, 0x48, 0x00, 0x00, 0x00 };
-	private static final byte[] ETB_SENSOR_VENDOR_ID = new byte[] { 0x00, 0x0B };
-	private static final byte[] ETB_SENSOR_MODEL_ID = new byte[] { 0x00, 0x40 };
 
 	private static final Logger log = Logger.getLogger(NurTagProcessor.class.getName());
 
@@ -57,7 +59,12 @@ class NurTagProcessor {
 	 * least number of words a TID bank with XTID and serial part contains (96
 	 * bit = 12 byte = 6 words)
 	 */
-	private static final int WORD_COUNT_TID_BANK_WITH_SERIAL = 6;
+	protected static final int WORD_COUNT_TID_BANK_WITH_SERIAL = 6;
+
+	/**
+	 * number of EPC words read together with the PC on direct access (96 bit)
+	 */
+	private static final int WORD_COUNT_DIRECT_EPC = 6;
 
 	/**
 	 * number of words of the reserved bank (2 * 32 bit = 2 * 2 words = 4 words)
@@ -173,11 +180,16 @@ class NurTagProcessor {
 			else
 				tidData = irData;
 
-			/* calculate the length of the TID bank from irData */
+			/* take the length of the TID bank from the registry if known */
+			NurChipRegistry.Chip chip = NurChipRegistry.getInstance().get(tidData);
 			int tidLenBits = 48;
 
 			boolean hasXtidHeader = tidData.length > 0 && (tidData[1] & 0x80) == 0x80;
-			if (hasXtidHeader) {
+			if (chip != null && chip.getTidWords() != null) {
+				tidLenBits = chip.getTidWords() * 16;
+				if (tidLenBits / 8 < tidData.length)
+					tidData = Arrays.copyOf(tidData, tidLenBits / 8);
+			} else if (hasXtidHeader) {
 				int serialLenBits = (tidData[4] & 0b1110_0000) >> 5;
 				int serialLen = 0;
 				if (serialLenBits > 0) {
@@ -215,6 +227,41 @@ class NurTagProcessor {
 		}
 
 		else if (ro.getBank() == NurApi.BANK_USER) {
+			/*
+			 * read the exact size of the user bank if the chip is known,
+			 * otherwise learn the size of the transponder model once
+			 */
+			byte[] tid = irData != null ? irData : nurTag != null ? nurTag.getIrData() : null;
+			NurChipRegistry.Chip chip = NurChipRegistry.getInstance().get(tid);
+			Integer userWords = chip != null ? chip.getUserWords() : null;
+			if (userWords == null && NurUserBankSizeCache.key(tid) != null) {
+				NurUserBankSizeCache cache = NurUserBankSizeCache.getInstance();
+				userWords = cache.get(tid);
+				if (userWords == null) {
+					userWords = learnUserBankWords(sing, ro.getPassword());
+					if (userWords != null)
+						cache.put(tid, userWords);
+				}
+			}
+
+			if (userWords != null) {
+				ReadResult rdRes;
+				if (userWords > ro.getOffset())
+					rdRes = read(sing, RFUtils.newReadOperation(ro.getOperationId(), ro.getBank(), ro.getOffset(), userWords - ro.getOffset(),
+							ro.getPassword()), null);
+				else {
+					rdRes = new ReadResult();
+					rdRes.setOperationId(ro.getOperationId());
+					rdRes.setReadData(new byte[] {});
+					rdRes.setResult(Result.MEMORY_OVERRUN_ERROR);
+				}
+
+				if (log.isLoggable(Level.FINER))
+					log.exiting(getClass().getName(), "readCompleteBank", RFUtils.serialize(rdRes));
+
+				return rdRes;
+			}
+
 			ReadOperation newRdOp = RFUtils.newReadOperation(ro.getOperationId(), ro.getBank(), ro.getOffset(), USR_BANK_WORD_COUNT - ro.getOffset(),
 					ro.getPassword());
 
@@ -257,6 +304,35 @@ class NurTagProcessor {
 		return res;
 	}
 
+	/**
+	 * Determines the size of the user bank by a binary search probing single
+	 * words up to {@link NurEnvironment#USER_BANK_MAX_WORDS}.
+	 * 
+	 * @param sing
+	 *            a {@link Singulation} instance
+	 * @param password
+	 *            the access password
+	 * @return the number of words or null if a probe failed for another reason
+	 *         than a memory overrun
+	 */
+	private Integer learnUserBankWords(Singulation sing, int password) {
+		int low = 0;
+		int high = NurEnvironment.USER_BANK_MAX_WORDS;
+		while (low < high) {
+			int words = (low + high + 1) / 2;
+			ReadResult probe = read(sing, RFUtils.newReadOperation("probe", RFUtils.BANK_USR, words - 1, 1, password), null);
+			if (probe.getResult() == Result.SUCCESS)
+				low = words;
+			else if (probe.getResult() == Result.MEMORY_OVERRUN_ERROR)
+				high = words - 1;
+			else {
+				log.log(Level.FINE, "Learning the user bank size failed: {0}", probe.getResult());
+				return null;
+			}
+		}
+		return low;
+	}
+
 	/**
 	 * Reads a tag based on a specific {@link ReadOperation} instance
 	 * 
@@ -333,7 +409,60 @@ class NurTagProcessor {
 	}
 
 	/**
-	 * Writes data to a tag based on a {@link WriteOperation} instance.
+	 * Reads the word ranges of several read operations on the same bank with
+	 * the same password using a single read command covering all ranges. The
+	 * ranges must be adjacent or overlapping.
+	 * 
+	 * @param sing
+	 *            a {@link Singulation} instance containing the data to
+	 *            singulate the tag
+	 * @param ros
+	 *            the {@link ReadOperation} instances
+	 * 
+	 * @return a {@link ReadResult} instance per read operation or null if the
+	 *         combined read failed. In this case the operations must be
+	 *         performed individually to get their specific results.
+	 */
+	protected List<ReadResult> readCoalesced(Singulation sing, List<ReadOperation> ros) {
+		if (log.isLoggable(Level.FINER))
+			log.entering(getClass().getName(), "readCoalesced", new Object[] { RFUtils.serialize(sing), RFUtils.serializeList(ros, ReadOperation.class) });
+
+		ReadOperation first = ros.get(0);
+		int start = first.getOffset();
+		int end = first.getOffset() + first.getLength();
+		for (ReadOperation ro : ros) {
+			start = Math.min(start, ro.getOffset());
+			end = Math.max(end, ro.getOffset() + ro.getLength());
+		}
+
+		ReadOperation combined = new ReadOperation();
+		combined.setOperationId(first.getOperationId());
+		combined.setBank(first.getBank());
+		combined.setPassword(first.getPassword());
+		combined.setOffset((short) start);
+		combined.setLength((short) (end - start));
+
+		ReadResult combinedRes = read(sing, combined, null);
+		List<ReadResult> results = null;
+		if (combinedRes.getResult() == ReadResult.Result.SUCCESS && combinedRes.getReadData().length == 2 * (end - start)) {
+			results = new ArrayList<>(ros.size());
+			for (ReadOperation ro : ros) {
+				ReadResult res = new ReadResult();
+				res.setOperationId(ro.getOperationId());
+				res.setReadData(Arrays.copyOfRange(combinedRes.getReadData(), 2 * (ro.getOffset() - start), 2 * (ro.getOffset() + ro.getLength() - start)));
+				res.setResult(ReadResult.Result.SUCCESS);
+				results.add(res);
+			}
+		}
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(getClass().getName(), "readCoalesced", results != null ? RFUtils.serializeList(results, ReadResult.class) : null);
+		return results;
+	}
+
+	/**
+	 * Writes data to a tag based on a {@link WriteOperation} instance using the
+	 * configured block write size.
 	 * 
 	 * @param sing
 	 *            a {@link Singulation} instance containing the singulation
@@ -343,22 +472,212 @@ class NurTagProcessor {
 	 * @return a {@link WriteResult} instance.
 	 */
 	protected WriteResult write(Singulation sing, WriteOperation wo) {
+		return write(sing, wo, NurEnvironment.BLOCK_WRITE_SIZE);
+	}
+
+	/**
+	 * Writes data to a tag based on a {@link WriteOperation} instance. If a
+	 * block size of more than one word is given, the data is written with
+	 * BlockWrite commands of that size aligned to block boundaries. If a block
+	 * write fails, the remaining data is written word by word. On failure, the
+	 * result reports the number of words written so far.
+	 * 
+	 * @param sing
+	 *            a {@link Singulation} instance containing the singulation
+	 *            data.
+	 * @param wo
+	 *            a {@link WriteOperation} instance.
+	 * @param blockSize
+	 *            the number of words per BlockWrite command supported by the
+	 *            tag, a value less than 2 disables block writes.
+	 * @return a {@link WriteResult} instance.
+	 */
+	protected WriteResult write(Singulation sing, WriteOperation wo, int blockSize) {
 		if (log.isLoggable(Level.FINER))
-			log.entering(getClass().getName(), "write", new Object[] { RFUtils.serialize(sing), RFUtils.serialize(wo) });
+			log.entering(getClass().getName(), "write", new Object[] { RFUtils.serialize(sing), RFUtils.serialize(wo), blockSize });
 
 		WriteResult res = new WriteResult();
 		res.setOperationId(wo.getOperationId());
-		try {
 
-			if (wo.getPassword() == 0)
-				nurApi.writeTag(sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), wo.getBank(), wo.getOffset(), wo.getData().length,
-						wo.getData());
-			else
-				nurApi.writeTag(wo.getPassword(), sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), wo.getBank(), wo.getOffset(),
-						wo.getData().length, wo.getData());
+		int words = wo.getData().length / 2;
+		if (blockSize > 1 && words > 1)
+			writeBlocks(sing, wo, blockSize, res);
+		else {
+			try {
+
+				if (wo.getPassword() == 0)
+					nurApi.writeTag(sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), wo.getBank(), wo.getOffset(), wo.getData().length,
+							wo.getData());
+				else
+					nurApi.writeTag(wo.getPassword(), sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), wo.getBank(), wo.getOffset(),
+							wo.getData().length, wo.getData());
+
+				res.setResult(WriteResult.Result.SUCCESS);
+				res.setWordsWritten((short) words);
+
+			} catch (NurApiException e) {
+				log.log(Level.FINE, "Error occured during write: {0}", e);
+				res.setResult(NurErrorMap.nurApiExceptionToWriteResult(e, wo.getPassword() != 0));
+
+			} catch (Exception e) {
+				log.log(Level.FINE, "Error occured during write: {0}", e);
+				res.setResult(WriteResult.Result.NON_SPECIFIC_TAG_ERROR);
+			}
+		}
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(getClass().getName(), "write", RFUtils.serialize(res));
+
+		return res;
+	}
+
+	/**
+	 * Writes only the words of a {@link WriteOperation} which differ from the
+	 * current memory content of the tag. If the current content is not given,
+	 * it is read from the tag first. Unchanged words are reported as written.
+	 * If reading the current content fails, all words are written. The
+	 * singulation data is updated after each written run of changed words.
+	 * 
+	 * @param sing
+	 *            a {@link Singulation} instance containing the singulation
+	 *            data.
+	 * @param wo
+	 *            a {@link WriteOperation} instance.
+	 * @param blockSize
+	 *            the number of words per BlockWrite command supported by the
+	 *            tag, a value less than 2 disables block writes.
+	 * @param current
+	 *            the current content of the memory range written or null if
+	 *            unknown
+	 * @return a {@link WriteResult} instance.
+	 */
+	protected WriteResult writeChanged(Singulation sing, WriteOperation wo, int blockSize, byte[] current) {
+		if (log.isLoggable(Level.FINER))
+			log.entering(getClass().getName(), "writeChanged",
+					new Object[] { RFUtils.serialize(sing), RFUtils.serialize(wo), blockSize, RFUtils.serialize(current) });
+
+		byte[] data = wo.getData();
+		if (current == null) {
+			ReadOperation ro = new ReadOperation();
+			ro.setOperationId(wo.getOperationId());
+			ro.setBank(wo.getBank());
+			ro.setOffset(wo.getOffset());
+			ro.setLength((short) (data.length / 2));
+			ro.setPassword(wo.getPassword());
+			ReadResult rdRes = read(sing, ro, null);
+			if (rdRes.getResult() == ReadResult.Result.SUCCESS && rdRes.getReadData().length == data.length)
+				current = rdRes.getReadData();
+		}
 
+		WriteResult res;
+		if (current == null) {
+			log.finer("Reading the current memory content failed, writing all words.");
+			res = write(sing, wo, blockSize);
+		} else {
+			res = new WriteResult();
+			res.setOperationId(wo.getOperationId());
+			res.setResult(WriteResult.Result.SUCCESS);
+			res.setWordsWritten((short) (data.length / 2));
+
+			int word = 0;
+			while (word < data.length / 2) {
+				if (data[2 * word] == current[2 * word] && data[2 * word + 1] == current[2 * word + 1]) {
+					word++;
+					continue;
+				}
+
+				int end = word + 1;
+				while (end < data.length / 2 && (data[2 * end] != current[2 * end] || data[2 * end + 1] != current[2 * end + 1]))
+					end++;
+
+				WriteOperation run = new WriteOperation();
+				run.setOperationId(wo.getOperationId());
+				run.setBank(wo.getBank());
+				run.setOffset((short) (wo.getOffset() + word));
+				run.setPassword(wo.getPassword());
+				run.setData(Arrays.copyOfRange(data, 2 * word, 2 * end));
+
+				WriteResult runRes = write(sing, run, blockSize);
+				if (runRes.getResult() != WriteResult.Result.SUCCESS) {
+					res.setResult(runRes.getResult());
+					res.setWordsWritten((short) (word + runRes.getWordsWritten()));
+					break;
+				}
+				/* the next run has to singulate by the new content */
+				sing.dataWritten(run.getBank(), run.getOffset(), run.getData());
+				word = end;
+			}
+		}
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(getClass().getName(), "writeChanged", RFUtils.serialize(res));
+
+		return res;
+	}
+
+	/**
+	 * Returns the current memory content of the range of a
+	 * {@link WriteOperation} if it is known without accessing the tag, i.e.
+	 * from the EPC of the inventory or from the data read during inventory.
+	 * 
+	 * @param nurTag
+	 *            the {@link NurTag} instance
+	 * @param wo
+	 *            the {@link WriteOperation} instance
+	 * @param epcTracked
+	 *            whether changes of the EPC are tracked in the user data of
+	 *            the NUR tag, otherwise the EPC may be outdated
+	 * @param irData
+	 *            the data read from TID bank during inventory or null
+	 * @return the current content or null if unknown
+	 */
+	static byte[] getKnownData(NurTag nurTag, WriteOperation wo, boolean epcTracked, byte[] irData) {
+		int start = 2 * wo.getOffset();
+		int end = start + wo.getData().length;
+		if (wo.getBank() == RFUtils.BANK_EPC && epcTracked) {
+			/* the EPC starts after CRC and PC */
+			byte[] epc = (nurTag.getUserdata() != null && nurTag.getUserdata() instanceof byte[]) ? (byte[]) nurTag.getUserdata() : nurTag.getEpc();
+			if (epc != null && start >= 4 && end <= 4 + epc.length)
+				return Arrays.copyOfRange(epc, start - 4, end - 4);
+		} else if (wo.getBank() == RFUtils.BANK_TID && irData != null && end <= irData.length)
+			return Arrays.copyOfRange(irData, start, end);
+		return null;
+	}
+
+	private void writeBlocks(Singulation sing, WriteOperation wo, int blockSize, WriteResult res) {
+		byte[] data = wo.getData();
+		int words = data.length / 2;
+		int written = 0;
+		boolean blocks = true;
+		try {
+			while (written < words) {
+				int address = wo.getOffset() + written;
+				if (blocks) {
+					/* blocks are aligned to the block size */
+					int count = Math.min(blockSize - address % blockSize, words - written);
+					byte[] block = Arrays.copyOfRange(data, 2 * written, 2 * (written + count));
+					try {
+						nurApi.blockWrite(wo.getPassword(), wo.getPassword() != 0, sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(),
+								wo.getBank(), address, count * 2, block, count);
+						/* the next command has to singulate by the new content */
+						sing.dataWritten(wo.getBank(), address, block);
+						written += count;
+						continue;
+					} catch (NurApiException e) {
+						log.log(Level.FINE, "Block write failed, writing the remaining words one by one: {0}", e);
+						blocks = false;
+					}
+				}
+
+				byte[] word = Arrays.copyOfRange(data, 2 * written, 2 * written + 2);
+				if (wo.getPassword() == 0)
+					nurApi.writeTag(sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), wo.getBank(), address, 2, word);
+				else
+					nurApi.writeTag(wo.getPassword(), sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), wo.getBank(), address, 2, word);
+				sing.dataWritten(wo.getBank(), address, word);
+				written++;
+			}
 			res.setResult(WriteResult.Result.SUCCESS);
-			res.setWordsWritten((short) (wo.getData().length / 2));
 
 		} catch (NurApiException e) {
 			log.log(Level.FINE, "Error occured during write: {0}", e);
@@ -368,11 +687,7 @@ class NurTagProcessor {
 			log.log(Level.FINE, "Error occured during write: {0}", e);
 			res.setResult(WriteResult.Result.NON_SPECIFIC_TAG_ERROR);
 		}
-
-		if (log.isLoggable(Level.FINER))
-			log.exiting(getClass().getName(), "write", RFUtils.serialize(res));
-
-		return res;
+		res.setWordsWritten((short) written);
 	}
 
 	/**
@@ -397,44 +712,8 @@ class NurTagProcessor {
 		res.setOperationId(lo.getOperationId());
 
 		try {
-			int lockAction;
-			switch (lo.getPrivilege()) {
-			case UNLOCK:
-				lockAction = NurApi.LOCK_ACTION_OPEN;
-				break;
-			case LOCK:
-				lockAction = NurApi.LOCK_ACTION_SECURED;
-				break;
-			case PERMAUNLOCK:
-				lockAction = NurApi.LOCK_ACTION_PERMAWRITE;
-				break;
-			case PERMALOCK:
-				lockAction = NurApi.LOCK_ACTION_PERMALOCK;
-				break;
-			default:
-				throw new ParameterException("Unrecognized enum constant for privilege received: " + lo.getPrivilege());
-			}
-
-			int lockMemory;
-			switch (lo.getField()) {
-			case ACCESS_PASSWORD:
-				lockMemory = NurApi.LOCK_MEMORY_ACCESSPWD;
-				break;
-			case KILL_PASSWORD:
-				lockMemory = NurApi.LOCK_MEMORY_KILLPWD;
-				break;
-			case EPC_MEMORY:
-				lockMemory = NurApi.LOCK_MEMORY_EPCMEM;
-				break;
-			case TID_MEMORY:
-				lockMemory = NurApi.LOCK_MEMORY_TIDMEM;
-				break;
-			case USER_MEMORY:
-				lockMemory = NurApi.LOCK_MEMORY_USERMEM;
-				break;
-			default:
-				throw new ParameterException("Unrecognized enum constant for field received: " + lo.getField());
-			}
+			int lockAction = getLockAction(lo.getPrivilege());
+			int lockMemory = getLockMemory(lo.getField());
 
 			nurApi.setLock(lo.getPassword(), sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), lockMemory, lockAction);
 
@@ -459,6 +738,111 @@ class NurTagProcessor {
 		return res;
 	}
 
+	/**
+	 * Locks several fields of a tag with a single lock command. The lock
+	 * operations must have the same password and privilege, since the lock
+	 * command applies one action to all fields of its memory mask.
+	 * 
+	 * @param sing
+	 *            a {@link Singulation} instance containing the singulation
+	 *            data.
+	 * @param los
+	 *            the {@link LockOperation} instances.
+	 * @return a {@link LockResult} instance per lock operation, all reporting
+	 *         the outcome of the combined lock command.
+	 * @throws ParameterException
+	 *             if a lock operation contains an unexpected privilege or
+	 *             field.
+	 */
+	protected List<LockResult> lock(Singulation sing, List<LockOperation> los) throws ParameterException {
+
+		if (log.isLoggable(Level.FINER))
+			log.entering(getClass().getName(), "lock", new Object[] { RFUtils.serialize(sing), RFUtils.serializeList(los, LockOperation.class) });
+
+		LockOperation first = los.get(0);
+		int lockAction = getLockAction(first.getPrivilege());
+		int lockMemory = 0;
+		for (LockOperation lo : los)
+			lockMemory |= getLockMemory(lo.getField());
+
+		LockResult.Result result;
+		try {
+			nurApi.setLock(first.getPassword(), sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), lockMemory, lockAction);
+			result = LockResult.Result.SUCCESS;
+
+		} catch (NurApiException e) {
+			log.log(Level.FINE, "Error occured during lock: {0}", e);
+			result = NurErrorMap.nurApiExceptionToLockResult(e);
+
+		} catch (Exception e) {
+			log.log(Level.FINE, "Error occured during lock: {0}", e);
+			result = LockResult.Result.NON_SPECIFIC_TAG_ERROR;
+		}
+
+		List<LockResult> results = new ArrayList<>(los.size());
+		for (LockOperation lo : los) {
+			LockResult res = new LockResult();
+			res.setOperationId(lo.getOperationId());
+			res.setResult(result);
+			results.add(res);
+		}
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(getClass().getName(), "lock", RFUtils.serializeList(results, LockResult.class));
+
+		return results;
+	}
+
+	/**
+	 * Maps a lock privilege to the lock action of the NUR API.
+	 * 
+	 * @param privilege
+	 *            the privilege
+	 * @return the lock action
+	 * @throws ParameterException
+	 *             if the privilege is unexpected
+	 */
+	static int getLockAction(Privilege privilege) throws ParameterException {
+		switch (privilege) {
+		case UNLOCK:
+			return NurApi.LOCK_ACTION_OPEN;
+		case LOCK:
+			return NurApi.LOCK_ACTION_SECURED;
+		case PERMAUNLOCK:
+			return NurApi.LOCK_ACTION_PERMAWRITE;
+		case PERMALOCK:
+			return NurApi.LOCK_ACTION_PERMALOCK;
+		default:
+			throw new ParameterException("Unrecognized enum constant for privilege received: " + privilege);
+		}
+	}
+
+	/**
+	 * Maps a lock field to the memory mask bit of the NUR API.
+	 * 
+	 * @param field
+	 *            the field
+	 * @return the memory mask bit
+	 * @throws ParameterException
+	 *             if the field is unexpected
+	 */
+	static int getLockMemory(Field field) throws ParameterException {
+		switch (field) {
+		case ACCESS_PASSWORD:
+			return NurApi.LOCK_MEMORY_ACCESSPWD;
+		case KILL_PASSWORD:
+			return NurApi.LOCK_MEMORY_KILLPWD;
+		case EPC_MEMORY:
+			return NurApi.LOCK_MEMORY_EPCMEM;
+		case TID_MEMORY:
+			return NurApi.LOCK_MEMORY_TIDMEM;
+		case USER_MEMORY:
+			return NurApi.LOCK_MEMORY_USERMEM;
+		default:
+			throw new ParameterException("Unrecognized enum constant for field received: " + field);
+		}
+	}
+
 	/**
 	 * Kills a tag based on a {@link KillOperation} instance.
 	 * 
@@ -599,9 +983,10 @@ class NurTagProcessor {
 		byte[] tid = tag.getIrData();
 		if (operation.getLength() > 32 && operation.getData() != null && operation.getData().length > 4 && tid != null && tid.length >= 4) {
 			// ETB sensor
-			if (operation.getData()[0] == ETB_SENSOR_VENDOR_ID[0] && operation.getData()[1] == ETB_SENSOR_VENDOR_ID[1]
-					&& operation.getData()[2] == ETB_SENSOR_MODEL_ID[0] && operation.getData()[3] == ETB_SENSOR_MODEL_ID[1]
-					&& matchesVendorAndModel(tid, ETB_SENSOR_VENDOR_ID, ETB_SENSOR_MODEL_ID)) {
+			NurChipRegistry.Chip chip = NurChipRegistry.getInstance().get(tid);
+			if (chip != null && chip.supportsCustomCommand(NurChipRegistry.COMMAND_ETB_SENSOR)
+					&& ((operation.getData()[0] & 0xff) << 8 | (operation.getData()[1] & 0xff)) == chip.getMdid()
+					&& ((operation.getData()[2] & 0xff) << 8 | (operation.getData()[3] & 0xff)) == chip.getTmn()) {
 				byte[] data = new byte[operation.getData().length - 4];
 				for (int i = 0; i < data.length; i++)
 					data[i] = operation.getData()[i + 4];
@@ -612,9 +997,63 @@ class NurTagProcessor {
 		return null;
 	}
 
-	private boolean matchesVendorAndModel(byte[] tid, byte[] vendor, byte[] model) {
-		return /* vendor */RFUtils.equal(vendor, RFUtils.shift(new byte[] { tid[1], tid[2] }, -4), 9, 7)
-				&& /* model */RFUtils.equal(model, new byte[] { tid[2], tid[3] }, 12, 4);
+	/**
+	 * Accesses a tag singulated by its complete TID without inventory by
+	 * reading PC and EPC. The PC is read together with an EPC of 96 bits, so a
+	 * second read is only required for EPCs of other lengths.
+	 * 
+	 * @param sing
+	 *            a {@link Singulation} instance with TID singulation data
+	 * @param antennaId
+	 *            the zero based ID of the antenna used for the access
+	 * @return a {@link NurTag} instance holding PC and EPC and the TID as IR
+	 *         data or null if no tag responded
+	 * @throws Exception
+	 *             if the access fails for another reason
+	 */
+	protected NurTag accessDirectly(Singulation sing, int antennaId) throws Exception {
+		if (log.isLoggable(Level.FINER))
+			log.entering(getClass().getName(), "accessDirectly", new Object[] { RFUtils.serialize(sing), antennaId });
+
+		NurTag res = null;
+		try {
+			byte[] data;
+			try {
+				data = nurApi.readTag(sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), NurApi.BANK_EPC, 1, 2 + WORD_COUNT_DIRECT_EPC * 2);
+			} catch (NurApiException e) {
+				if (e.error != NurApiErrors.G2_TAG_MEM_OVERRUN)
+					throw e;
+				/* EPC bank is smaller, read PC only */
+				data = nurApi.readTag(sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), NurApi.BANK_EPC, 1, 2);
+			}
+
+			int pc = (data[0] & 0xff) << 8 | data[1] & 0xff;
+			int epcWords = pc >> 11;
+			byte[] epc;
+			if (epcWords * 2 <= data.length - 2)
+				epc = Arrays.copyOfRange(data, 2, 2 + epcWords * 2);
+			else
+				epc = nurApi.readTag(sing.getBank(), sing.getAddr(), sing.getBitCount(), sing.getData(), NurApi.BANK_EPC, 2, epcWords * 2);
+
+			/* the TID singulating the tag serves as the data read during inventory */
+			final byte[] tid = sing.getBank() == NurApi.BANK_TID && sing.getAddr() == 0 ? sing.getData() : null;
+			res = new NurTag(0, 0, 0, antennaId, 0, pc, epc) {
+				@Override
+				public byte[] getIrData() {
+					return tid;
+				}
+			};
+
+		} catch (NurApiException e) {
+			if (e.error != NurApiErrors.NO_TAG)
+				throw e;
+			log.log(Level.FINE, "No tag responded to direct access: {0}", e);
+		}
+
+		if (log.isLoggable(Level.FINER))
+			log.exiting(getClass().getName(), "accessDirectly", res);
+
+		return res;
 	}
 
 	/**
@@ -912,6 +1351,7 @@ class NurTagProcessor {
 		private int sBank = 0;
 		private int sAddr = 0x00;
 		private byte[] sData = null;
+		private int sBits = -1;
 		private SingulationStrategy strategy;
 
 		/**
@@ -981,6 +1421,22 @@ class NurTagProcessor {
 			return new Singulation(SingulationStrategy.EPC, NurApi.BANK_EPC, EPC_SING_ADDR, epc);
 		}
 
+		/**
+		 * Creates a {@link Singulation} instance for singulation by the
+		 * leading bits of an EPC.
+		 * 
+		 * @param epc
+		 *            an EPC as byte array
+		 * @param bitCount
+		 *            the number of leading EPC bits identifying the tag
+		 * @return a {@link Singulation} instance
+		 */
+		public static Singulation getEPCInstance(byte[] epc, int bitCount) {
+			Singulation res = new Singulation(SingulationStrategy.EPC, NurApi.BANK_EPC, EPC_SING_ADDR, epc);
+			res.sBits = bitCount;
+			return res;
+		}
+
 		/**
 		 * Method to update a NurTag's EPCs that has been changed by a given
 		 * {@link WriteOperation}. Goal of this method is to allow the tag still
@@ -1061,8 +1517,10 @@ class NurTagProcessor {
 			nurTag.setUserdata(newEpc);
 
 			/* Update the singulation data if singulation strategy is EPC. */
-			if (this.strategy == SingulationStrategy.EPC)
+			if (this.strategy == SingulationStrategy.EPC) {
 				this.sData = newEpc;
+				this.sBits = -1;
+			}
 
 			if (log.isLoggable(Level.FINER))
 				log.log(Level.FINER, "New EPC {0} attached to NurTag object {1}", new Object[] { RFUtils.serialize(newEpc), nurTag });
@@ -1071,6 +1529,38 @@ class NurTagProcessor {
 			return newEpc;
 		}
 
+		/**
+		 * Updates the singulation data with data written to the tag, so that
+		 * the tag can still be singulated by subsequent commands if the
+		 * written range overlaps the singulation data, e.g. between the
+		 * commands of a write to the EPC bank under EPC singulation.
+		 *
+		 * @param bank
+		 *            the memory bank written
+		 * @param offset
+		 *            the word address of the written data
+		 * @param data
+		 *            the data written
+		 */
+		protected void dataWritten(int bank, int offset, byte[] data) {
+			if (bank != sBank || sData == null)
+				return;
+
+			/* byte offset of the written data relative to the singulation data */
+			int start = 2 * offset - sAddr / 8;
+			int length = (getBitCount() + 7) / 8;
+			if (start >= length || start + data.length <= 0)
+				return;
+
+			byte[] newData = Arrays.copyOf(sData, sData.length);
+			for (int i = Math.max(0, -start); i < data.length && start + i < length; i++)
+				newData[start + i] = data[i];
+			this.sData = newData;
+
+			if (log.isLoggable(Level.FINER))
+				log.log(Level.FINER, "Singulation data updated to {0}", RFUtils.serialize(newData));
+		}
+
 		/**
 		 * Returns the singulation memory bank.
 		 * 
@@ -1104,7 +1594,9 @@ class NurTagProcessor {
 		 * @return the number of bits of the singulation data.
 		 */
 		public int getBitCount() {
-			return sData == null ? 0 : Math.min(sData.length * 8, MAX_SING_LEN);
+			if (sData == null)
+				return 0;
+			return Math.min(sBits >= 0 ? Math.min(sBits, sData.length * 8) : sData.length * 8, MAX_SING_LEN);
 		}
 
 		/**
@@ -0,0 +1,322 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.result.CustomResult;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stream of the transponders reported by inventory rounds, delivered to any
+ * number of in-process subscribers. Published tags are written to a lock-free
+ * ring buffer by a single producer. Each subscriber reads the ring buffer with
+ * its own cursor on its own dispatch thread, so a slow subscriber never delays
+ * the producer or other subscribers. If a subscriber falls behind by more than
+ * the capacity of the ring buffer, the overwritten tags are dropped according
+ * to the {@link DropPolicy} of the subscriber.
+ *
+ * <p>
+ * Published tags are copied, so the caller of the execute method may modify
+ * its {@link TagData} instances. The copies are shared between all
+ * subscribers and therefore must not be modified.
+ * </p>
+ */
+public class NurTagStream {
+
+	private static final Logger log = Logger.getLogger(NurTagStream.class.getName());
+
+	/**
+	 * Listener receiving the tags of a subscription.
+	 */
+	public interface Listener {
+		/**
+		 * Is called on the dispatch thread of the subscription for each tag
+		 * accepted by the filter of the subscription.
+		 *
+		 * @param tagData
+		 *            the tag, must not be modified
+		 */
+		void tagReceived(TagData tagData);
+	}
+
+	/**
+	 * Filter of a subscription.
+	 */
+	public interface TagFilter {
+		/**
+		 * @param tagData
+		 *            the tag
+		 * @return true if the tag is to be delivered to the listener
+		 */
+		boolean accept(TagData tagData);
+	}
+
+	/**
+	 * Policy applied to a subscriber which fell behind by more than the
+	 * capacity of the ring buffer.
+	 */
+	public enum DropPolicy {
+		/**
+		 * Drops the overwritten tags only and continues with the oldest tag
+		 * still available.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Drops the complete backlog and continues with the next tag
+		 * published.
+		 */
+		DROP_BACKLOG
+	}
+
+	/**
+	 * Immutable ring buffer entry.
+	 */
+	private static class Entry {
+		final long sequence;
+		final TagData tagData;
+
+		Entry(long sequence, TagData tagData) {
+			this.sequence = sequence;
+			this.tagData = tagData;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry> ring;
+	private final int mask;
+
+	/* sequence of the next tag to be published */
+	private final AtomicLong published = new AtomicLong();
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param capacity
+	 *            the minimum capacity of the ring buffer, rounded up to the
+	 *            next power of two
+	 */
+	public NurTagStream(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.ring = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the capacity of the ring buffer.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return ring.length();
+	}
+
+	/**
+	 * Returns whether the stream has any subscribers. Producers may use this
+	 * to skip publishing.
+	 *
+	 * @return true if there is at least one subscriber
+	 */
+	public boolean hasSubscribers() {
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * Publishes copies of tags to all subscribers. Concurrent producers are
+	 * serialized, subscribers read without locking.
+	 *
+	 * @param tags
+	 *            the tags
+	 */
+	synchronized void publish(List<TagData> tags) {
+		if (subscriptions.isEmpty())
+			return;
+
+		long sequence = published.get();
+		for (TagData tagData : tags) {
+			ring.set((int) (sequence & mask), new Entry(sequence, copy(tagData)));
+			sequence++;
+			published.set(sequence);
+		}
+
+		for (Subscription subscription : subscriptions)
+			LockSupport.unpark(subscription.thread);
+	}
+
+	/**
+	 * Copies a tag including its operation results.
+	 */
+	static TagData copy(TagData tagData) {
+		TagData copy = new TagData();
+		copy.setTagDataId(tagData.getTagDataId());
+		copy.setAntennaID(tagData.getAntennaID());
+		copy.setChannel(tagData.getChannel());
+		copy.setRssi(tagData.getRssi());
+		copy.setCrc(tagData.getCrc());
+		copy.setPc(tagData.getPc());
+		copy.setXpc(tagData.getXpc());
+		copy.setEpc(copy(tagData.getEpc()));
+
+		if (tagData.getResultList() != null) {
+			List<OperationResult> results = new ArrayList<>(tagData.getResultList().size());
+			for (OperationResult result : tagData.getResultList())
+				results.add(copy(result));
+			copy.setResultList(results);
+		}
+		return copy;
+	}
+
+	private static OperationResult copy(OperationResult result) {
+		if (result instanceof ReadResult) {
+			ReadResult copy = new ReadResult();
+			copy.setResult(((ReadResult) result).getResult());
+			copy.setReadData(copy(((ReadResult) result).getReadData()));
+			return withOperationId(copy, result);
+		}
+		if (result instanceof WriteResult) {
+			WriteResult copy = new WriteResult();
+			copy.setResult(((WriteResult) result).getResult());
+			copy.setWordsWritten(((WriteResult) result).getWordsWritten());
+			return withOperationId(copy, result);
+		}
+		if (result instanceof LockResult) {
+			LockResult copy = new LockResult();
+			copy.setResult(((LockResult) result).getResult());
+			return withOperationId(copy, result);
+		}
+		if (result instanceof KillResult) {
+			KillResult copy = new KillResult();
+			copy.setResult(((KillResult) result).getResult());
+			return withOperationId(copy, result);
+		}
+		if (result instanceof CustomResult) {
+			CustomResult copy = new CustomResult();
+			copy.setResult(((CustomResult) result).getResult());
+			copy.setResultData(copy(((CustomResult) result).getResultData()));
+			return withOperationId(copy, result);
+		}
+		return result;
+	}
+
+	private static OperationResult withOperationId(OperationResult copy, OperationResult result) {
+		copy.setOperationId(result.getOperationId());
+		return copy;
+	}
+
+	private static byte[] copy(byte[] data) {
+		return data != null ? Arrays.copyOf(data, data.length) : null;
+	}
+
+	/**
+	 * Subscribes to the stream. The subscription receives the tags published
+	 * from now on.
+	 *
+	 * @param listener
+	 *            the listener
+	 * @param filter
+	 *            the filter or null to receive all tags
+	 * @param dropPolicy
+	 *            the policy if the subscriber falls behind
+	 * @return the subscription
+	 */
+	public Subscription subscribe(Listener listener, TagFilter filter, DropPolicy dropPolicy) {
+		Subscription subscription = new Subscription(listener, filter, dropPolicy, published.get());
+		subscriptions.add(subscription);
+		subscription.thread.start();
+		return subscription;
+	}
+
+	/**
+	 * A subscription to the stream.
+	 */
+	public class Subscription implements AutoCloseable {
+		private final Listener listener;
+		private final TagFilter filter;
+		private final DropPolicy dropPolicy;
+		private final Thread thread;
+
+		/* sequence of the next tag to be read */
+		private long cursor;
+		private final AtomicLong dropped = new AtomicLong();
+		private volatile boolean closed;
+
+		private Subscription(Listener listener, TagFilter filter, DropPolicy dropPolicy, long cursor) {
+			this.listener = listener;
+			this.filter = filter;
+			this.dropPolicy = dropPolicy;
+			this.cursor = cursor;
+			this.thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					dispatch();
+				}
+			}, "NurTagStream-" + listener.getClass().getSimpleName());
+			this.thread.setDaemon(true);
+		}
+
+		/**
+		 * Returns the number of tags dropped since the subscriber fell behind.
+		 *
+		 * @return the number of dropped tags
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+
+		/**
+		 * Cancels the subscription. Tags not yet delivered are discarded.
+		 */
+		@Override
+		public void close() {
+			closed = true;
+			subscriptions.remove(this);
+			LockSupport.unpark(thread);
+		}
+
+		private void dispatch() {
+			while (!closed) {
+				long available = published.get();
+				if (cursor >= available) {
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+					continue;
+				}
+
+				Entry entry = ring.get((int) (cursor & mask));
+				if (entry == null || entry.sequence != cursor) {
+					skip(available);
+					continue;
+				}
+
+				cursor++;
+				try {
+					if (filter == null || filter.accept(entry.tagData))
+						listener.tagReceived(entry.tagData);
+				} catch (RuntimeException e) {
+					log.log(Level.WARNING, "Subscriber failed to handle tag", e);
+				}
+			}
+		}
+
+		private void skip(long available) {
+			long next = dropPolicy == DropPolicy.DROP_BACKLOG ? available : available - ring.length() + 1;
+			if (next < cursor + 1)
+				next = cursor + 1;
+			dropped.addAndGet(next - cursor);
+			log.log(Level.FINE, "Subscriber fell behind, dropped {0} tag(s)", next - cursor);
+			cursor = next;
+		}
+	}
+}
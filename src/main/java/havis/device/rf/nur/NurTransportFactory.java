@@ -0,0 +1,97 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.Baudrate;
+import havis.device.rf.common.Environment;
+
+import com.nordicid.nativeserial.NativeSerialTransport;
+import com.nordicid.nativeserial.SerialPort;
+import com.nordicid.nurapi.NurApiTransport;
+
+/**
+ * Factory creating the {@link NurApiTransport} for the address of a NUR
+ * module. An address of the form <b>tcp://host[:port]</b> selects the socket
+ * transport, any other address is taken as the path of a serial device.
+ */
+class NurTransportFactory {
+
+	static final String SOCKET_SCHEME = "tcp://";
+	static final String SOCKET_TRANSPORT = "socket";
+
+	/**
+	 * Returns the default module address as configured in the
+	 * {@link NurEnvironment}, i.e. the socket address if the socket transport
+	 * is configured or the serial device path of the {@link Environment}
+	 * otherwise.
+	 *
+	 * @return the default module address
+	 */
+	static String getDefaultAddress() {
+		if (SOCKET_TRANSPORT.equalsIgnoreCase(NurEnvironment.TRANSPORT) && NurEnvironment.SOCKET_HOST != null)
+			return SOCKET_SCHEME + NurEnvironment.SOCKET_HOST + ":" + NurEnvironment.SOCKET_PORT;
+		return Environment.SERIAL_DEVICE_PATH;
+	}
+
+	/**
+	 * Returns whether an address selects the socket transport.
+	 *
+	 * @param address
+	 *            the module address
+	 * @return true for socket addresses, false for serial device paths
+	 */
+	static boolean isSocketAddress(String address) {
+		return address != null && address.regionMatches(true, 0, SOCKET_SCHEME, 0, SOCKET_SCHEME.length());
+	}
+
+	/**
+	 * Creates the transport for a module address. Socket transports are
+	 * configured with the socket options of the {@link NurEnvironment}, serial
+	 * transports use the baud rate of the {@link Environment}.
+	 *
+	 * @param address
+	 *            the module address
+	 * @return the transport, not yet connected
+	 * @throws IllegalArgumentException
+	 *             if a socket address is malformed
+	 */
+	static NurApiTransport createTransport(String address) {
+		return createTransport(address, Environment.SERIAL_DEVICE_BAUDRATE);
+	}
+
+	/**
+	 * Creates the transport for a module address using a specific baud rate
+	 * for serial transports.
+	 *
+	 * @param address
+	 *            the module address
+	 * @param baudrate
+	 *            the baud rate of serial transports
+	 * @return the transport, not yet connected
+	 * @throws IllegalArgumentException
+	 *             if a socket address is malformed
+	 */
+	static NurApiTransport createTransport(String address, Baudrate baudrate) {
+		if (isSocketAddress(address)) {
+			String hostPort = address.substring(SOCKET_SCHEME.length());
+			String host = hostPort;
+			int port = NurEnvironment.SOCKET_PORT;
+
+			int index = hostPort.lastIndexOf(':');
+			if (index >= 0 && hostPort.indexOf(']', index) < 0) {
+				host = hostPort.substring(0, index);
+				try {
+					port = Integer.parseInt(hostPort.substring(index + 1));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid port in address " + address, e);
+				}
+			}
+			if (host.startsWith("[") && host.endsWith("]"))
+				host = host.substring(1, host.length() - 1);
+			if (host.isEmpty())
+				throw new IllegalArgumentException("Missing host in address " + address);
+
+			return new NurSocketTransport(host, port, NurEnvironment.SOCKET_CONNECT_TIMEOUT, NurEnvironment.SOCKET_READ_TIMEOUT,
+					NurEnvironment.SOCKET_TCP_NO_DELAY, NurEnvironment.SOCKET_KEEP_ALIVE);
+		}
+		return new NativeSerialTransport(new SerialPort(address, address, 0), baudrate.getValue());
+	}
+}
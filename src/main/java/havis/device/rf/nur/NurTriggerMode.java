@@ -0,0 +1,310 @@
+package havis.device.rf.nur;
+
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.result.OperationResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.nordicid.nurapi.NurEventTriggeredRead;
+import com.nordicid.nurapi.NurGPIOConfig;
+
+/**
+ * Reads transponders triggered by GPIO inputs of the module, e.g. light
+ * barriers of a conveyor, without an execute call per trigger. The inputs
+ * are configured on the module, which either
+ * <ul>
+ * <li>scans a single transponder on the active edge by itself
+ * ({@link Action#SCAN_TAG}) or</li>
+ * <li>notifies both edges, upon which an inventory stream is started on the
+ * active edge and stopped on the inactive edge ({@link Action#INVENTORY})</li>
+ * </ul>
+ * The transponders are delivered to the {@link Listener} together with the
+ * time the trigger was received.
+ */
+public class NurTriggerMode {
+
+	private static final Logger log = Logger.getLogger(NurTriggerMode.class.getName());
+
+	/**
+	 * The action performed on a trigger.
+	 */
+	public enum Action {
+		/**
+		 * the module scans a single transponder
+		 */
+		SCAN_TAG,
+		/**
+		 * an inventory stream runs while the input is active
+		 */
+		INVENTORY
+	}
+
+	/**
+	 * Listener receiving triggers and transponders. Called by the event thread
+	 * of the NUR API.
+	 */
+	public interface Listener {
+		/**
+		 * Called on each edge of a trigger input.
+		 *
+		 * @param gpio
+		 *            the GPIO number starting at 1
+		 * @param active
+		 *            whether the input became active
+		 * @param timestamp
+		 *            the time the edge was received in milliseconds since the
+		 *            epoch
+		 */
+		void triggered(int gpio, boolean active, long timestamp);
+
+		/**
+		 * Called with the transponders read due to a trigger.
+		 *
+		 * @param gpio
+		 *            the GPIO number starting at 1
+		 * @param timestamp
+		 *            the time the trigger was received in milliseconds since
+		 *            the epoch
+		 * @param tags
+		 *            the transponders
+		 */
+		void tagsRead(int gpio, long timestamp, List<TagData> tags);
+	}
+
+	/**
+	 * The module running the inventory of {@link Action#INVENTORY}.
+	 */
+	interface Module {
+		void startInventory() throws Exception;
+
+		void stopInventory() throws Exception;
+
+		/**
+		 * @return the transponders found since the last call
+		 */
+		List<TagData> fetchTags() throws Exception;
+	}
+
+	private final Action action;
+	private final Listener listener;
+	private final int[] gpios;
+	private boolean activeHigh = true;
+
+	private Module module;
+
+	/* the GPIO of the running inventory or 0 and the time it was triggered */
+	private int activeGpio;
+	private long activeTimestamp;
+
+	/**
+	 * Creates an instance of this class.
+	 *
+	 * @param action
+	 *            the action performed on a trigger
+	 * @param listener
+	 *            the listener receiving the transponders
+	 * @param gpios
+	 *            the GPIO numbers of the trigger inputs starting at 1
+	 * @throws IllegalArgumentException
+	 *             if no GPIO is given
+	 */
+	public NurTriggerMode(Action action, Listener listener, int... gpios) {
+		if (gpios == null || gpios.length == 0)
+			throw new IllegalArgumentException("At least one GPIO is required");
+		this.action = action;
+		this.listener = listener;
+		this.gpios = Arrays.copyOf(gpios, gpios.length);
+	}
+
+	/**
+	 * @param activeHigh
+	 *            whether an input is active on the rising edge (default) or
+	 *            on the falling edge
+	 */
+	public void setActiveHigh(boolean activeHigh) {
+		this.activeHigh = activeHigh;
+	}
+
+	synchronized void setModule(Module module) {
+		this.module = module;
+	}
+
+	/**
+	 * Returns the GPIO configuration with the trigger inputs configured.
+	 *
+	 * @param current
+	 *            the current GPIO configuration of the module, which is not
+	 *            changed
+	 * @return the new GPIO configuration
+	 * @throws IllegalArgumentException
+	 *             if a GPIO is not available or controls the antennas
+	 */
+	NurGPIOConfig[] configure(NurGPIOConfig[] current) {
+		NurGPIOConfig[] configs = new NurGPIOConfig[current.length];
+		for (int i = 0; i < current.length; i++)
+			configs[i] = copy(current[i]);
+
+		for (int gpio : gpios) {
+			NurGPIOConfig config = gpio >= 1 && gpio <= configs.length ? configs[gpio - 1] : null;
+			if (config == null || !config.available)
+				throw new IllegalArgumentException("GPIO " + gpio + " is not available");
+			if (config.type == NurGPIOConfig.GPIO_TYPE_ANTCTL1 || config.type == NurGPIOConfig.GPIO_TYPE_ANTCTL2)
+				throw new IllegalArgumentException("GPIO " + gpio + " controls the antennas");
+
+			config.enabled = true;
+			config.type = NurGPIOConfig.GPIO_TYPE_INPUT;
+			if (action == Action.SCAN_TAG) {
+				config.edge = activeHigh ? NurGPIOConfig.GPIO_EDGE_RISING : NurGPIOConfig.GPIO_EDGE_FALLING;
+				config.action = NurGPIOConfig.GPIO_ACT_SCANTAG;
+			} else {
+				config.edge = NurGPIOConfig.GPIO_EDGE_BOTH;
+				config.action = NurGPIOConfig.GPIO_ACT_NOTIFY;
+			}
+		}
+		return configs;
+	}
+
+	static NurGPIOConfig copy(NurGPIOConfig config) {
+		if (config == null)
+			return null;
+		NurGPIOConfig copy = new NurGPIOConfig();
+		copy.available = config.available;
+		copy.enabled = config.enabled;
+		copy.type = config.type;
+		copy.edge = config.edge;
+		copy.action = config.action;
+		return copy;
+	}
+
+	private int getGpio(int source) {
+		for (int gpio : gpios)
+			if (gpio - 1 == source)
+				return gpio;
+		return 0;
+	}
+
+	/**
+	 * Handles an IO change event of the module.
+	 *
+	 * @param sensor
+	 *            whether the source is a sensor instead of a GPIO
+	 * @param source
+	 *            the index of the GPIO starting at 0
+	 * @param direction
+	 *            1 for a rising edge, 0 for a falling edge
+	 */
+	synchronized void ioChanged(boolean sensor, int source, int direction) {
+		int gpio = sensor ? 0 : getGpio(source);
+		if (gpio == 0)
+			return;
+
+		long timestamp = System.currentTimeMillis();
+		boolean active = (direction != 0) == activeHigh;
+		notifyTriggered(gpio, active, timestamp);
+
+		if (action != Action.INVENTORY || module == null)
+			return;
+
+		if (active && activeGpio == 0) {
+			activeGpio = gpio;
+			activeTimestamp = timestamp;
+			try {
+				module.startInventory();
+			} catch (Exception e) {
+				activeGpio = 0;
+				log.log(Level.WARNING, "Failed to start triggered inventory", e);
+			}
+		} else if (!active && activeGpio == gpio) {
+			try {
+				module.stopInventory();
+				/* transponders found since the last stream event */
+				deliver(module.fetchTags());
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Failed to stop triggered inventory", e);
+			}
+			activeGpio = 0;
+		}
+	}
+
+	/**
+	 * Handles an inventory stream event of the module.
+	 *
+	 * @param stopped
+	 *            whether the module stopped the stream, e.g. due to its
+	 *            timeout
+	 */
+	synchronized void inventoryStreamed(boolean stopped) {
+		if (activeGpio == 0 || module == null)
+			return;
+		try {
+			deliver(module.fetchTags());
+
+			/* the stream runs as long as the input is active */
+			if (stopped)
+				module.startInventory();
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Failed to continue triggered inventory", e);
+		}
+	}
+
+	/**
+	 * Handles the result of a scan triggered by the module.
+	 *
+	 * @param event
+	 *            the triggered read event
+	 */
+	synchronized void triggeredRead(NurEventTriggeredRead event) {
+		int gpio = event.sensor ? 0 : getGpio(event.source);
+		if (gpio == 0 || event.epc == null || event.epc.isEmpty())
+			return;
+
+		TagData tagData = new TagData();
+		tagData.setAntennaID((short) (event.antennaId + 1));
+		tagData.setRssi(event.rssi);
+		tagData.setEpc(RFUtils.hexToBytes(event.epc));
+		tagData.setResultList(new ArrayList<OperationResult>());
+		notifyTagsRead(gpio, System.currentTimeMillis(), Collections.singletonList(tagData));
+	}
+
+	/**
+	 * Stops a running inventory.
+	 */
+	synchronized void stop() {
+		if (activeGpio != 0 && module != null) {
+			try {
+				module.stopInventory();
+			} catch (Exception e) {
+				log.log(Level.FINE, "Failed to stop triggered inventory: {0}", e);
+			}
+		}
+		activeGpio = 0;
+		module = null;
+	}
+
+	private void deliver(List<TagData> tags) {
+		if (tags != null && !tags.isEmpty())
+			notifyTagsRead(activeGpio, activeTimestamp, tags);
+	}
+
+	private void notifyTriggered(int gpio, boolean active, long timestamp) {
+		try {
+			listener.triggered(gpio, active, timestamp);
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Trigger listener failed", e);
+		}
+	}
+
+	private void notifyTagsRead(int gpio, long timestamp, List<TagData> tags) {
+		try {
+			listener.tagsRead(gpio, timestamp, tags);
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Trigger listener failed", e);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package havis.device.rf.nur;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches the user bank size learned per transponder model, i.e. per MDID and
+ * TMN of the TID bank, for models not covered by the {@link NurChipRegistry}.
+ * The sizes are kept in memory and persisted to the file given by
+ * <b>havis.device.rf.nur.userBankSizeCacheFile</b> using the key format of
+ * the registry.
+ */
+class NurUserBankSizeCache {
+
+	private static final Logger log = Logger.getLogger(NurUserBankSizeCache.class.getName());
+
+	private static NurUserBankSizeCache instance;
+
+	private final File cacheFile;
+	private final Properties cache = new Properties();
+
+	/**
+	 * Creates an instance of this class loading the cache file if it exists.
+	 *
+	 * @param cacheFile
+	 *            the file persisting the user bank sizes
+	 */
+	NurUserBankSizeCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+		if (cacheFile.exists()) {
+			try (InputStream stream = new FileInputStream(cacheFile)) {
+				cache.load(stream);
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Failed to load user bank size cache from " + cacheFile, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the cache using the file configured in the
+	 *         {@link NurEnvironment}
+	 */
+	static synchronized NurUserBankSizeCache getInstance() {
+		if (instance == null)
+			instance = new NurUserBankSizeCache(new File(NurEnvironment.USER_BANK_SIZE_CACHE_FILE));
+		return instance;
+	}
+
+	/**
+	 * Returns the cached user bank size of a transponder model.
+	 *
+	 * @param tid
+	 *            the TID bank data starting at word 0
+	 * @return the number of words or null if unknown or the TID does not
+	 *         identify a model
+	 */
+	synchronized Integer get(byte[] tid) {
+		String key = key(tid);
+		String value = key != null ? cache.getProperty(key) : null;
+		if (value != null) {
+			try {
+				return Integer.valueOf(value.trim());
+			} catch (NumberFormatException e) {
+				log.log(Level.FINE, "Ignoring invalid cached user bank size {0}={1}", new Object[] { key, value });
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the user bank size of a transponder model and persists the cache.
+	 *
+	 * @param tid
+	 *            the TID bank data starting at word 0
+	 * @param words
+	 *            the number of words
+	 */
+	synchronized void put(byte[] tid, int words) {
+		String key = key(tid);
+		if (key == null)
+			return;
+
+		log.log(Level.FINE, "Learned user bank size {0} of transponder model {1}", new Object[] { words, key });
+		cache.setProperty(key, Integer.toString(words));
+
+		File parent = cacheFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists())
+			parent.mkdirs();
+
+		try (OutputStream stream = new FileOutputStream(cacheFile)) {
+			cache.store(stream, "Learned user bank sizes in words per MDID.TMN");
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Failed to store user bank size cache to " + cacheFile, e);
+		}
+	}
+
+	/**
+	 * @return the key of the transponder model or null if the TID is shorter
+	 *         than two words or not of allocation class E2
+	 */
+	static String key(byte[] tid) {
+		if (tid == null || tid.length < 4 || (tid[0] & 0xff) != 0xe2)
+			return null;
+		return String.format("%03X.%03X", NurChipRegistry.getMdid(tid), NurChipRegistry.getTmn(tid));
+	}
+}
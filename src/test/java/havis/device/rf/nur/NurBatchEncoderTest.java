@@ -0,0 +1,273 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.nur.NurTagProcessor.Singulation;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+
+import org.junit.Test;
+
+import com.nordicid.nurapi.NurTag;
+import com.nordicid.nurapi.NurTagStorage;
+
+public class NurBatchEncoderTest {
+
+	private static final byte[] TID1 = RFUtils.hexToBytes("E2801105200070A1B2C3D4E5");
+	private static final byte[] TID2 = RFUtils.hexToBytes("E2801105200070A1B2C3D4E6");
+	private static final byte[] BLANK = RFUtils.hexToBytes("000000000000000000000000");
+	private static final byte[] EPC1 = RFUtils.hexToBytes("300833B2DDD9014000000001");
+	private static final byte[] EPC2 = RFUtils.hexToBytes("300833B2DDD9014000000002");
+
+	private static NurTagStorage storage(final NurTag... tags) {
+		return new NurTagStorage() {
+			@Override
+			public int size() {
+				return tags.length;
+			}
+
+			@Override
+			public NurTag get(int i) {
+				return tags[i];
+			}
+		};
+	}
+
+	private static WriteResult writeResult(WriteResult.Result result) {
+		WriteResult wr = new WriteResult();
+		wr.setResult(result);
+		return wr;
+	}
+
+	private static NurBatchEncoder encoder(NurTagProcessor tagProcessor, NurBatchEncoding encoding, final NurTagStorage... rounds) {
+		return new NurBatchEncoder(tagProcessor, encoding) {
+			int round;
+
+			@Override
+			NurTagStorage inventory(int irBank, int irAddr, int irWords) throws Exception {
+				return rounds[round++];
+			}
+		};
+	}
+
+	@Test
+	public void encodeEpc(@Injectable final NurTagProcessor tagProcessor, @Injectable final NurTag t1, @Injectable final NurTag t2,
+			@Injectable final NurTag v1, @Injectable final NurTag v2, @Injectable final NurTag r2) throws Exception {
+		new NonStrictExpectations() {
+			{
+				t1.getIrData();
+				result = TID1;
+				t1.getEpc();
+				result = BLANK;
+				t2.getIrData();
+				result = TID2;
+				t2.getEpc();
+				result = BLANK;
+
+				/* first verification round: second tag still has the old EPC */
+				v1.getIrData();
+				result = TID1;
+				v1.getPC();
+				result = 0x3000;
+				v1.getEpc();
+				result = EPC1;
+				v2.getIrData();
+				result = TID2;
+				v2.getPC();
+				result = 0x3000;
+				v2.getEpc();
+				result = BLANK;
+
+				/* second verification round */
+				r2.getIrData();
+				result = TID2;
+				r2.getPC();
+				result = 0x3000;
+				r2.getEpc();
+				result = EPC2;
+
+				tagProcessor.write(withInstanceOf(Singulation.class), withInstanceOf(WriteOperation.class));
+				result = writeResult(WriteResult.Result.SUCCESS);
+			}
+		};
+
+		final List<byte[]> tids = new ArrayList<>();
+		NurBatchEncoding encoding = new NurBatchEncoding("wo", RFUtils.BANK_EPC, (short) 2, 0, new NurBatchEncoding.DataSource() {
+			@Override
+			public byte[] getData(byte[] tid, byte[] epc) {
+				tids.add(tid);
+				return tids.size() == 1 ? EPC1 : EPC2;
+			}
+		});
+
+		List<TagData> result = new ArrayList<>();
+		encoder(tagProcessor, encoding, storage(t1, t2), storage(v1, v2), storage(r2)).encode(result);
+
+		assertEquals(2, result.size());
+		assertTrue(Arrays.equals(TID1, tids.get(0)));
+		assertTrue(Arrays.equals(TID2, tids.get(1)));
+		for (TagData tagData : result) {
+			assertEquals(1, tagData.getResultList().size());
+			assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tagData.getResultList().get(0)).getResult());
+		}
+
+		new Verifications() {
+			{
+				/* two writes and one retry, no read back */
+				tagProcessor.write(withInstanceOf(Singulation.class), withInstanceOf(WriteOperation.class));
+				times = 3;
+				tagProcessor.read(withInstanceOf(Singulation.class), withInstanceOf(ReadOperation.class), (byte[]) any);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void encodeUser(@Injectable final NurTagProcessor tagProcessor, @Injectable final NurTag t1, @Injectable final NurTag t2,
+			@Injectable final NurTag t3, @Injectable final NurTag v1) throws Exception {
+		final byte[] tid3 = RFUtils.hexToBytes("E2801105200070A1B2C3D4E7");
+		final byte[] data = RFUtils.hexToBytes("12345678");
+
+		new NonStrictExpectations() {
+			{
+				t1.getIrData();
+				result = TID1;
+				t1.getEpc();
+				result = EPC1;
+				/* the second and third tag share an EPC */
+				t2.getIrData();
+				result = TID2;
+				t2.getEpc();
+				result = BLANK;
+				t3.getIrData();
+				result = tid3;
+				t3.getEpc();
+				result = BLANK;
+
+				v1.getEpc();
+				result = EPC1;
+				v1.getIrData();
+				result = RFUtils.hexToBytes("1234567800000000");
+
+				tagProcessor.write(withInstanceOf(Singulation.class), withInstanceOf(WriteOperation.class));
+				result = writeResult(WriteResult.Result.SUCCESS);
+
+				ReadResult rr = new ReadResult();
+				rr.setResult(ReadResult.Result.SUCCESS);
+				rr.setReadData(data);
+				tagProcessor.read(withInstanceOf(Singulation.class), withInstanceOf(ReadOperation.class), (byte[]) any);
+				result = rr;
+			}
+		};
+
+		NurBatchEncoding encoding = new NurBatchEncoding("wo", RFUtils.BANK_USR, (short) 0, 0, new NurBatchEncoding.DataSource() {
+			@Override
+			public byte[] getData(byte[] tid, byte[] epc) {
+				return data;
+			}
+		});
+		encoding.setRetries(0);
+
+		List<TagData> result = new ArrayList<>();
+		encoder(tagProcessor, encoding, storage(t1, t2, t3), storage(v1)).encode(result);
+
+		assertEquals(3, result.size());
+		for (TagData tagData : result)
+			assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tagData.getResultList().get(0)).getResult());
+
+		new Verifications() {
+			{
+				tagProcessor.write(withInstanceOf(Singulation.class), withInstanceOf(WriteOperation.class));
+				times = 3;
+				/* tags with ambiguous EPC are read back */
+				tagProcessor.read(withInstanceOf(Singulation.class), withInstanceOf(ReadOperation.class), (byte[]) any);
+				times = 2;
+			}
+		};
+	}
+
+	@Test
+	public void encodeFailedVerification(@Injectable final NurTagProcessor tagProcessor, @Injectable final NurTag t1) throws Exception {
+		new NonStrictExpectations() {
+			{
+				t1.getIrData();
+				result = TID1;
+				t1.getEpc();
+				result = EPC1;
+
+				tagProcessor.write(withInstanceOf(Singulation.class), withInstanceOf(WriteOperation.class));
+				result = writeResult(WriteResult.Result.SUCCESS);
+
+				ReadResult rr = new ReadResult();
+				rr.setResult(ReadResult.Result.NO_RESPONSE_FROM_TAG);
+				tagProcessor.read(withInstanceOf(Singulation.class), withInstanceOf(ReadOperation.class), (byte[]) any);
+				result = rr;
+			}
+		};
+
+		NurBatchEncoding encoding = new NurBatchEncoding("wo", RFUtils.BANK_USR, (short) 0, 0, new NurBatchEncoding.DataSource() {
+			@Override
+			public byte[] getData(byte[] tid, byte[] epc) {
+				return RFUtils.hexToBytes("1234");
+			}
+		});
+
+		List<TagData> result = new ArrayList<>();
+		encoder(tagProcessor, encoding, storage(t1), storage(), storage()).encode(result);
+
+		assertEquals(1, result.size());
+		assertEquals(WriteResult.Result.NON_SPECIFIC_TAG_ERROR, ((WriteResult) result.get(0).getResultList().get(0)).getResult());
+
+		new Verifications() {
+			{
+				tagProcessor.write(withInstanceOf(Singulation.class), withInstanceOf(WriteOperation.class));
+				times = 2;
+			}
+		};
+	}
+
+	@Test
+	public void matchesEpcBank(@Injectable final NurTag tag) {
+		new NonStrictExpectations() {
+			{
+				tag.getPC();
+				result = 0x3000;
+				tag.getEpc();
+				result = EPC1;
+			}
+		};
+
+		WriteOperation wo = new WriteOperation();
+		wo.setBank(RFUtils.BANK_EPC);
+		wo.setOffset((short) 1);
+		wo.setData(RFUtils.hexToBytes("3000300833B2"));
+		assertTrue(NurBatchEncoder.matchesEpcBank(wo, tag));
+
+		/* the CRC is not compared */
+		wo.setOffset((short) 0);
+		wo.setData(RFUtils.hexToBytes("FFFF3000"));
+		assertTrue(NurBatchEncoder.matchesEpcBank(wo, tag));
+
+		wo.setOffset((short) 7);
+		wo.setData(RFUtils.hexToBytes("0002"));
+		assertFalse(NurBatchEncoder.matchesEpcBank(wo, tag));
+
+		/* beyond the EPC */
+		wo.setData(RFUtils.hexToBytes("000100000000"));
+		assertNull(NurBatchEncoder.matchesEpcBank(wo, tag));
+	}
+}
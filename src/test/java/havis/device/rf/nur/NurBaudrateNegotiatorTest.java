@@ -0,0 +1,128 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.common.Baudrate;
+import havis.device.rf.nur.NurBaudrateNegotiator.LinkTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nordicid.nurapi.NurApi;
+
+public class NurBaudrateNegotiatorTest {
+
+	private File cacheFile;
+
+	@Before
+	public void setup() throws IOException {
+		cacheFile = new File(Files.createTempDirectory("baudrate").toFile(), "conf/baudrate.properties");
+	}
+
+	@After
+	public void tearDown() {
+		cacheFile.delete();
+		cacheFile.getParentFile().delete();
+		cacheFile.getParentFile().getParentFile().delete();
+	}
+
+	/**
+	 * A module switching its UART rate on request. Unstable rates fail the
+	 * self-test but still accept the single command switching the rate.
+	 */
+	private static class TestLink implements LinkTest {
+		Baudrate rate;
+		Set<Baudrate> unstable = new HashSet<>();
+		List<Baudrate> tested = new ArrayList<>();
+		List<Baudrate> reconfigured = new ArrayList<>();
+
+		TestLink(Baudrate rate) {
+			this.rate = rate;
+		}
+
+		@Override
+		public void run(String devicePath, Baudrate baudrate) throws Exception {
+			tested.add(baudrate);
+			if (baudrate != rate || unstable.contains(baudrate))
+				throw new IOException("Timeout");
+		}
+
+		@Override
+		public void reconfigure(String devicePath, Baudrate current, Baudrate target) throws Exception {
+			if (current != rate)
+				throw new IOException("Timeout");
+			reconfigured.add(target);
+			rate = target;
+		}
+	}
+
+	@Test
+	public void testGetBitsPerSecond() {
+		assertEquals(115200, NurBaudrateNegotiator.getBitsPerSecond(Baudrate.BAUDRATE_115200));
+		assertEquals(1000000, NurBaudrateNegotiator.getBitsPerSecond(Baudrate.BAUDRATE_1000000));
+	}
+
+	@Test
+	public void testGetSetting() {
+		assertEquals(NurApi.BAUDRATE_115200, NurBaudrateNegotiator.getSetting(Baudrate.BAUDRATE_115200));
+		assertEquals(NurApi.BAUDRATE_1000000, NurBaudrateNegotiator.getSetting(Baudrate.BAUDRATE_1000000));
+	}
+
+	@Test
+	public void testNegotiate() {
+		TestLink link = new TestLink(Baudrate.BAUDRATE_115200);
+		link.unstable.add(Baudrate.BAUDRATE_1000000);
+		List<Baudrate> candidates = Arrays.asList(Baudrate.BAUDRATE_115200, Baudrate.BAUDRATE_1000000, Baudrate.BAUDRATE_500000);
+
+		// the faster rates are probed from the fastest down, the unstable rate is left again
+		NurBaudrateNegotiator negotiator = new NurBaudrateNegotiator(cacheFile, link, candidates);
+		assertEquals(Baudrate.BAUDRATE_500000, negotiator.negotiate("/dev/ttyACM0", Baudrate.BAUDRATE_1000000));
+		assertEquals(Baudrate.BAUDRATE_500000, link.rate);
+		assertEquals(Arrays.asList(Baudrate.BAUDRATE_1000000, Baudrate.BAUDRATE_115200, Baudrate.BAUDRATE_500000), link.reconfigured);
+		assertTrue(cacheFile.exists());
+
+		// the cached rate is verified only
+		link.tested.clear();
+		negotiator = new NurBaudrateNegotiator(cacheFile, link, candidates);
+		assertEquals(Baudrate.BAUDRATE_500000, negotiator.negotiate("/dev/ttyACM0", Baudrate.BAUDRATE_115200));
+		assertEquals(Arrays.asList(Baudrate.BAUDRATE_500000), link.tested);
+
+		// a module at the fastest rate is not switched at all
+		TestLink other = new TestLink(Baudrate.BAUDRATE_1000000);
+		negotiator = new NurBaudrateNegotiator(cacheFile, other, candidates);
+		assertEquals(Baudrate.BAUDRATE_1000000, negotiator.negotiate("/dev/ttyACM1", Baudrate.BAUDRATE_115200));
+		assertEquals(Arrays.asList(Baudrate.BAUDRATE_1000000), other.tested);
+		assertTrue(other.reconfigured.isEmpty());
+
+		// the cached rate fails, the module is located and switched to the fastest stable rate
+		link.tested.clear();
+		link.reconfigured.clear();
+		link.rate = Baudrate.BAUDRATE_115200;
+		link.unstable.clear();
+		negotiator = new NurBaudrateNegotiator(cacheFile, link, candidates);
+		assertEquals(Baudrate.BAUDRATE_1000000, negotiator.negotiate("/dev/ttyACM0", Baudrate.BAUDRATE_115200));
+		assertEquals(Baudrate.BAUDRATE_1000000, link.rate);
+		assertEquals(Arrays.asList(Baudrate.BAUDRATE_1000000), link.reconfigured);
+	}
+
+	@Test
+	public void testNegotiateFailure() {
+		TestLink link = new TestLink(Baudrate.BAUDRATE_500000);
+		NurBaudrateNegotiator negotiator = new NurBaudrateNegotiator(cacheFile, link, Arrays.asList(Baudrate.BAUDRATE_115200,
+				Baudrate.BAUDRATE_1000000));
+
+		assertEquals(Baudrate.BAUDRATE_1000000, negotiator.negotiate("/dev/ttyACM0", Baudrate.BAUDRATE_1000000));
+		assertEquals(Arrays.asList(Baudrate.BAUDRATE_1000000, Baudrate.BAUDRATE_115200), link.tested);
+		assertTrue(!cacheFile.exists());
+	}
+}
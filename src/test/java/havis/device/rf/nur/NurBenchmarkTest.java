@@ -0,0 +1,123 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.nur.NurBenchmark.Candidate;
+import havis.device.rf.nur.NurBenchmark.Report;
+import havis.device.rf.nur.NurBenchmark.Result;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class NurBenchmarkTest {
+
+	/**
+	 * A module with 20 transponders. Session 0 finds all transponders but
+	 * takes 100 ms per cycle, session 1 takes 40 ms per cycle and finds the
+	 * transponders only with Q 4, 10 transponders otherwise.
+	 */
+	private static class SimulatedModule implements NurBenchmark.Target {
+		long time;
+		Candidate candidate;
+		int applied;
+
+		@Override
+		public void apply(Candidate candidate) {
+			this.candidate = candidate;
+			applied++;
+		}
+
+		@Override
+		public Map<String, Integer> inventory() {
+			time += candidate.getSession() == 0 ? 100 : 40;
+			int count = candidate.getSession() == 0 || candidate.getQ() == 4 ? 20 : 10;
+			Map<String, Integer> tags = new HashMap<>();
+			for (int i = 0; i < count; i++)
+				tags.put(String.format("3000%08X", i), candidate.getLinkFrequency() == 320 ? -60 : -50);
+			return tags;
+		}
+	}
+
+	private static NurBenchmark benchmark(final SimulatedModule module) {
+		return new NurBenchmark() {
+			@Override
+			long currentTimeMillis() {
+				return module.time;
+			}
+		};
+	}
+
+	@Test
+	public void testRun() throws Exception {
+		SimulatedModule module = new SimulatedModule();
+		NurBenchmark benchmark = benchmark(module);
+		benchmark.setLinkFrequencies(256, 320);
+		benchmark.setSessions((short) 0, (short) 1);
+		benchmark.setQs((short) 0, (short) 4);
+		benchmark.setCycles(5);
+
+		Report report = benchmark.run(module);
+		assertEquals(8, module.applied);
+		assertEquals(8, report.getResults().size());
+		assertEquals(20, report.getPopulation());
+
+		Result first = report.getResults().get(0);
+		assertEquals(5, first.getInventories());
+		assertEquals(500, first.getDuration());
+		assertEquals(40.0, first.getTagsPerSecond(), 0.001);
+		assertEquals(1.0, first.getCompleteness(), 0.001);
+		assertEquals(-50.0, first.getMeanRssi(), 0.001);
+
+		/* session 1 without Q 4 is faster but incomplete */
+		Result incomplete = report.getResults().get(2);
+		assertEquals(0.5, incomplete.getCompleteness(), 0.001);
+
+		Candidate best = report.getBest().getCandidate();
+		assertEquals(256, best.getLinkFrequency());
+		assertEquals(1, best.getSession());
+		assertEquals(4, best.getQ());
+		assertEquals(100.0, report.getBest().getTagsPerSecond(), 0.001);
+	}
+
+	@Test
+	public void testRunIncomplete() throws Exception {
+		SimulatedModule module = new SimulatedModule();
+		NurBenchmark benchmark = benchmark(module);
+		benchmark.setSessions((short) 1);
+		benchmark.setQs((short) 0, (short) 4, (short) 8);
+		benchmark.setMinCompleteness(1.1);
+
+		/* no candidate reaches the minimum completeness, the most complete one is recommended */
+		Report report = benchmark.run(module);
+		assertEquals(4, report.getBest().getCandidate().getQ());
+	}
+
+	@Test
+	public void testStore() throws Exception {
+		SimulatedModule module = new SimulatedModule();
+		NurBenchmark benchmark = benchmark(module);
+		benchmark.setSessions((short) 1);
+		benchmark.setQs((short) 4);
+		Report report = benchmark.run(module);
+
+		File file = File.createTempFile("benchmark", ".properties");
+		try {
+			report.store(file);
+			Properties properties = new Properties();
+			try (InputStream stream = new FileInputStream(file)) {
+				properties.load(stream);
+			}
+			assertEquals("20", properties.getProperty("population"));
+			assertEquals("linkFrequency=0,miller=0,session=1,q=4,rounds=0", properties.getProperty("best"));
+			assertTrue(properties.getProperty("result.000").contains("tagsPerSecond=50.0"));
+		} finally {
+			file.delete();
+		}
+	}
+}
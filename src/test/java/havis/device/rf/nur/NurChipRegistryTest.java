@@ -0,0 +1,75 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.nur.NurChipRegistry.Chip;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class NurChipRegistryTest {
+
+	@Test
+	public void testTid() {
+		byte[] tid = new byte[] { (byte) 0xe2, (byte) 0x80, 0x11, 0x05 };
+		assertEquals(0x001, NurChipRegistry.getMdid(tid));
+		assertEquals(0x105, NurChipRegistry.getTmn(tid));
+
+		tid = new byte[] { (byte) 0xe2, (byte) 0x80, (byte) 0xb0, 0x40 };
+		assertEquals(0x00b, NurChipRegistry.getMdid(tid));
+		assertEquals(0x040, NurChipRegistry.getTmn(tid));
+	}
+
+	@Test
+	public void testRegistry() {
+		Properties properties = new Properties();
+		properties.setProperty("001.105.name", "Monza 4QT");
+		properties.setProperty("001.105.userWords", "32");
+		properties.setProperty("001.105.blockWriteSize", "2");
+		properties.setProperty("00B.040.customCommands", "etbSensor, other");
+		properties.setProperty("00B.040.quirks", "resetInventoriedState");
+		properties.setProperty("invalid", "1");
+		properties.setProperty("00X.040.userWords", "1");
+		properties.setProperty("001.105.tidWords", "x");
+
+		NurChipRegistry registry = new NurChipRegistry(properties);
+
+		Chip chip = registry.get(new byte[] { (byte) 0xe2, (byte) 0x80, 0x11, 0x05, 0x00, 0x00 });
+		assertNotNull(chip);
+		assertEquals("Monza 4QT", chip.getName());
+		assertEquals(Integer.valueOf(32), chip.getUserWords());
+		assertNull(chip.getTidWords());
+		assertEquals(2, chip.getBlockWriteSize());
+		assertFalse(chip.hasQuirk(NurChipRegistry.QUIRK_RESET_INVENTORIED_STATE));
+		// the XTID flag is not part of the MDID
+		assertNotNull(registry.get(new byte[] { (byte) 0xe2, 0x00, 0x11, 0x05 }));
+
+		chip = registry.get(new byte[] { (byte) 0xe2, (byte) 0x80, (byte) 0xb0, 0x40 });
+		assertEquals("00B.040", chip.getName());
+		assertNull(chip.getUserWords());
+		assertTrue(chip.supportsCustomCommand(NurChipRegistry.COMMAND_ETB_SENSOR));
+		assertTrue(chip.supportsCustomCommand("other"));
+		assertTrue(chip.hasQuirk(NurChipRegistry.QUIRK_RESET_INVENTORIED_STATE));
+
+		assertEquals(2, registry.getBlockWriteSize(new byte[] { (byte) 0xe2, (byte) 0x80, 0x11, 0x05 }));
+		assertEquals(0, registry.getBlockWriteSize(new byte[] { (byte) 0xe2, (byte) 0x80, (byte) 0xb0, 0x40 }));
+		assertEquals(0, registry.getBlockWriteSize(null));
+
+		assertNull(registry.get(null));
+		assertNull(registry.get(new byte[] { (byte) 0xe2, (byte) 0x80 }));
+		assertNull(registry.get(new byte[] { (byte) 0xe0, (byte) 0x80, 0x11, 0x05 }));
+		assertNull(registry.get(new byte[] { (byte) 0xe2, (byte) 0x80, 0x11, 0x06 }));
+	}
+
+	@Test
+	public void testDefaultRegistry() {
+		Chip chip = NurChipRegistry.getInstance().get(new byte[] { (byte) 0xe2, (byte) 0x80, (byte) 0xb0, 0x40 });
+		assertNotNull(chip);
+		assertTrue(chip.hasQuirk(NurChipRegistry.QUIRK_RESET_INVENTORIED_STATE));
+		assertTrue(chip.supportsCustomCommand(NurChipRegistry.COMMAND_ETB_SENSOR));
+	}
+}
@@ -3,6 +3,8 @@ package havis.device.rf.nur;
 import static mockit.Deencapsulation.getField;
 import static mockit.Deencapsulation.setField;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import havis.device.rf.exception.ImplementationException;
@@ -16,6 +18,7 @@ import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import mockit.Delegate;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
@@ -752,6 +755,88 @@ public class NurConfigurationHelperTest {
 		};
 	}
 
+	@Test
+	public void testApplyTxLevelBoost() throws Exception {
+		nurSetup.txLevel = TxLevel.TxLevel20.nurApiConstant;
+		nurSetup.antPower = new int[] { TxLevel.TxLevel26.nurApiConstant, TxLevel.TxLevel10.nurApiConstant,
+				TxLevel.TxLevelDefault.nurApiConstant };
+		final int[] configured = nurSetup.antPower;
+		final int[][] applied = new int[2][];
+
+		new NonStrictExpectations() {
+			{
+				nurApi.getModuleSetup();
+				result = nurSetup;
+				nurApi.setModuleSetup(nurSetup, NurApi.SETUP_PERANTPOWER);
+				result = new Delegate<Void>() {
+					@SuppressWarnings("unused")
+					void setModuleSetup(NurSetup setup, int flags) {
+						applied[applied[0] == null ? 0 : 1] = setup.antPower;
+					}
+				};
+			}
+		};
+
+		NurConfigurationHelper config = new NurConfigurationHelper(nurApi);
+		config.loadModuleSetup();
+		assertEquals(17, config.getTxLevelHeadroom());
+
+		/* levels are raised up to the maximum, the default level applies to the third antenna */
+		config.applyTxLevelBoost(3);
+		assertTrue(Arrays.equals(new int[] { TxLevel.TxLevel27.nurApiConstant, TxLevel.TxLevel13.nurApiConstant,
+				TxLevel.TxLevel23.nurApiConstant }, applied[0]));
+		assertTrue(configured == nurSetup.antPower);
+
+		config.applyTxLevelBoost(0);
+		assertTrue(configured == applied[1]);
+	}
+
+	@Test
+	public void testApplyLinkProfile() throws Exception {
+		nurSetup.linkFreq = NurApi.LINK_FREQUENCY_256000;
+		nurSetup.rxDecoding = NurApi.RXDECODING_M4;
+		final int[][] applied = new int[3][];
+
+		new NonStrictExpectations() {
+			{
+				nurApi.getModuleSetup();
+				result = nurSetup;
+				nurApi.setModuleSetup(nurSetup, NurApi.SETUP_LINKFREQ | NurApi.SETUP_RXDEC);
+				result = new Delegate<Void>() {
+					int calls;
+
+					@SuppressWarnings("unused")
+					void setModuleSetup(NurSetup setup, int flags) {
+						applied[calls++] = new int[] { setup.linkFreq, setup.rxDecoding };
+					}
+				};
+			}
+		};
+
+		NurConfigurationHelper config = new NurConfigurationHelper(nurApi);
+		config.loadModuleSetup();
+
+		/* the configured settings are applied already */
+		assertFalse(config.applyLinkProfile(null));
+
+		assertTrue(config.applyLinkProfile(NurLinkProfile.create(320, 1)));
+		assertFalse(config.applyLinkProfile(NurLinkProfile.create(320, 1)));
+		assertEquals(NurApi.LINK_FREQUENCY_256000, nurSetup.linkFreq);
+		assertEquals(NurApi.RXDECODING_M4, nurSetup.rxDecoding);
+
+		/* unspecified settings keep the configured value */
+		assertTrue(config.applyLinkProfile(NurLinkProfile.create(0, 8)));
+		assertTrue(config.applyLinkProfile(null));
+
+		assertTrue(Arrays.equals(new int[] { NurApi.LINK_FREQUENCY_320000, NurApi.RXDECODING_FM0 }, applied[0]));
+		assertTrue(Arrays.equals(new int[] { NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M8 }, applied[1]));
+		assertTrue(Arrays.equals(new int[] { NurApi.LINK_FREQUENCY_256000, NurApi.RXDECODING_M4 }, applied[2]));
+
+		assertNull(NurLinkProfile.create(0, 0));
+		assertNull(NurLinkProfile.create(300, 0));
+		assertNull(NurLinkProfile.create(0, 3));
+	}
+
 	@Test
 	public void testGetLinkFrequency() throws Exception {
 
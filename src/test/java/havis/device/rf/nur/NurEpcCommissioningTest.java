@@ -0,0 +1,106 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import havis.device.rf.common.util.RFUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.nordicid.nurapi.NurEpcEnumParam;
+import com.nordicid.nurapi.NurEventEpcEnum;
+
+public class NurEpcCommissioningTest {
+
+	@Test
+	public void testCreateParameters() {
+		byte[] template = RFUtils.hexToBytes("300833B2DDD9014000000000");
+		NurEpcCommissioning commissioning = new NurEpcCommissioning(template, 58, 38, 0x123456789L, null);
+		commissioning.setAntenna((short) 2);
+		commissioning.setBlockWrite(true);
+
+		NurEpcEnumParam param = commissioning.createParameters();
+		assertEquals(1, param.antenna);
+		assertEquals(0, param.twAddr);
+		assertEquals(6, param.twLen);
+		assertEquals(true, param.useBlWrite);
+		assertEquals(12, param.epcLen);
+		assertArrayEquals(template, param.baseEPC);
+		assertEquals(58, param.bitStart);
+		assertEquals(38, param.bitLen);
+		assertArrayEquals(RFUtils.hexToBytes("0000000123456789"), param.startVal);
+
+		/* the template is copied */
+		template[0] = 0;
+		assertEquals(0x30, commissioning.createParameters().baseEPC[0]);
+	}
+
+	@Test
+	public void testInvalidRange() {
+		byte[] template = RFUtils.hexToBytes("300833B2DDD9014000000000");
+		try {
+			new NurEpcCommissioning(template, 64, 33, 0, null);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new NurEpcCommissioning(template, 64, 0, 0, null);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new NurEpcCommissioning(template, 88, 8, 256, null);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new NurEpcCommissioning(RFUtils.hexToBytes("300833"), 0, 8, 0, null);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testEpcEnumEvent() {
+		final List<Long> serials = new ArrayList<>();
+		final List<Short> antennas = new ArrayList<>();
+		NurEpcCommissioning commissioning = new NurEpcCommissioning(RFUtils.hexToBytes("300833B2DDD9014000000000"), 58, 38, 1,
+				new NurEpcCommissioning.Listener() {
+					@Override
+					public void tagCommissioned(short antenna, long serial, byte[] epc, byte[] tid) {
+						serials.add(serial);
+						antennas.add(antenna);
+					}
+				});
+
+		NurApiListenerImpl listener = new NurApiListenerImpl();
+		NurEventEpcEnum event = new NurEventEpcEnum();
+		event.antennaID = 0;
+		event.epc = RFUtils.hexToBytes("300833B2DDD9014000000001");
+		event.tid = RFUtils.hexToBytes("E2801105200070A1B2C3D4E5");
+
+		/* events are dropped without a running commissioning */
+		listener.epcEnumEvent(event);
+		assertEquals(0, commissioning.getCount());
+
+		listener.setEpcCommissioning(commissioning);
+		listener.epcEnumEvent(event);
+		event.epc = RFUtils.hexToBytes("300833B2DDD9014123456789");
+		listener.epcEnumEvent(event);
+		listener.epcEnumEvent(null);
+
+		assertEquals(2, commissioning.getCount());
+		assertEquals(Long.valueOf(1), serials.get(0));
+		assertEquals(Long.valueOf(0x0123456789L), serials.get(1));
+		assertEquals(Short.valueOf((short) 1), antennas.get(0));
+
+		listener.setEpcCommissioning(null);
+		listener.epcEnumEvent(event);
+		assertEquals(2, commissioning.getCount());
+		assertFalse(serials.size() > 2);
+	}
+}
@@ -0,0 +1,59 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.nur.NurTagProcessor.Singulation;
+
+import org.junit.Test;
+
+public class NurEpcPrefixTrieTest {
+
+	@Test
+	public void testGetUniquePrefixBits() {
+		byte[] epc1 = RFUtils.hexToBytes("300833B2DDD9014000000001");
+		byte[] epc2 = RFUtils.hexToBytes("300833B2DDD9014000000002");
+		byte[] epc3 = RFUtils.hexToBytes("E20034120000000000000001");
+
+		NurEpcPrefixTrie trie = new NurEpcPrefixTrie();
+		trie.add(epc1);
+		trie.add(epc2);
+		trie.add(epc3);
+
+		/* epc1 and epc2 differ in the second last bit */
+		assertEquals(95, trie.getUniquePrefixBits(epc1, 0));
+		assertEquals(95, trie.getUniquePrefixBits(epc2, 0));
+		/* epc3 differs in the first bit */
+		assertEquals(1, trie.getUniquePrefixBits(epc3, 0));
+		assertEquals(16, trie.getUniquePrefixBits(epc3, 16));
+
+		/* unknown EPC */
+		assertEquals(96, trie.getUniquePrefixBits(RFUtils.hexToBytes("000000000000000000000000"), 0));
+	}
+
+	@Test
+	public void testAmbiguous() {
+		byte[] epc = RFUtils.hexToBytes("300833B2DDD9014000000001");
+		byte[] shortEpc = RFUtils.hexToBytes("300833B2");
+
+		NurEpcPrefixTrie trie = new NurEpcPrefixTrie();
+		trie.add(epc);
+		trie.add(epc);
+		/* duplicates cannot be distinguished */
+		assertEquals(96, trie.getUniquePrefixBits(epc, 0));
+
+		trie = new NurEpcPrefixTrie();
+		trie.add(epc);
+		trie.add(shortEpc);
+		/* the memory following the shorter EPC is unknown */
+		assertEquals(96, trie.getUniquePrefixBits(epc, 0));
+		assertEquals(32, trie.getUniquePrefixBits(shortEpc, 0));
+	}
+
+	@Test
+	public void testSingulation() {
+		byte[] epc = RFUtils.hexToBytes("300833B2DDD9014000000001");
+		assertEquals(20, Singulation.getEPCInstance(epc, 20).getBitCount());
+		assertEquals(96, Singulation.getEPCInstance(epc, 200).getBitCount());
+		assertEquals(96, Singulation.getEPCInstance(epc).getBitCount());
+	}
+}
@@ -2,6 +2,7 @@ package havis.device.rf.nur;
 
 import static mockit.Deencapsulation.getField;
 import static mockit.Deencapsulation.setField;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -49,9 +50,11 @@ import havis.device.rf.tag.result.ReadResult;
 import havis.device.rf.tag.result.ReadResult.Result;
 import havis.device.rf.tag.result.WriteResult;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Condition;
@@ -71,6 +74,8 @@ import org.junit.Test;
 import com.nordicid.nativeserial.NativeSerialTransport;
 import com.nordicid.nativeserial.SerialPort;
 import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurApiErrors;
+import com.nordicid.nurapi.NurApiException;
 import com.nordicid.nurapi.NurApiListener;
 import com.nordicid.nurapi.NurGPIOConfig;
 import com.nordicid.nurapi.NurIRConfig;
@@ -1118,6 +1123,21 @@ public class NurHardwareManagerTest {
 				times = 5;
 			}
 		};
+
+		// Test inventory with tags found and singulation by EPC but the transponder model is required (e.g. complete user bank read)
+		nurRespInventory.numTagsFound = 3;
+		testCtrl.singByTid = false;
+		hwMgr.inventory(filters, singulation, null, true);
+
+		new Verifications() {
+			{
+				nurApi.setIRConfig(NurApi.IRTYPE_EPCDATA, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
+				times = 5;
+
+				nurApi.clearIdBuffer(true);
+				times = 6;
+			}
+		};
 	}
 	
 	@Test
@@ -1901,6 +1921,340 @@ public class NurHardwareManagerTest {
 		
 	}
 	
+	private static Filter tidFilter(byte[] tid) {
+		Filter filter = new Filter();
+		filter.setBank(RFUtils.BANK_TID);
+		filter.setBitOffset((short) 0);
+		filter.setBitLength((short) (tid.length * 8));
+		filter.setData(tid);
+		byte[] mask = new byte[tid.length];
+		Arrays.fill(mask, (byte) 0xff);
+		filter.setMask(mask);
+		filter.setMatch(true);
+		return filter;
+	}
+
+	private NurHardwareManager createConnected(NurConfigurationHelper setup) {
+		NurHardwareManager nurHwMgr = new NurHardwareManager();
+		setField(nurHwMgr, "nurApi", nurApi);
+		setField(nurHwMgr, "setup", setup);
+		setField(nurHwMgr, "connectedAntennas", new ArrayList<>(Arrays.asList((short) 1)));
+		return nurHwMgr;
+	}
+
+	@Test
+	public void testExecuteDirectAccess(@Mocked final NurConfigurationHelper setup) throws Exception {
+		/* Impinj Monza 4E: 8 user words, block write size 2 */
+		final byte[] tid = RFUtils.hexToBytes("E280110C2000000012345678");
+
+		new NonStrictExpectations() {
+			{
+				setup.getRegion();
+				result = Region.RegionEU;
+				setup.applyAntennaSelection(withInstanceOf(List.class));
+				result = (short) 1;
+
+				nurApi.readTag(NurApi.BANK_TID, 0, 96, tid, NurApi.BANK_EPC, 1, 14);
+				result = RFUtils.hexToBytes("3000112233445566778899AABBCC");
+				nurApi.readTag(NurApi.BANK_TID, 0, 96, tid, NurApi.BANK_USER, 0, 16);
+				result = RFUtils.hexToBytes("00010203040506070809101112131415");
+			}
+		};
+
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_USR);
+		wo.setOffset((short) 0);
+		wo.setData(RFUtils.hexToBytes("1111222233334444"));
+		ReadOperation ro = new ReadOperation();
+		ro.setOperationId("ro");
+		ro.setBank(RFUtils.BANK_USR);
+		ro.setOffset((short) 0);
+		ro.setLength((short) 0);
+
+		/* a tag singulated by its complete TID is accessed without inventory */
+		TagDataList result = createConnected(setup).execute(Arrays.asList((short) 1), Arrays.asList(tidFilter(tid)),
+				Arrays.<TagOperation> asList(wo, ro), null);
+		assertEquals(1, result.getEntryList().size());
+		TagData tagData = result.getEntryList().get(0);
+		assertArrayEquals(RFUtils.hexToBytes("112233445566778899AABBCC"), tagData.getEpc());
+		assertEquals(2, tagData.getResultList().size());
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tagData.getResultList().get(0)).getResult());
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) tagData.getResultList().get(1)).getResult());
+		assertEquals(16, ((ReadResult) tagData.getResultList().get(1)).getReadData().length);
+
+		new Verifications() {
+			{
+				nurApi.inventoryExtended(withInstanceOf(NurInventoryExtended.class), withInstanceOf(NurInventoryExtendedFilter[].class), anyInt);
+				times = 0;
+				/* the chip is known from the TID as on inventory, i.e. blocks are written */
+				nurApi.blockWrite(0, false, NurApi.BANK_TID, 0, 96, tid, RFUtils.BANK_USR, anyInt, 4, withInstanceOf(byte[].class), 2);
+				times = 2;
+				nurApi.readTag(NurApi.BANK_TID, 0, 96, tid, NurApi.BANK_USER, 0, 16);
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testExecuteDirectAccessNoTag(@Mocked final NurConfigurationHelper setup) throws Exception {
+		final byte[] tid = RFUtils.hexToBytes("E280110C2000000012345678");
+
+		new NonStrictExpectations() {
+			{
+				setup.getRegion();
+				result = Region.RegionEU;
+				setup.applyAntennaSelection(withInstanceOf(List.class));
+				result = (short) 1;
+
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, anyInt, anyInt);
+				result = new NurApiException(NurApiErrors.NO_TAG);
+			}
+		};
+
+		ReadOperation ro = new ReadOperation();
+		ro.setOperationId("ro");
+		ro.setBank(RFUtils.BANK_USR);
+		ro.setOffset((short) 0);
+		ro.setLength((short) 2);
+
+		/* no tag responding to direct access falls back to inventory */
+		TagDataList result = createConnected(setup).execute(Arrays.asList((short) 1), Arrays.asList(tidFilter(tid)),
+				Arrays.<TagOperation> asList(ro), null);
+		assertEquals(0, result.getEntryList().size());
+
+		new Verifications() {
+			{
+				nurApi.readTag(NurApi.BANK_TID, 0, 96, tid, NurApi.BANK_EPC, 1, 14);
+				times = 1;
+				nurApi.inventoryExtended(withInstanceOf(NurInventoryExtended.class), withInstanceOf(NurInventoryExtendedFilter[].class), anyInt);
+				times = 1;
+			}
+		};
+	}
+
+	private static NurTag tag(final String tid, int index) {
+		byte[] epc = RFUtils.hexToBytes("300833B2DDD9014000000000");
+		epc[epc.length - 1] = (byte) index;
+		return new NurTag(0, -60, 0, 0, 0, 0x3000, epc) {
+			@Override
+			public byte[] getIrData() {
+				return RFUtils.hexToBytes(tid);
+			}
+		};
+	}
+
+	private void inventoryFinds(final NurTag... tags) throws Exception {
+		final NurRespInventory resp = new NurRespInventory();
+		resp.numTagsFound = tags.length;
+		new NonStrictExpectations() {
+			{
+				nurApi.inventoryExtended(withInstanceOf(NurInventoryExtended.class), withInstanceOf(NurInventoryExtendedFilter[].class), anyInt);
+				result = resp;
+				nurApi.getStorage();
+				result = new NurTagStorage() {
+					@Override
+					public int size() {
+						return tags.length;
+					}
+
+					@Override
+					public NurTag get(int i) {
+						return tags[i];
+					}
+				};
+			}
+		};
+	}
+
+	@Test
+	public void testExecuteResetInventoriedState(@Mocked final NurConfigurationHelper setup) throws Exception {
+		/* one EM4325 among Impinj Monza 4E transponders */
+		final String monza = "E280110C2000000012345678";
+		final String em4325 = "E200B0400000000000000001";
+
+		new NonStrictExpectations() {
+			{
+				setup.getRegion();
+				result = Region.RegionEU;
+				setup.applyAntennaSelection(withInstanceOf(List.class));
+				result = (short) 1;
+			}
+		};
+		inventoryFinds(tag(monza, 1), tag(em4325, 2), tag(monza, 3));
+
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_USR);
+		wo.setOffset((short) 0);
+		wo.setData(RFUtils.hexToBytes("1111"));
+
+		/* the state is reset once before the first affected tag and once after the round */
+		TagDataList result = createConnected(setup).execute(Arrays.asList((short) 1), new ArrayList<Filter>(), Arrays.<TagOperation> asList(wo), null);
+		assertEquals(3, result.getEntryList().size());
+
+		new Verifications() {
+			{
+				/* the TID is read during inventory of the EPC-singulated write to detect the quirk */
+				nurApi.setIRConfig(NurApi.IRTYPE_EPCDATA, NurApi.BANK_TID, 0, NurTagProcessor.WORD_COUNT_TID_BANK);
+				times = 1;
+				nurApi.resetToTarget(NurApi.SESSION_S0, true);
+				times = 2;
+			}
+		};
+	}
+
+	@Test
+	public void testExecuteWithoutResetInventoriedState(@Mocked final NurConfigurationHelper setup) throws Exception {
+		final String monza = "E280110C2000000012345678";
+
+		new NonStrictExpectations() {
+			{
+				setup.getRegion();
+				result = Region.RegionEU;
+				setup.applyAntennaSelection(withInstanceOf(List.class));
+				result = (short) 1;
+			}
+		};
+		inventoryFinds(tag(monza, 1), tag(monza, 3));
+
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_USR);
+		wo.setOffset((short) 0);
+		wo.setData(RFUtils.hexToBytes("1111"));
+
+		/* no tag requires the reset */
+		TagDataList result = createConnected(setup).execute(Arrays.asList((short) 1), new ArrayList<Filter>(), Arrays.<TagOperation> asList(wo),
+				null);
+		assertEquals(2, result.getEntryList().size());
+
+		new Verifications() {
+			{
+				nurApi.resetToTarget(anyInt, anyBoolean);
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testExecuteBatchedResetInventoriedState(@Mocked final NurConfigurationHelper setup, @Mocked final NurBatchConsumer consumer)
+			throws Exception {
+		final String monza = "E280110C2000000012345678";
+		final String em4325 = "E200B0400000000000000001";
+		final WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_USR);
+		wo.setOffset((short) 0);
+		wo.setData(RFUtils.hexToBytes("1111"));
+
+		new NonStrictExpectations() {
+			{
+				setup.getRegion();
+				result = Region.RegionEU;
+				setup.applyAntennaSelection(withInstanceOf(List.class));
+				result = (short) 1;
+
+				consumer.getOperations(withInstanceOf(List.class));
+				result = Arrays.asList(Arrays.<TagOperation> asList(wo), Arrays.<TagOperation> asList(wo), Arrays.<TagOperation> asList(wo));
+			}
+		};
+		inventoryFinds(tag(monza, 1), tag(em4325, 2), tag(monza, 3));
+
+		/* the state is reset around each phase, i.e. before and after the request */
+		TagDataList result = createConnected(setup).execute(Arrays.asList((short) 1), new ArrayList<Filter>(),
+				Arrays.<TagOperation> asList(wo, new RequestOperation()), consumer);
+		assertEquals(3, result.getEntryList().size());
+		for (TagData tagData : result.getEntryList())
+			assertEquals(2, tagData.getResultList().size());
+
+		new Verifications() {
+			{
+				consumer.getOperations(withInstanceOf(List.class));
+				times = 1;
+				nurApi.resetToTarget(NurApi.SESSION_S0, true);
+				times = 4;
+			}
+		};
+	}
+
+	@Test
+	public void testBenchmark(@Mocked final NurConfigurationHelper setup, @Mocked final NurBenchmark benchmark) throws Exception {
+		final NurBenchmark.Candidate candidate = new NurBenchmark.Candidate(320, 4, (short) 1, (short) 4, (short) 0);
+		final NurBenchmark.Candidate best = new NurBenchmark.Candidate(160, 2, (short) 0, (short) 4, (short) 0);
+		File reportFile = File.createTempFile("benchmark", ".properties");
+		String previousReportFile = NurEnvironment.BENCHMARK_REPORT_FILE;
+		NurEnvironment.BENCHMARK_REPORT_FILE = reportFile.getPath();
+
+		NurHardwareManager nurHwMgr = new NurHardwareManager();
+		setField(nurHwMgr, "nurApi", nurApi);
+		setField(nurHwMgr, "setup", setup);
+		setField(nurHwMgr, "connectedAntennas", new ArrayList<>(Arrays.asList((short) 1)));
+
+		try {
+			new NonStrictExpectations() {
+				{
+					setup.getRegion();
+					result = Region.RegionEU;
+					setup.applyAntennaSelection(withInstanceOf(List.class));
+					result = (short) 1;
+
+					benchmark.run(withInstanceOf(NurBenchmark.Target.class));
+					result = new Delegate<NurBenchmark.Report>() {
+						@SuppressWarnings("unused")
+						NurBenchmark.Report run(NurBenchmark.Target target) throws Exception {
+							target.apply(candidate);
+							throw new Exception("inventory failed");
+						}
+					};
+				}
+			};
+
+			/* a failed benchmark does not keep the link settings of the last candidate */
+			try {
+				nurHwMgr.benchmark(Arrays.asList((short) 0), benchmark);
+				fail("Exception expected");
+			} catch (ImplementationException e) {
+			}
+
+			new Verifications() {
+				{
+					setup.applyLinkProfile(NurLinkProfile.create(320, 4));
+					times = 1;
+					setup.applyLinkProfile(null);
+					times = 1;
+				}
+			};
+
+			new NonStrictExpectations() {
+				{
+					benchmark.isApply();
+					result = true;
+
+					benchmark.run(withInstanceOf(NurBenchmark.Target.class));
+					result = new NurBenchmark.Report(new ArrayList<NurBenchmark.Result>(), 1, new NurBenchmark.Result(best, 1, 1, new HashSet<String>(
+							Arrays.asList("3000")), -50));
+				}
+			};
+
+			/* an applied result replaces the inventory profile of the instance only */
+			nurHwMgr.benchmark(Arrays.asList((short) 0), benchmark);
+			assertEquals(NurLinkProfile.create(160, 2), getField(nurHwMgr, "inventoryProfile"));
+			assertEquals(0, NurEnvironment.INVENTORY_LINK_FREQUENCY);
+			assertEquals(0, NurEnvironment.INVENTORY_MILLER);
+
+			new Verifications() {
+				{
+					setup.applyLinkProfile(NurLinkProfile.create(160, 2));
+					times = 1;
+				}
+			};
+		} finally {
+			NurEnvironment.BENCHMARK_REPORT_FILE = previousReportFile;
+			reportFile.delete();
+		}
+	}
+
 	@Test
 	public void testEmptyEventListeners() {
 		NurApiListener nurApiListener = new NurApiListenerImpl();
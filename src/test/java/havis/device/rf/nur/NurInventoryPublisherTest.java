@@ -0,0 +1,271 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.TagOperation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mockit.Delegate;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+
+import org.junit.Test;
+
+public class NurInventoryPublisherTest {
+
+	@Injectable
+	HardwareManager hardwareManager;
+
+	private final List<Short> antennas = Arrays.asList((short) 1);
+	private final List<Filter> filters = new ArrayList<>();
+	private final List<TagOperation> operations = new ArrayList<>();
+	private final AtomicInteger rounds = new AtomicInteger();
+
+	private static class TestSubscriber implements NurFlow.Subscriber<TagData> {
+		NurFlow.Subscription subscription;
+		final LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+		@Override
+		public void onSubscribe(NurFlow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(TagData item) {
+			signals.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			signals.add(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			signals.add("complete");
+		}
+
+		Object next() throws InterruptedException {
+			return signals.poll(5, TimeUnit.SECONDS);
+		}
+
+		Object none() throws InterruptedException {
+			return signals.poll(200, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void expectRounds() throws Exception {
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, operations, null);
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer) {
+						int round = rounds.incrementAndGet();
+						TagDataList result = new TagDataList();
+						for (int i = 0; i < 2; i++) {
+							TagData tagData = new TagData();
+							tagData.setTagDataId(round * 10 + i);
+							result.getEntryList().add(tagData);
+						}
+						return result;
+					}
+				};
+			}
+		};
+	}
+
+	@Test
+	public void testDemand() throws Exception {
+		expectRounds();
+		NurInventoryPublisher publisher = new NurInventoryPublisher(hardwareManager, antennas, filters, operations);
+
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		assertNotNull(subscriber.subscription);
+
+		// no demand, no inventory
+		assertNull(subscriber.none());
+		assertEquals(0, rounds.get());
+
+		// one round covers the demand of three tags only partially
+		subscriber.subscription.request(3);
+		assertEquals(10, ((TagData) subscriber.next()).getTagDataId());
+		assertEquals(11, ((TagData) subscriber.next()).getTagDataId());
+		assertEquals(20, ((TagData) subscriber.next()).getTagDataId());
+		assertNull(subscriber.none());
+		// the remaining tag of the second round is pending, inventory pauses
+		assertEquals(2, rounds.get());
+
+		subscriber.subscription.request(1);
+		assertEquals(21, ((TagData) subscriber.next()).getTagDataId());
+
+		// cancel stops inventory
+		subscriber.subscription.cancel();
+		Thread.sleep(200);
+		int count = rounds.get();
+		Thread.sleep(200);
+		assertEquals(count, rounds.get());
+
+		publisher.close();
+	}
+
+	@Test
+	public void testSlowSubscriber() throws Exception {
+		expectRounds();
+		NurInventoryPublisher publisher = new NurInventoryPublisher(hardwareManager, antennas, filters, operations);
+
+		TestSubscriber fast = new TestSubscriber();
+		TestSubscriber slow = new TestSubscriber();
+		publisher.subscribe(fast);
+		publisher.subscribe(slow);
+
+		fast.subscription.request(Long.MAX_VALUE);
+		slow.subscription.request(1);
+
+		assertEquals(10, ((TagData) fast.next()).getTagDataId());
+		assertEquals(11, ((TagData) fast.next()).getTagDataId());
+		assertEquals(10, ((TagData) slow.next()).getTagDataId());
+
+		// the slow subscriber holds back further rounds
+		assertNull(fast.none());
+		assertEquals(1, rounds.get());
+
+		slow.subscription.request(2);
+		assertEquals(11, ((TagData) slow.next()).getTagDataId());
+		assertEquals(20, ((TagData) fast.next()).getTagDataId());
+		assertEquals(20, ((TagData) slow.next()).getTagDataId());
+
+		publisher.close();
+		assertTrue(fast.signals.contains("complete"));
+	}
+
+	@Test
+	public void testError() throws Exception {
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, operations, null);
+				result = new ImplementationException("failed");
+			}
+		};
+
+		NurInventoryPublisher publisher = new NurInventoryPublisher(hardwareManager, antennas, filters, operations);
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(1);
+		Object signal = subscriber.next();
+		assertTrue(signal instanceof ImplementationException);
+
+		TestSubscriber invalid = new TestSubscriber();
+		publisher.subscribe(invalid);
+		invalid.subscription.request(0);
+		assertTrue(invalid.next() instanceof IllegalArgumentException);
+
+		publisher.close();
+
+		TestSubscriber late = new TestSubscriber();
+		publisher.subscribe(late);
+		assertEquals("complete", late.next());
+	}
+
+	@Test
+	public void testErrorWhileDelivering() throws Exception {
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, operations, null);
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer)
+							throws ImplementationException {
+						if (rounds.incrementAndGet() > 1)
+							throw new ImplementationException("failed");
+						TagDataList result = new TagDataList();
+						for (int i = 0; i < 2; i++) {
+							TagData tagData = new TagData();
+							tagData.setTagDataId(10 + i);
+							result.getEntryList().add(tagData);
+						}
+						return result;
+					}
+				};
+			}
+		};
+
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicBoolean delivering = new AtomicBoolean();
+		final AtomicBoolean overlapping = new AtomicBoolean();
+		final TestSubscriber blocking = new TestSubscriber() {
+			@Override
+			public void onNext(TagData item) {
+				delivering.set(true);
+				if (item.getTagDataId() == 11) {
+					entered.countDown();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+					}
+				}
+				super.onNext(item);
+				delivering.set(false);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				overlapping.set(delivering.get());
+				super.onError(throwable);
+			}
+		};
+		TestSubscriber other = new TestSubscriber();
+
+		NurInventoryPublisher publisher = new NurInventoryPublisher(hardwareManager, antennas, filters, operations);
+		publisher.subscribe(blocking);
+		publisher.subscribe(other);
+		other.subscription.request(Long.MAX_VALUE);
+		blocking.subscription.request(1);
+		assertEquals(10, ((TagData) blocking.next()).getTagDataId());
+
+		// the second tag is delivered on the requesting thread and blocks there
+		Thread requester = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				blocking.subscription.request(2);
+			}
+		});
+		requester.start();
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+		// the failing round terminates both subscriptions
+		other.subscription.request(1);
+		assertEquals(10, ((TagData) other.next()).getTagDataId());
+		assertEquals(11, ((TagData) other.next()).getTagDataId());
+		assertTrue(other.next() instanceof ImplementationException);
+
+		// the error waits for the tag in progress
+		assertNull(blocking.none());
+		release.countDown();
+		assertEquals(11, ((TagData) blocking.next()).getTagDataId());
+		assertTrue(blocking.next() instanceof ImplementationException);
+		assertFalse(overlapping.get());
+
+		requester.join(5000);
+		publisher.close();
+	}
+}
@@ -0,0 +1,372 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.configuration.AntennaConfiguration;
+import havis.device.rf.exception.ConnectionException;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.exception.ParameterException;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import mockit.Delegate;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+
+import org.junit.Test;
+
+public class NurMultiHardwareManagerTest {
+
+	@Injectable
+	HardwareManager module1;
+	@Injectable
+	HardwareManager module2;
+
+	private NurMultiHardwareManager open() throws Exception {
+		new NonStrictExpectations() {
+			{
+				module1.getMaxAntennas();
+				result = 2;
+				module2.getMaxAntennas();
+				result = 4;
+			}
+		};
+		NurMultiHardwareManager hwMgr = new NurMultiHardwareManager(Arrays.asList(module1, module2));
+		hwMgr.openConnection();
+		return hwMgr;
+	}
+
+	private static TagData tag(byte[] epc, short antenna, int rssi) {
+		TagData tagData = new TagData();
+		tagData.setEpc(epc);
+		tagData.setAntennaID(antenna);
+		tagData.setRssi(rssi);
+		return tagData;
+	}
+
+	private static TagDataList list(TagData... tags) {
+		TagDataList result = new TagDataList();
+		result.getEntryList().addAll(Arrays.asList(tags));
+		return result;
+	}
+
+	@Test
+	public void testOpenConnection() throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+		assertEquals(6, hwMgr.getMaxAntennas());
+		assertEquals(0, hwMgr.getModuleIndex((short) 1));
+		assertEquals(0, hwMgr.getModuleIndex((short) 2));
+		assertEquals(1, hwMgr.getModuleIndex((short) 3));
+		assertEquals(1, hwMgr.getModuleIndex((short) 6));
+		assertEquals(-1, hwMgr.getModuleIndex((short) 7));
+		hwMgr.closeConnection();
+	}
+
+	@Test
+	public void testOpenConnectionError() throws Exception {
+		new NonStrictExpectations() {
+			{
+				module2.openConnection();
+				result = new ConnectionException("failed");
+			}
+		};
+
+		NurMultiHardwareManager hwMgr = new NurMultiHardwareManager(Arrays.asList(module1, module2));
+		try {
+			hwMgr.openConnection();
+			fail();
+		} catch (ConnectionException e) {
+			assertEquals("failed", e.getMessage());
+		}
+
+		new Verifications() {
+			{
+				module1.closeConnection();
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testSplitAntennas() throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+
+		Map<Integer, List<Short>> split = hwMgr.splitAntennas(Arrays.asList((short) 1, (short) 4, (short) 6, (short) 9));
+		assertEquals(2, split.size());
+		assertEquals(Arrays.asList((short) 1), split.get(0));
+		assertEquals(Arrays.asList((short) 2, (short) 4), split.get(1));
+
+		split = hwMgr.splitAntennas(Arrays.asList((short) 3));
+		assertEquals(1, split.size());
+		assertEquals(Arrays.asList((short) 1), split.get(1));
+
+		split = hwMgr.splitAntennas(Arrays.asList((short) 0));
+		assertEquals(2, split.size());
+		assertEquals(Arrays.asList((short) 0), split.get(0));
+		assertEquals(Arrays.asList((short) 0), split.get(1));
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+
+		Map<Integer, TagDataList> results = new HashMap<>();
+		results.put(0, list(tag(new byte[] { 1 }, (short) 1, -60), tag(new byte[] { 2 }, (short) 2, -50), tag(new byte[0], (short) 1, -40)));
+		results.put(1, list(tag(new byte[] { 1 }, (short) 1, -55), tag(new byte[] { 2 }, (short) 3, -70), tag(new byte[0], (short) 2, -40)));
+
+		List<TagData> merged = hwMgr.merge(results).getEntryList();
+		assertEquals(4, merged.size());
+
+		assertEquals(1, merged.get(0).getEpc()[0]);
+		assertEquals(3, merged.get(0).getAntennaID());
+		assertEquals(-55, merged.get(0).getRssi());
+
+		assertEquals(2, merged.get(1).getEpc()[0]);
+		assertEquals(2, merged.get(1).getAntennaID());
+		assertEquals(-50, merged.get(1).getRssi());
+
+		assertEquals(1, merged.get(2).getAntennaID());
+		assertEquals(4, merged.get(3).getAntennaID());
+
+		for (int i = 0; i < merged.size(); i++)
+			assertEquals(i, merged.get(i).getTagDataId());
+
+		/* the results of the modules are not modified */
+		assertEquals(1, results.get(1).getEntryList().get(0).getAntennaID());
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+		final List<Filter> filters = new ArrayList<>();
+		final List<TagOperation> operations = new ArrayList<>();
+
+		new NonStrictExpectations() {
+			{
+				module1.execute(withInstanceOf(List.class), filters, operations, null);
+				result = list(tag(new byte[] { 1 }, (short) 1, -60));
+
+				module2.execute(withInstanceOf(List.class), filters, operations, null);
+				result = list(tag(new byte[] { 2 }, (short) 2, -60));
+			}
+		};
+
+		List<TagData> result = hwMgr.execute(Arrays.asList((short) 0), filters, operations, null).getEntryList();
+		assertEquals(2, result.size());
+		assertEquals(1, result.get(0).getAntennaID());
+		assertEquals(4, result.get(1).getAntennaID());
+
+		// only the second module is involved
+		hwMgr.execute(Arrays.asList((short) 5), filters, operations, null);
+		new Verifications() {
+			{
+				List<Short> antennas;
+				module2.execute(antennas = withCapture(), filters, operations, null);
+				assertEquals(Arrays.asList((short) 3), antennas);
+			}
+		};
+
+		hwMgr.closeConnection();
+	}
+
+	@Test
+	public void testExecuteReadWithConsumer(@Injectable final RFConsumer consumer) throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+		final List<Filter> filters = new ArrayList<>();
+		final List<TagOperation> operations = new ArrayList<>();
+		operations.add(new ReadOperation("r", (short) 3, (short) 0, (short) 2, 0));
+
+		new NonStrictExpectations() {
+			{
+				module1.execute(withInstanceOf(List.class), filters, operations, withInstanceOf(RFConsumer.class));
+				result = list(tag(new byte[] { 1 }, (short) 1, -60));
+
+				module2.execute(withInstanceOf(List.class), filters, operations, withInstanceOf(RFConsumer.class));
+				result = list(tag(new byte[] { 2 }, (short) 2, -60));
+			}
+		};
+
+		/* read operations are executed by all modules in a single round even if a consumer is given */
+		List<TagData> result = hwMgr.execute(Arrays.asList((short) 0), filters, operations, consumer).getEntryList();
+		assertEquals(2, result.size());
+
+		new Verifications() {
+			{
+				module1.execute(withInstanceOf(List.class), withInstanceOf(List.class), withInstanceOf(List.class), withAny(consumer));
+				times = 1;
+				module2.execute(withInstanceOf(List.class), withInstanceOf(List.class), withInstanceOf(List.class), withAny(consumer));
+				times = 1;
+			}
+		};
+
+		hwMgr.closeConnection();
+	}
+
+	@Test
+	public void testExecuteAccess(@Injectable final RFConsumer consumer) throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+		final List<Filter> filters = new ArrayList<>();
+		final List<TagOperation> operations = new ArrayList<>();
+		operations.add(new WriteOperation("w", (short) 3, (short) 0, new byte[] { 1, 2 }, 0));
+		final List<String> accessed = Collections.synchronizedList(new ArrayList<String>());
+
+		new NonStrictExpectations() {
+			{
+				module1.execute(withInstanceOf(List.class), withInstanceOf(List.class), withInstanceOf(List.class), withAny(consumer));
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer) {
+						if (operations.isEmpty())
+							return list(tag(new byte[] { 1 }, (short) 1, -60), tag(new byte[] { 2 }, (short) 2, -60));
+						return accessed(1, antennas, filters, consumer);
+					}
+				};
+
+				module2.execute(withInstanceOf(List.class), withInstanceOf(List.class), withInstanceOf(List.class), withAny(consumer));
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer) {
+						if (operations.isEmpty())
+							return list(tag(new byte[] { 1 }, (short) 3, -50));
+						return accessed(2, antennas, filters, consumer);
+					}
+				};
+			}
+
+			TagDataList accessed(int module, List<Short> antennas, List<Filter> filters, RFConsumer consumer) {
+				assertEquals(1, filters.size());
+				byte[] epc = Arrays.copyOfRange(filters.get(0).getData(), 2, filters.get(0).getData().length);
+				accessed.add(module + ":" + antennas.get(0) + ":" + epc[0]);
+				consumer.keepAlive();
+				TagData tagData = tag(epc, antennas.get(0), -50);
+				tagData.setResultList(new ArrayList<OperationResult>(Arrays.asList(new WriteResult())));
+				return list(tagData);
+			}
+		};
+
+		List<TagData> result = hwMgr.execute(Arrays.asList((short) 0), filters, operations, consumer).getEntryList();
+
+		/* the transponder seen by both modules is accessed by the module with the higher RSSI only */
+		assertEquals(new HashSet<>(Arrays.asList("1:2:2", "2:3:1")), new HashSet<>(accessed));
+		assertEquals(2, accessed.size());
+		assertEquals(2, result.size());
+		for (TagData tagData : result)
+			assertEquals(1, tagData.getResultList().size());
+		assertEquals(2, result.get(0).getEpc()[0]);
+		assertEquals(2, result.get(0).getAntennaID());
+		assertEquals(1, result.get(1).getEpc()[0]);
+		assertEquals(5, result.get(1).getAntennaID());
+
+		new Verifications() {
+			{
+				consumer.keepAlive();
+				times = 2;
+			}
+		};
+
+		hwMgr.closeConnection();
+	}
+
+	@Test
+	public void testNotConnected() throws Exception {
+		NurMultiHardwareManager hwMgr = new NurMultiHardwareManager(Arrays.asList(module1, module2));
+		try {
+			hwMgr.execute(Arrays.asList((short) 0), new ArrayList<Filter>(), new ArrayList<TagOperation>(), null);
+			fail();
+		} catch (ImplementationException e) {
+			assertTrue(e.getCause() instanceof ConnectionException);
+		}
+	}
+
+	@Test
+	public void testExecuteError() throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+
+		new NonStrictExpectations() {
+			{
+				module2.execute(withInstanceOf(List.class), withInstanceOf(List.class), withInstanceOf(List.class), null);
+				result = new ParameterException("invalid");
+			}
+		};
+
+		try {
+			hwMgr.execute(Arrays.asList((short) 3), new ArrayList<Filter>(), new ArrayList<TagOperation>(), null);
+			fail();
+		} catch (ParameterException e) {
+			assertEquals("invalid", e.getMessage());
+		}
+
+		new NonStrictExpectations() {
+			{
+				module2.execute(withInstanceOf(List.class), withInstanceOf(List.class), withInstanceOf(List.class), null);
+				result = new IllegalStateException("unexpected");
+			}
+		};
+
+		try {
+			hwMgr.execute(Arrays.asList((short) 3), new ArrayList<Filter>(), new ArrayList<TagOperation>(), null);
+			fail();
+		} catch (ImplementationException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		hwMgr.closeConnection();
+	}
+
+	@Test
+	public void testSetAntennaConfiguration() throws Exception {
+		NurMultiHardwareManager hwMgr = open();
+
+		final AntennaConfiguration configuration = new AntennaConfiguration();
+		configuration.setId((short) 4);
+
+		new NonStrictExpectations() {
+			{
+				module2.setAntennaConfiguration(configuration, null, false);
+				result = new Delegate<Object>() {
+					@SuppressWarnings("unused")
+					void setAntennaConfiguration(AntennaConfiguration c, Object r, boolean forceTune) {
+						assertEquals(2, c.getId());
+					}
+				};
+			}
+		};
+
+		hwMgr.setAntennaConfiguration(configuration, null, false);
+		assertEquals(4, configuration.getId());
+
+		new Verifications() {
+			{
+				module1.setAntennaConfiguration(configuration, null, false);
+				times = 0;
+				module2.setAntennaConfiguration(configuration, null, false);
+				times = 1;
+			}
+		};
+
+		configuration.setId((short) 8);
+		try {
+			hwMgr.setAntennaConfiguration(configuration, null, false);
+			fail();
+		} catch (ParameterException e) {
+		}
+	}
+}
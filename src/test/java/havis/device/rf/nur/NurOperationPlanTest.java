@@ -0,0 +1,554 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.nur.NurErrorMap.RFCError;
+import havis.device.rf.nur.NurOperationPlan.ReadStep;
+import havis.device.rf.nur.NurOperationPlan.TagContext;
+import havis.device.rf.nur.NurOperationPlan.WriteStep;
+import havis.device.rf.nur.NurTagProcessor.Singulation;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.LockOperation;
+import havis.device.rf.tag.operation.LockOperation.Field;
+import havis.device.rf.tag.operation.LockOperation.Privilege;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.RequestOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.operation.WriteOperation;
+import havis.device.rf.tag.result.KillResult;
+import havis.device.rf.tag.result.LockResult;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+import havis.device.rf.tag.result.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+
+import org.junit.Test;
+
+import com.nordicid.nurapi.NurTag;
+
+public class NurOperationPlanTest {
+
+	private static ReadOperation read(String id, short bank, int offset, int length) {
+		ReadOperation op = new ReadOperation();
+		op.setOperationId(id);
+		op.setBank(bank);
+		op.setOffset((short) offset);
+		op.setLength((short) length);
+		return op;
+	}
+
+	private static WriteOperation write(String id, short bank) {
+		WriteOperation op = new WriteOperation();
+		op.setOperationId(id);
+		op.setBank(bank);
+		op.setOffset((short) 2);
+		op.setData(new byte[] { 0x12, 0x34 });
+		return op;
+	}
+
+	@Test
+	public void testCompile() {
+		RequestOperation request = new RequestOperation();
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r1", RFUtils.BANK_TID, 0, 0), read("r2", RFUtils.BANK_TID, 0, 2),
+				read("r3", RFUtils.BANK_TID, 2, 4), read("r4", RFUtils.BANK_USR, 0, 2), write("w1", RFUtils.BANK_EPC), write("w2", RFUtils.BANK_USR),
+				request);
+
+		NurOperationPlan plan = NurOperationPlan.compile(operations, true, true);
+		assertEquals(7, plan.getSteps().size());
+		assertTrue(plan.usesIrData());
+		assertTrue(plan.isWriting());
+		assertFalse(plan.readsCompleteUserBank());
+		assertTrue(plan.requiresTid());
+		assertFalse(plan.isReadOnly());
+
+		ReadStep r1 = (ReadStep) plan.getSteps().get(0);
+		assertTrue(r1.completeBank);
+		assertTrue(r1.irServed);
+		ReadStep r2 = (ReadStep) plan.getSteps().get(1);
+		assertFalse(r2.completeBank);
+		assertTrue(r2.irServed);
+		assertFalse(((ReadStep) plan.getSteps().get(2)).irServed);
+		assertFalse(((ReadStep) plan.getSteps().get(3)).irServed);
+		assertTrue(((WriteStep) plan.getSteps().get(4)).epcChange);
+		assertFalse(((WriteStep) plan.getSteps().get(5)).epcChange);
+		assertTrue(plan.getSteps().get(6) instanceof NurOperationPlan.RequestStep);
+
+		plan = NurOperationPlan.compile(operations, false, false);
+		assertFalse(plan.usesIrData());
+		assertFalse(((ReadStep) plan.getSteps().get(0)).irServed);
+		assertFalse(((WriteStep) plan.getSteps().get(4)).epcChange);
+
+		assertTrue(NurOperationPlan.compile(new ArrayList<TagOperation>(), true, true).isEmpty());
+
+		/* the size of the user bank is looked up by the TID, even without optimized TID reading */
+		plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(read("r1", RFUtils.BANK_USR, 2, 0)), false, true);
+		assertTrue(plan.readsCompleteUserBank());
+		assertTrue(plan.requiresTid());
+		assertFalse(plan.usesIrData());
+		assertTrue(plan.isReadOnly());
+
+		/* the chip registry is consulted for writes, locks and kills */
+		assertFalse(NurOperationPlan.compile(Arrays.<TagOperation> asList(read("r1", RFUtils.BANK_USR, 0, 2)), true, true).requiresTid());
+		assertTrue(NurOperationPlan.compile(Arrays.<TagOperation> asList(write("w1", RFUtils.BANK_EPC)), true, true).requiresTid());
+		assertTrue(NurOperationPlan.compile(Arrays.<TagOperation> asList(lock("l1", Field.EPC_MEMORY, Privilege.LOCK, 0)), true, true).requiresTid());
+
+		/* the effect of requested operations is not known in advance */
+		assertFalse(NurOperationPlan.compile(Arrays.<TagOperation> asList(read("r1", RFUtils.BANK_USR, 0, 2), request), true, true).isReadOnly());
+	}
+
+	@Test
+	public void testCoalesceReads() {
+		List<TagOperation> operations = Arrays.<TagOperation> asList(read("r1", RFUtils.BANK_USR, 0, 2), read("r2", RFUtils.BANK_USR, 2, 2),
+				read("r3", RFUtils.BANK_USR, 1, 4), read("r4", RFUtils.BANK_USR, 8, 2), read("r5", RFUtils.BANK_EPC, 10, 2), write("w1", RFUtils.BANK_USR),
+				read("r6", RFUtils.BANK_TID, 0, 2), read("r7", RFUtils.BANK_TID, 2, 2), read("r8", RFUtils.BANK_USR, 0, 0), read("r9", RFUtils.BANK_USR, 0, 2));
+
+		List<NurOperationPlan.Step> steps = NurOperationPlan.compile(operations, true, true).getSteps();
+		assertEquals(8, steps.size());
+		NurOperationPlan.CoalescedReadStep coalesced = (NurOperationPlan.CoalescedReadStep) steps.get(0);
+		assertEquals(3, coalesced.reads.size());
+		assertEquals("r4", steps.get(1).operation.getOperationId());
+		assertEquals("r5", steps.get(2).operation.getOperationId());
+		assertEquals("w1", steps.get(3).operation.getOperationId());
+		// the IR data serves the first TID read only
+		assertEquals("r6", steps.get(4).operation.getOperationId());
+		assertEquals("r7", steps.get(5).operation.getOperationId());
+		// complete bank reads are not combined
+		assertEquals("r8", steps.get(6).operation.getOperationId());
+		assertEquals("r9", steps.get(7).operation.getOperationId());
+
+		// same password required
+		ReadOperation protectedRead = read("r2", RFUtils.BANK_USR, 2, 2);
+		protectedRead.setPassword(1234);
+		assertEquals(2, NurOperationPlan.compile(Arrays.<TagOperation> asList(read("r1", RFUtils.BANK_USR, 0, 2), protectedRead), false, false)
+				.getSteps().size());
+	}
+
+	@Test
+	public void testRunCoalescedReads(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag)
+			throws Exception {
+		final ReadOperation r1 = read("r1", RFUtils.BANK_USR, 0, 2);
+		final ReadOperation r2 = read("r2", RFUtils.BANK_USR, 2, 2);
+		final ReadOperation r3 = read("r3", RFUtils.BANK_USR, 4, 2);
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(r1, r2, r3), false, false);
+		assertEquals(1, plan.getSteps().size());
+		assertFalse(plan.isWriting());
+
+		new NonStrictExpectations() {
+			{
+				tagProcessor.readCoalesced(sing, withInstanceOf(List.class));
+				result = null;
+
+				ReadResult success = new ReadResult();
+				success.setResult(ReadResult.Result.SUCCESS);
+				tagProcessor.read(sing, r1, null);
+				result = success;
+
+				ReadResult overrun = new ReadResult();
+				overrun.setResult(ReadResult.Result.MEMORY_OVERRUN_ERROR);
+				tagProcessor.read(sing, r2, null);
+				result = overrun;
+			}
+		};
+
+		// the failed combined read is repeated individually, which reports the specific error
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		assertEquals(RFCError.NonSpecificTagError, plan.run(new TagContext(tagProcessor, tagData, sing, nurTag, null, null)));
+		assertEquals(3, tagData.getResultList().size());
+		assertEquals(ReadResult.Result.SUCCESS, ((ReadResult) tagData.getResultList().get(0)).getResult());
+		assertEquals(ReadResult.Result.MEMORY_OVERRUN_ERROR, ((ReadResult) tagData.getResultList().get(1)).getResult());
+		assertEquals("r3", tagData.getResultList().get(2).getOperationId());
+		assertEquals(ReadResult.Result.NON_SPECIFIC_TAG_ERROR, ((ReadResult) tagData.getResultList().get(2)).getResult());
+
+		new Verifications() {
+			{
+				tagProcessor.read(sing, r3, null);
+				times = 0;
+			}
+		};
+	}
+
+	private static WriteOperation write(String id, int offset, String data, int password) {
+		WriteOperation op = write(id, RFUtils.BANK_USR);
+		op.setOffset((short) offset);
+		op.setData(RFUtils.hexToBytes(data));
+		op.setPassword(password);
+		return op;
+	}
+
+	@Test
+	public void testCoalesceWrites(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag)
+			throws Exception {
+		final WriteOperation w1 = write("w1", 0, "1111", 1234);
+		final WriteOperation w2 = write("w2", 1, "22223333", 1234);
+		final WriteOperation w3 = write("w3", 3, "4444", 1234);
+		// not contiguous, other password, EPC bank
+		WriteOperation w4 = write("w4", 5, "5555", 1234);
+		WriteOperation w5 = write("w5", 6, "6666", 0);
+		WriteOperation w6 = write("w6", RFUtils.BANK_EPC);
+
+		List<NurOperationPlan.Step> steps = NurOperationPlan.compile(Arrays.<TagOperation> asList(w1, w2, w3, w4, w5, w6), false, false).getSteps();
+		assertEquals(4, steps.size());
+		assertEquals(3, ((NurOperationPlan.CoalescedWriteStep) steps.get(0)).writes.size());
+		assertEquals("w4", steps.get(1).operation.getOperationId());
+		assertEquals("w5", steps.get(2).operation.getOperationId());
+		assertEquals("w6", steps.get(3).operation.getOperationId());
+
+		new NonStrictExpectations() {
+			{
+				tagProcessor.write(sing, withInstanceOf(WriteOperation.class));
+				result = new Delegate<WriteResult>() {
+					WriteResult write(Singulation sing, WriteOperation op) {
+						WriteResult result = new WriteResult();
+						result.setOperationId(op.getOperationId());
+						result.setResult(WriteResult.Result.SUCCESS);
+						return result;
+					}
+				};
+			}
+		};
+
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(w1, w2, w3), false, false);
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		assertNull(plan.run(new TagContext(tagProcessor, tagData, sing, nurTag, null, null)));
+		assertEquals(3, tagData.getResultList().size());
+		assertEquals("w2", tagData.getResultList().get(1).getOperationId());
+		assertEquals(2, ((WriteResult) tagData.getResultList().get(1)).getWordsWritten());
+
+		new Verifications() {
+			{
+				WriteOperation combined;
+				tagProcessor.write(sing, combined = withCapture());
+				times = 1;
+				assertEquals(0, combined.getOffset());
+				assertEquals(1234, combined.getPassword());
+				assertArrayEquals(RFUtils.hexToBytes("1111222233334444"), combined.getData());
+			}
+		};
+	}
+
+	@Test
+	public void testRunCoalescedWritesFallback(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing,
+			@Mocked final NurTag nurTag) throws Exception {
+		final WriteOperation w1 = write("w1", 0, "1111", 1234);
+		final WriteOperation w2 = write("w2", 1, "2222", 1234);
+
+		new NonStrictExpectations() {
+			{
+				tagProcessor.write(sing, withInstanceOf(WriteOperation.class));
+				result = new Delegate<WriteResult>() {
+					WriteResult write(Singulation sing, WriteOperation op) {
+						WriteResult result = new WriteResult();
+						result.setOperationId(op.getOperationId());
+						// the tag is lost during the combined write
+						result.setResult(op.getData().length > 2 ? WriteResult.Result.NO_RESPONSE_FROM_TAG : WriteResult.Result.SUCCESS);
+						return result;
+					}
+				};
+			}
+		};
+
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(w1, w2), false, false);
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		assertNull(plan.run(new TagContext(tagProcessor, tagData, sing, nurTag, null, null)));
+		assertEquals(2, tagData.getResultList().size());
+
+		new Verifications() {
+			{
+				tagProcessor.write(sing, w1);
+				times = 1;
+				tagProcessor.write(sing, w2);
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testRunWritePowerRamp(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag,
+			@Mocked final NurConfigurationHelper setup) throws Exception {
+		final WriteOperation w1 = write("w1", 0, "1111", 0);
+		final KillOperation k1 = new KillOperation();
+		k1.setOperationId("k1");
+
+		new NonStrictExpectations() {
+			{
+				setup.getTxLevelHeadroom();
+				result = 5;
+
+				WriteResult insufficient = new WriteResult();
+				insufficient.setResult(WriteResult.Result.INSUFFICIENT_POWER);
+				WriteResult success = new WriteResult();
+				success.setResult(WriteResult.Result.SUCCESS);
+				tagProcessor.write(sing, w1);
+				returns(insufficient, insufficient, success);
+
+				KillResult killResult = new KillResult();
+				killResult.setResult(KillResult.Result.INSUFFICIENT_POWER);
+				tagProcessor.kill(sing, k1);
+				result = killResult;
+			}
+		};
+
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(w1, k1), false, false);
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		TagContext context = new TagContext(tagProcessor, tagData, sing, nurTag, null, null);
+		context.power = new NurPowerPolicy(setup, 1, 2, 3);
+
+		assertEquals(RFCError.NonSpecificTagError, plan.run(context));
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tagData.getResultList().get(0)).getResult());
+		assertEquals(KillResult.Result.INSUFFICIENT_POWER, ((KillResult) tagData.getResultList().get(1)).getResult());
+		/* the ramp is limited by the headroom */
+		assertEquals(5, context.power.getApplied());
+
+		context.power.restore();
+		assertEquals(0, context.power.getApplied());
+
+		new Verifications() {
+			{
+				setup.applyTxLevelBoost(1);
+				times = 1;
+				setup.applyTxLevelBoost(3);
+				times = 1;
+				setup.applyTxLevelBoost(5);
+				times = 1;
+				setup.applyTxLevelBoost(0);
+				times = 1;
+				tagProcessor.write(sing, w1);
+				times = 3;
+				tagProcessor.kill(sing, k1);
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testRunRequestedPowerRamp(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag,
+			@Mocked final NurConfigurationHelper setup, @Mocked final RFConsumer consumer) throws Exception {
+		final WriteOperation w1 = write("w1", 0, "1111", 0);
+
+		new NonStrictExpectations() {
+			{
+				setup.getTxLevelHeadroom();
+				result = 5;
+
+				consumer.getOperations(withInstanceOf(TagData.class));
+				result = Arrays.<TagOperation> asList(w1);
+
+				WriteResult insufficient = new WriteResult();
+				insufficient.setResult(WriteResult.Result.INSUFFICIENT_POWER);
+				WriteResult success = new WriteResult();
+				success.setResult(WriteResult.Result.SUCCESS);
+				tagProcessor.write(sing, w1);
+				returns(insufficient, success);
+			}
+		};
+
+		/* operations requested from the consumer use the power policy of the tag */
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(new RequestOperation()), false, false);
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		TagContext context = new TagContext(tagProcessor, tagData, sing, nurTag, consumer, null);
+		context.power = new NurPowerPolicy(setup, 1, 2, 3);
+
+		assertNull(plan.run(context));
+		assertEquals(WriteResult.Result.SUCCESS, ((WriteResult) tagData.getResultList().get(0)).getResult());
+		assertEquals(3, context.power.getApplied());
+
+		new Verifications() {
+			{
+				setup.applyTxLevelBoost(1);
+				times = 1;
+				setup.applyTxLevelBoost(3);
+				times = 1;
+				tagProcessor.write(sing, w1);
+				times = 2;
+			}
+		};
+	}
+
+	private static LockOperation lock(String id, Field field, Privilege privilege, int password) {
+		LockOperation op = new LockOperation();
+		op.setOperationId(id);
+		op.setField(field);
+		op.setPrivilege(privilege);
+		op.setPassword(password);
+		return op;
+	}
+
+	@Test
+	public void testMergeLocks(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag)
+			throws Exception {
+		List<TagOperation> operations = Arrays.<TagOperation> asList(lock("l1", Field.EPC_MEMORY, Privilege.LOCK, 1),
+				lock("l2", Field.USER_MEMORY, Privilege.LOCK, 1), lock("l3", Field.ACCESS_PASSWORD, Privilege.LOCK, 1),
+				lock("l4", Field.KILL_PASSWORD, Privilege.PERMALOCK, 1), lock("l5", Field.TID_MEMORY, Privilege.PERMALOCK, 2));
+
+		NurOperationPlan plan = NurOperationPlan.compile(operations, false, false);
+		assertEquals(3, plan.getSteps().size());
+		assertEquals(3, ((NurOperationPlan.CombinedLockStep) plan.getSteps().get(0)).locks.size());
+		assertEquals("l4", plan.getSteps().get(1).operation.getOperationId());
+		assertEquals("l5", plan.getSteps().get(2).operation.getOperationId());
+
+		new NonStrictExpectations() {
+			{
+				tagProcessor.lock(sing, withInstanceOf(List.class));
+				result = new Delegate<List<LockResult>>() {
+					@SuppressWarnings("unused")
+					List<LockResult> lock(Singulation sing, List<LockOperation> operations) {
+						List<LockResult> results = new ArrayList<>();
+						for (LockOperation operation : operations) {
+							LockResult result = new LockResult();
+							result.setOperationId(operation.getOperationId());
+							result.setResult(LockResult.Result.MEMORY_LOCKED_ERROR);
+							results.add(result);
+						}
+						return results;
+					}
+				};
+			}
+		};
+
+		// each operation gets its own result, the failure skips the remaining steps
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		assertEquals(RFCError.NonSpecificTagError, plan.run(new TagContext(tagProcessor, tagData, sing, nurTag, null, null)));
+		assertEquals(5, tagData.getResultList().size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("l" + (i + 1), tagData.getResultList().get(i).getOperationId());
+			assertEquals(LockResult.Result.MEMORY_LOCKED_ERROR, ((LockResult) tagData.getResultList().get(i)).getResult());
+		}
+		assertEquals(LockResult.Result.NON_SPECIFIC_TAG_ERROR, ((LockResult) tagData.getResultList().get(4)).getResult());
+
+		new Verifications() {
+			{
+				tagProcessor.lock(sing, withInstanceOf(LockOperation.class));
+				times = 0;
+			}
+		};
+	}
+
+	@Test
+	public void testRun(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag,
+			@Mocked final RFConsumer consumer) throws Exception {
+		final ReadOperation r1 = read("r1", RFUtils.BANK_USR, 0, 2);
+		final WriteOperation w1 = write("w1", RFUtils.BANK_USR);
+		final KillOperation k1 = new KillOperation();
+		k1.setOperationId("k1");
+		final ReadOperation requested = read("r2", RFUtils.BANK_USR, 2, 2);
+
+		new NonStrictExpectations() {
+			{
+				ReadResult readResult = new ReadResult();
+				readResult.setOperationId("r1");
+				readResult.setResult(ReadResult.Result.SUCCESS);
+				tagProcessor.read(sing, withInstanceOf(ReadOperation.class), null);
+				result = readResult;
+
+				WriteResult writeResult = new WriteResult();
+				writeResult.setOperationId("w1");
+				writeResult.setResult(WriteResult.Result.MEMORY_LOCKED_ERROR);
+				tagProcessor.write(sing, w1);
+				result = writeResult;
+
+				consumer.getOperations(withInstanceOf(TagData.class));
+				result = Arrays.<TagOperation> asList(requested);
+			}
+		};
+
+		// successful plan including operations requested from the consumer
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(r1, new RequestOperation()), false, false);
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		assertNull(plan.run(new TagContext(tagProcessor, tagData, sing, nurTag, consumer, null)));
+		assertEquals(2, tagData.getResultList().size());
+
+		new Verifications() {
+			{
+				tagProcessor.read(sing, r1, null);
+				times = 1;
+				tagProcessor.read(sing, requested, null);
+				times = 1;
+			}
+		};
+
+		// failed write skips subsequent steps and request operations
+		plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(w1, k1, new RequestOperation(), r1), false, false);
+		tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		assertEquals(RFCError.NonSpecificTagError, plan.run(new TagContext(tagProcessor, tagData, sing, nurTag, consumer, null)));
+		assertEquals(3, tagData.getResultList().size());
+		assertEquals(KillResult.Result.NON_SPECIFIC_TAG_ERROR, ((KillResult) tagData.getResultList().get(1)).getResult());
+		assertEquals(ReadResult.Result.NON_SPECIFIC_TAG_ERROR, ((ReadResult) tagData.getResultList().get(2)).getResult());
+
+		new Verifications() {
+			{
+				tagProcessor.kill(sing, withInstanceOf(KillOperation.class));
+				times = 0;
+				consumer.getOperations(withInstanceOf(TagData.class));
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testRunRequested(@Mocked final NurTagProcessor tagProcessor, @Mocked final Singulation sing, @Mocked final NurTag nurTag)
+			throws Exception {
+		final ReadOperation r1 = read("r1", RFUtils.BANK_USR, 0, 2);
+		final ReadOperation r2 = read("r2", RFUtils.BANK_TID, 0, 2);
+		final ReadOperation requested = read("r3", RFUtils.BANK_USR, 2, 2);
+
+		new NonStrictExpectations() {
+			{
+				ReadResult readResult = new ReadResult();
+				readResult.setResult(ReadResult.Result.SUCCESS);
+				tagProcessor.read(sing, withInstanceOf(ReadOperation.class), null);
+				result = readResult;
+			}
+		};
+
+		NurOperationPlan plan = NurOperationPlan.compile(Arrays.<TagOperation> asList(r1, new RequestOperation(), r2, new RequestOperation()), false,
+				false);
+		assertEquals(1, plan.getRequestIndex(0));
+		assertEquals(3, plan.getRequestIndex(2));
+		assertEquals(-1, plan.getRequestIndex(4));
+
+		TagData tagData = new TagData();
+		tagData.setResultList(new ArrayList<OperationResult>());
+		TagContext context = new TagContext(tagProcessor, tagData, sing, nurTag, null, null);
+
+		assertNull(plan.run(context, 0, 1));
+		assertEquals(1, tagData.getResultList().size());
+		assertNull(plan.runRequested(context, 1, Arrays.<TagOperation> asList(requested)));
+		assertEquals(2, tagData.getResultList().size());
+		assertNull(plan.run(context, 2, 3));
+		assertNull(plan.runRequested(context, 3, null));
+		assertEquals(3, tagData.getResultList().size());
+
+		new Verifications() {
+			{
+				tagProcessor.read(sing, r1, null);
+				times = 1;
+				tagProcessor.read(sing, requested, null);
+				times = 1;
+				tagProcessor.read(sing, r2, null);
+				times = 1;
+			}
+		};
+	}
+}
@@ -0,0 +1,356 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import havis.device.rf.RFConsumer;
+import havis.device.rf.common.HardwareManager;
+import havis.device.rf.exception.ImplementationException;
+import havis.device.rf.nur.NurSharedSession.Request;
+import havis.device.rf.tag.Filter;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.TagDataList;
+import havis.device.rf.tag.operation.KillOperation;
+import havis.device.rf.tag.operation.ReadOperation;
+import havis.device.rf.tag.operation.TagOperation;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mockit.Delegate;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+
+import org.junit.Test;
+
+public class NurSharedSessionTest {
+
+	@Injectable
+	HardwareManager hardwareManager;
+
+	private static List<TagOperation> reads(String... ids) {
+		List<TagOperation> operations = new ArrayList<>();
+		for (String id : ids)
+			operations.add(new ReadOperation(id, (short) 3, (short) 0, (short) 2, 0));
+		return operations;
+	}
+
+	private static TagDataList result(String operationId) {
+		ReadResult readResult = new ReadResult();
+		readResult.setOperationId(operationId);
+		readResult.setResult(ReadResult.Result.SUCCESS);
+		readResult.setReadData(new byte[] { 1, 2, 3, 4 });
+
+		TagData tagData = new TagData();
+		tagData.setEpc(new byte[] { 0x30, 0x01 });
+		tagData.setAntennaID((short) 1);
+		tagData.setResultList(new ArrayList<OperationResult>(Arrays.asList(readResult)));
+
+		TagDataList result = new TagDataList();
+		result.getEntryList().add(tagData);
+		return result;
+	}
+
+	@Test
+	public void testCreateKey() {
+		List<Short> antennas = Arrays.asList((short) 1, (short) 2);
+		List<Filter> filters = new ArrayList<>();
+
+		String key = NurSharedSession.createKey(antennas, filters, reads("a"));
+		assertNotNull(key);
+		// operation IDs and antenna order are ignored
+		assertEquals(key, NurSharedSession.createKey(Arrays.asList((short) 2, (short) 1), filters, reads("b")));
+		assertFalse(key.equals(NurSharedSession.createKey(Arrays.asList((short) 1), filters, reads("a"))));
+		assertFalse(key.equals(NurSharedSession.createKey(antennas, filters, reads("a", "b"))));
+
+		Filter filter = new Filter();
+		filter.setBank((short) 1);
+		filter.setData(new byte[] { 0x30 });
+		filter.setMask(new byte[] { (byte) 0xff });
+		assertFalse(key.equals(NurSharedSession.createKey(antennas, Arrays.asList(filter), reads("a"))));
+
+		// other operations are not merged
+		List<TagOperation> operations = reads("a");
+		operations.add(new KillOperation());
+		assertNull(NurSharedSession.createKey(antennas, filters, operations));
+		assertNull(NurSharedSession.createKey(null, filters, reads("a")));
+	}
+
+	@Test
+	public void testPriority() {
+		List<Short> antennas = Arrays.asList((short) 1);
+		List<Filter> filters = new ArrayList<>();
+		Request low = new Request(antennas, filters, reads(), null, 0, 0);
+		Request high = new Request(antennas, filters, reads(), null, 5, 1);
+		Request lowLater = new Request(antennas, filters, reads(), null, 0, 2);
+
+		assertTrue(high.compareTo(low) < 0);
+		assertTrue(low.compareTo(lowLater) < 0);
+		assertTrue(lowLater.compareTo(high) > 0);
+	}
+
+	@Test
+	public void testProcessMerged(@Injectable final RFConsumer consumer1, @Injectable final RFConsumer consumer2) throws Exception {
+		final List<Short> antennas = Arrays.asList((short) 1);
+		final List<Filter> filters = new ArrayList<>();
+		final List<TagOperation> operations1 = reads("op1");
+		List<TagOperation> operations2 = reads("op2");
+
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, operations1, withInstanceOf(RFConsumer.class));
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer) {
+						consumer.keepAlive();
+						return result("op1");
+					}
+				};
+			}
+		};
+
+		NurSharedSession session = new NurSharedSession(hardwareManager);
+		Request request1 = new Request(antennas, filters, operations1, consumer1, 0, 0);
+		Request request2 = new Request(antennas, filters, operations2, consumer2, 0, 1);
+		session.process(Arrays.asList(request1, request2));
+
+		TagDataList result1 = request1.await(1000);
+		TagDataList result2 = request2.await(1000);
+
+		assertEquals("op1", result1.getEntryList().get(0).getResultList().get(0).getOperationId());
+		TagData tagData2 = result2.getEntryList().get(0);
+		assertNotSame(result1.getEntryList().get(0), tagData2);
+		assertArrayEquals(new byte[] { 0x30, 0x01 }, tagData2.getEpc());
+		assertEquals(1, tagData2.getAntennaID());
+		ReadResult readResult2 = (ReadResult) tagData2.getResultList().get(0);
+		assertEquals("op2", readResult2.getOperationId());
+		assertEquals(ReadResult.Result.SUCCESS, readResult2.getResult());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4 }, readResult2.getReadData());
+
+		new Verifications() {
+			{
+				hardwareManager.execute(antennas, filters, operations1, withInstanceOf(RFConsumer.class));
+				times = 1;
+				consumer1.keepAlive();
+				times = 1;
+				consumer2.keepAlive();
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testProcessError() throws Exception {
+		final List<Short> antennas = Arrays.asList((short) 1);
+		final List<Filter> filters = new ArrayList<>();
+
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, withInstanceOf(List.class), null);
+				result = new ImplementationException("failed");
+			}
+		};
+
+		NurSharedSession session = new NurSharedSession(hardwareManager);
+		Request request1 = new Request(antennas, filters, reads(), null, 0, 0);
+		Request request2 = new Request(antennas, filters, reads(), null, 0, 1);
+		session.process(Arrays.asList(request1, request2));
+
+		for (Request request : Arrays.asList(request1, request2)) {
+			try {
+				request.await(1000);
+				fail();
+			} catch (ImplementationException e) {
+				assertEquals("failed", e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+		final List<Short> antennas = Arrays.asList((short) 1);
+		final List<Filter> filters = new ArrayList<>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger rounds = new AtomicInteger();
+
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, withInstanceOf(List.class), null);
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer)
+							throws InterruptedException {
+						rounds.incrementAndGet();
+						started.countDown();
+						release.await(5, TimeUnit.SECONDS);
+						return new TagDataList();
+					}
+				};
+			}
+		};
+
+		final NurSharedSession session = new NurSharedSession(hardwareManager);
+		final NurSharedHardwareManager handle1 = new NurSharedHardwareManager(session);
+		final NurSharedHardwareManager handle2 = new NurSharedHardwareManager(session);
+		final NurSharedHardwareManager handle3 = new NurSharedHardwareManager(session);
+
+		try {
+			handle1.execute(antennas, filters, reads(), null);
+			fail();
+		} catch (ImplementationException e) {
+		}
+
+		handle1.openConnection();
+		handle2.openConnection();
+		handle2.openConnection();
+		handle3.openConnection();
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Future<TagDataList>> futures = new ArrayList<>();
+			// the first request blocks the module
+			futures.add(executor.submit(new Callable<TagDataList>() {
+				@Override
+				public TagDataList call() throws Exception {
+					return handle1.execute(antennas, filters, reads(), null);
+				}
+			}));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			// the following two are queued and merged
+			for (final NurSharedHardwareManager handle : Arrays.asList(handle2, handle3)) {
+				futures.add(executor.submit(new Callable<TagDataList>() {
+					@Override
+					public TagDataList call() throws Exception {
+						return handle.execute(antennas, filters, reads(), null);
+					}
+				}));
+			}
+			Thread.sleep(200);
+			release.countDown();
+
+			for (Future<TagDataList> future : futures)
+				assertNotNull(future.get(5, TimeUnit.SECONDS));
+			assertEquals(2, rounds.get());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		handle1.closeConnection();
+		handle2.closeConnection();
+		new Verifications() {
+			{
+				hardwareManager.openConnection();
+				times = 1;
+				hardwareManager.closeConnection();
+				times = 0;
+			}
+		};
+
+		handle3.closeConnection();
+		new Verifications() {
+			{
+				hardwareManager.closeConnection();
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void testAwaitTimeout() throws Exception {
+		Request request = new Request(Arrays.asList((short) 1), new ArrayList<Filter>(), reads(), null, 0, 0);
+		try {
+			request.await(10);
+			fail();
+		} catch (ImplementationException e) {
+		}
+	}
+
+	@Test
+	public void testCloseWhileExecuting() throws Exception {
+		final List<Short> antennas = Arrays.asList((short) 1);
+		final List<Filter> filters = new ArrayList<>();
+		final CountDownLatch started = new CountDownLatch(1);
+
+		new NonStrictExpectations() {
+			{
+				hardwareManager.execute(antennas, filters, withInstanceOf(List.class), null);
+				result = new Delegate<TagDataList>() {
+					@SuppressWarnings("unused")
+					TagDataList execute(List<Short> antennas, List<Filter> filters, List<TagOperation> operations, RFConsumer consumer) {
+						started.countDown();
+						/* the interrupt is swallowed like the NUR API may do */
+						long end = System.currentTimeMillis() + 200;
+						while (System.currentTimeMillis() < end) {
+							try {
+								Thread.sleep(end - System.currentTimeMillis());
+							} catch (InterruptedException e) {
+							}
+						}
+						return new TagDataList();
+					}
+				};
+			}
+		};
+
+		final NurSharedHardwareManager handle = new NurSharedHardwareManager(new NurSharedSession(hardwareManager));
+		handle.openConnection();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<TagDataList> running = executor.submit(new Callable<TagDataList>() {
+				@Override
+				public TagDataList call() throws Exception {
+					return handle.execute(antennas, filters, reads(), null);
+				}
+			});
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			Future<TagDataList> queued = executor.submit(new Callable<TagDataList>() {
+				@Override
+				public TagDataList call() throws Exception {
+					return handle.execute(antennas, filters, reads(), null);
+				}
+			});
+			Thread.sleep(50);
+
+			/* the worker stops after the request in progress, queued requests fail */
+			handle.closeConnection();
+			assertNotNull(running.get(5, TimeUnit.SECONDS));
+			try {
+				queued.get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof ImplementationException);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		new Verifications() {
+			{
+				hardwareManager.execute(antennas, filters, withInstanceOf(List.class), null);
+				times = 1;
+				hardwareManager.closeConnection();
+				times = 1;
+			}
+		};
+	}
+}
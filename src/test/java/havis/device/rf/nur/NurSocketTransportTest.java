@@ -0,0 +1,171 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+import mockit.Mocked;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nordicid.nativeserial.NativeSerialTransport;
+import com.nordicid.nativeserial.SerialPort;
+import com.nordicid.nurapi.NurApiTransport;
+
+public class NurSocketTransportTest {
+
+	private ServerSocket server;
+
+	@Before
+	public void setup() throws IOException {
+		server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.close();
+	}
+
+	private NurSocketTransport createTransport() {
+		return new NurSocketTransport(InetAddress.getLoopbackAddress().getHostAddress(), server.getLocalPort(), 1000, 100, true, true);
+	}
+
+	@Test
+	public void testConnectDisconnect() throws Exception {
+		NurSocketTransport transport = createTransport();
+		assertFalse(transport.isConnected());
+
+		transport.connect();
+		Socket peer = server.accept();
+		try {
+			assertTrue(transport.isConnected());
+			assertTrue(transport.getSocket().getTcpNoDelay());
+			assertTrue(transport.getSocket().getKeepAlive());
+			assertEquals(100, transport.getSocket().getSoTimeout());
+
+			// connecting again keeps the connection
+			Socket socket = transport.getSocket();
+			transport.connect();
+			assertTrue(socket == transport.getSocket());
+
+			transport.disconnect();
+			assertFalse(transport.isConnected());
+			// disconnecting again is ignored
+			transport.disconnect();
+		} finally {
+			peer.close();
+		}
+	}
+
+	@Test
+	public void testConnectError() throws Exception {
+		int port = server.getLocalPort();
+		server.close();
+
+		NurSocketTransport transport = new NurSocketTransport(InetAddress.getLoopbackAddress().getHostAddress(), port, 1000, 100, true, true);
+		try {
+			transport.connect();
+			fail();
+		} catch (IOException e) {
+		}
+		assertFalse(transport.isConnected());
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		NurSocketTransport transport = createTransport();
+		transport.connect();
+		Socket peer = server.accept();
+		try {
+			InputStream peerIn = peer.getInputStream();
+			OutputStream peerOut = peer.getOutputStream();
+
+			// only the given length is written
+			assertEquals(3, transport.writeData(new byte[] { 1, 2, 3, 4 }, 3));
+			byte[] received = new byte[3];
+			int count = 0;
+			while (count < received.length)
+				count += peerIn.read(received, count, received.length - count);
+			assertArrayEquals(new byte[] { 1, 2, 3 }, received);
+
+			// no data within the read timeout
+			byte[] buffer = new byte[16];
+			assertEquals(0, transport.readData(buffer));
+
+			peerOut.write(new byte[] { 5, 6 });
+			peerOut.flush();
+			while ((count = transport.readData(buffer)) == 0)
+				;
+			assertEquals(2, count);
+			assertArrayEquals(new byte[] { 5, 6 }, Arrays.copyOf(buffer, count));
+
+			// closed by the module
+			peer.close();
+			try {
+				while (transport.readData(buffer) >= 0)
+					;
+				fail();
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Connection closed"));
+			}
+			assertFalse(transport.isConnected());
+
+			try {
+				transport.writeData(new byte[] { 1 }, 1);
+				fail();
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Not connected"));
+			}
+		} finally {
+			peer.close();
+			transport.disconnect();
+		}
+	}
+
+	@Test
+	public void testCreateTransport(@Mocked SerialPort serialPort, @Mocked NativeSerialTransport serialTransport) throws Exception {
+		assertTrue(NurTransportFactory.isSocketAddress("tcp://localhost"));
+		assertTrue(NurTransportFactory.isSocketAddress("TCP://localhost:1234"));
+		assertFalse(NurTransportFactory.isSocketAddress("/dev/ttyACM0"));
+		assertFalse(NurTransportFactory.isSocketAddress(null));
+
+		NurApiTransport transport = NurTransportFactory.createTransport("tcp://10.0.0.1:1234");
+		assertTrue(transport instanceof NurSocketTransport);
+		assertEquals("10.0.0.1", ((NurSocketTransport) transport).getHost());
+		assertEquals(1234, ((NurSocketTransport) transport).getPort());
+
+		transport = NurTransportFactory.createTransport("tcp://reader");
+		assertEquals("reader", ((NurSocketTransport) transport).getHost());
+		assertEquals(NurEnvironment.SOCKET_PORT, ((NurSocketTransport) transport).getPort());
+
+		transport = NurTransportFactory.createTransport("tcp://[::1]:4000");
+		assertEquals("::1", ((NurSocketTransport) transport).getHost());
+		assertEquals(4000, ((NurSocketTransport) transport).getPort());
+
+		try {
+			NurTransportFactory.createTransport("tcp://reader:port");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			NurTransportFactory.createTransport("tcp://:4000");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		assertTrue(NurTransportFactory.createTransport("/dev/ttyACM0") instanceof NativeSerialTransport);
+	}
+}
@@ -0,0 +1,121 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import havis.device.rf.common.util.RFUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.nordicid.nurapi.NurApi;
+import com.nordicid.nurapi.NurEventFrequencyHop;
+import com.nordicid.nurapi.NurEventTraceTag;
+
+public class NurTagLocatorTest {
+
+	@Test
+	public void testCreate() {
+		byte[] epc = RFUtils.hexToBytes("300833B2DDD9014000000001");
+		NurTagLocator locator = NurTagLocator.forEpc(epc, 8);
+		assertEquals(NurApi.BANK_EPC, locator.getBank());
+		assertEquals(32, locator.getBitAddress());
+		assertArrayEquals(epc, locator.getMask());
+
+		locator = NurTagLocator.forTid(RFUtils.hexToBytes("E2801105200070A1B2C3D4E5"), 8);
+		assertEquals(NurApi.BANK_TID, locator.getBank());
+		assertEquals(0, locator.getBitAddress());
+
+		try {
+			NurTagLocator.forEpc(new byte[] {}, 8);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			NurTagLocator.forEpc(epc, 0);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			locator.setSmoothing(0);
+			fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testRingBuffer() {
+		NurTagLocator locator = NurTagLocator.forEpc(RFUtils.hexToBytes("3000"), 4);
+		NurTagLocator.Sample sample = new NurTagLocator.Sample();
+		assertFalse(locator.getLatest(sample));
+
+		for (int i = 0; i < 6; i++)
+			locator.traced(-60 + i, 40 + i, i % 2);
+
+		assertEquals(6, locator.getCount());
+		/* the first two samples have been overwritten */
+		assertFalse(locator.getSample(1, sample));
+		assertFalse(locator.getSample(6, sample));
+
+		assertTrue(locator.getSample(2, sample));
+		assertEquals(2, sample.getSequence());
+		assertEquals(-58, sample.getRssi());
+		assertEquals(42, sample.getScaledRssi());
+		assertEquals(1, sample.getAntenna());
+		assertEquals(-1, sample.getChannel());
+
+		assertTrue(locator.getLatest(sample));
+		assertEquals(5, sample.getSequence());
+		assertEquals(-55, sample.getRssi());
+		assertEquals(2, sample.getAntenna());
+		/* without smoothing the average is the last sample */
+		assertEquals(-55.0, sample.getSmoothedRssi(), 0.001);
+	}
+
+	@Test
+	public void testEvents() {
+		final List<Double> smoothed = new ArrayList<>();
+		final List<Short> channels = new ArrayList<>();
+		NurTagLocator locator = NurTagLocator.forEpc(RFUtils.hexToBytes("3000"), 16);
+		locator.setSmoothing(0.5);
+		locator.setListener(new NurTagLocator.Listener() {
+			@Override
+			public void sampleReceived(NurTagLocator.Sample sample) {
+				smoothed.add(sample.getSmoothedRssi());
+				channels.add(sample.getChannel());
+			}
+		});
+
+		NurApiListenerImpl listener = new NurApiListenerImpl();
+		NurEventTraceTag trace = new NurEventTraceTag();
+		trace.rssi = -60;
+		NurEventFrequencyHop hop = new NurEventFrequencyHop();
+		hop.freqIdx = 3;
+
+		/* events are dropped without a running locator */
+		listener.traceTagEvent(trace);
+		assertEquals(0, locator.getCount());
+
+		listener.setTagLocator(locator);
+		listener.traceTagEvent(trace);
+		listener.frequencyHopEvent(hop);
+		trace.rssi = -50;
+		listener.traceTagEvent(trace);
+		listener.traceTagEvent(null);
+		listener.frequencyHopEvent(null);
+
+		assertEquals(2, locator.getCount());
+		assertEquals(-60.0, smoothed.get(0), 0.001);
+		assertEquals(-55.0, smoothed.get(1), 0.001);
+		assertEquals(Short.valueOf((short) -1), channels.get(0));
+		assertEquals(Short.valueOf((short) 3), channels.get(1));
+
+		listener.setTagLocator(null);
+		listener.traceTagEvent(trace);
+		assertEquals(2, locator.getCount());
+	}
+}
@@ -30,6 +30,8 @@ import havis.device.rf.tag.result.ReadResult;
 import havis.device.rf.tag.result.ReadResult.Result;
 import havis.device.rf.tag.result.WriteResult;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
@@ -381,6 +383,194 @@ public class NurTagProcessorTest {
 
 	}
 
+	@Test
+	public void readCompleteBankKnownChip(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final TagData tagData,
+			@Mocked final NurTag nurTag, @Mocked final Environment env) throws Exception {
+		ReadOperation ro = new ReadOperation();
+		ro.setOperationId("ro");
+		ro.setBank(RFUtils.BANK_USR);
+		ro.setOffset((short) 2);
+
+		/* the user bank of a Monza 4E is read with its exact size */
+		new NonStrictExpectations() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 2, 12);
+				result = new byte[12];
+			}
+		};
+
+		ReadResult res = new NurTagProcessor(nurApi).readCompleteBank(sing, ro, tagData, nurTag, RFUtils.hexToBytes("E280110C"));
+		assertEquals(Result.SUCCESS, res.getResult());
+		assertEquals(12, res.getReadData().length);
+
+		/* a Monza R6 has no user bank */
+		res = new NurTagProcessor(nurApi).readCompleteBank(sing, ro, tagData, nurTag, RFUtils.hexToBytes("E2801160"));
+		assertEquals(Result.MEMORY_OVERRUN_ERROR, res.getResult());
+
+		new Verifications() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), anyInt, anyInt, anyInt);
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void readCompleteBankLearnedSize(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final TagData tagData,
+			@Mocked final NurTag nurTag, @Mocked final Environment env) throws Exception {
+		File file = File.createTempFile("userbank", ".properties");
+		file.delete();
+		setField(NurUserBankSizeCache.class, "instance", new NurUserBankSizeCache(file));
+		try {
+			ReadOperation ro = new ReadOperation();
+			ro.setOperationId("ro");
+			ro.setBank(RFUtils.BANK_USR);
+
+			/* the user bank of the unknown model has 20 words */
+			new NonStrictExpectations() {
+				{
+					nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, anyInt, anyInt);
+					result = new Delegate<byte[]>() {
+						byte[] readTag(int sBank, int sAddr, int sBits, byte[] sMask, int rdBank, int rdAddr, int rdByteCount) throws Exception {
+							if (rdAddr + rdByteCount / 2 > 20)
+								throw new NurApiException(NurApiErrors.G2_TAG_MEM_OVERRUN);
+							return new byte[rdByteCount];
+						}
+					};
+				}
+			};
+
+			byte[] tid = RFUtils.hexToBytes("E2801234");
+			ReadResult res = new NurTagProcessor(nurApi).readCompleteBank(sing, ro, tagData, nurTag, tid);
+			assertEquals(Result.SUCCESS, res.getResult());
+			assertEquals(40, res.getReadData().length);
+			assertEquals(Integer.valueOf(20), new NurUserBankSizeCache(file).get(tid));
+
+			/* the learned size is used for further tags of the model */
+			res = new NurTagProcessor(nurApi).readCompleteBank(sing, ro, tagData, nurTag, tid);
+			assertEquals(40, res.getReadData().length);
+
+			new Verifications() {
+				{
+					/* binary search up to 512 words and two exact reads */
+					nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, anyInt, anyInt);
+					times = 11;
+				}
+			};
+		} finally {
+			setField(NurUserBankSizeCache.class, "instance", null);
+			file.delete();
+		}
+	}
+
+	@Test
+	public void accessDirectly(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		new NonStrictExpectations() {
+			{
+				/* PC of a 96 bit EPC followed by the EPC */
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, 1, 14);
+				result = RFUtils.hexToBytes("3000112233445566778899AABBCC");
+
+				sing.getBank();
+				result = NurApi.BANK_TID;
+				sing.getAddr();
+				result = 0;
+				sing.getData();
+				result = RFUtils.hexToBytes("E2003412013AFF0000000001");
+			}
+		};
+
+		NurTag tag = new NurTagProcessor(nurApi).accessDirectly(sing, 1);
+		assertNotNull(tag);
+		assertEquals(0x3000, tag.getPC());
+		assertEquals(1, tag.getAntennaId());
+		assertArrayEquals(RFUtils.hexToBytes("112233445566778899AABBCC"), tag.getEpc());
+		/* the TID is available as on inventory with TID singulation */
+		assertArrayEquals(RFUtils.hexToBytes("E2003412013AFF0000000001"), tag.getIrData());
+
+		new NonStrictExpectations() {
+			{
+				/* EPC bank of a 32 bit EPC */
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, 1, 14);
+				result = new NurApiException(NurApiErrors.G2_TAG_MEM_OVERRUN);
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, 1, 2);
+				result = RFUtils.hexToBytes("1000");
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, 2, 4);
+				result = RFUtils.hexToBytes("11223344");
+			}
+		};
+
+		tag = new NurTagProcessor(nurApi).accessDirectly(sing, 0);
+		assertEquals(0x1000, tag.getPC());
+		assertArrayEquals(RFUtils.hexToBytes("11223344"), tag.getEpc());
+	}
+
+	@Test
+	public void accessDirectlyNoTag(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		new NonStrictExpectations() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, anyInt, anyInt);
+				result = new NurApiException(NurApiErrors.NO_TAG);
+			}
+		};
+
+		assertNull(new NurTagProcessor(nurApi).accessDirectly(sing, 0));
+
+		new NonStrictExpectations() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.BANK_EPC, anyInt, anyInt);
+				result = new NurApiException(NurApiErrors.G2_TAG_INSUF_POWER);
+			}
+		};
+
+		try {
+			new NurTagProcessor(nurApi).accessDirectly(sing, 0);
+			fail("Exception expected");
+		} catch (NurApiException e) {
+			assertEquals(NurApiErrors.G2_TAG_INSUF_POWER, e.error);
+		}
+	}
+
+	@Test
+	public void readCoalesced(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		ReadOperation ro1 = new ReadOperation();
+		ro1.setOperationId("ro1");
+		ro1.setBank(RFUtils.BANK_USR);
+		ro1.setOffset((short) 2);
+		ro1.setLength((short) 2);
+
+		ReadOperation ro2 = new ReadOperation();
+		ro2.setOperationId("ro2");
+		ro2.setBank(RFUtils.BANK_USR);
+		ro2.setOffset((short) 0);
+		ro2.setLength((short) 3);
+
+		new NonStrictExpectations() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 0, 8);
+				result = RFUtils.hexToBytes("0001020304050607");
+			}
+		};
+
+		List<ReadResult> results = new NurTagProcessor(nurApi).readCoalesced(sing, Arrays.asList(ro1, ro2));
+		assertEquals(2, results.size());
+		assertEquals("ro1", results.get(0).getOperationId());
+		assertEquals(Result.SUCCESS, results.get(0).getResult());
+		assertArrayEquals(RFUtils.hexToBytes("04050607"), results.get(0).getReadData());
+		assertEquals("ro2", results.get(1).getOperationId());
+		assertArrayEquals(RFUtils.hexToBytes("000102030405"), results.get(1).getReadData());
+
+		/* a failed combined read leaves the operations to be read individually */
+		new NonStrictExpectations() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 0, 8);
+				result = new NurApiException(NurApiErrors.G2_READ);
+			}
+		};
+
+		assertNull(new NurTagProcessor(nurApi).readCoalesced(sing, Arrays.asList(ro1, ro2)));
+	}
+
 	@Test
 	public void write(@Mocked final Singulation sing, @Mocked final NurApi nurApi, 
 			@Mocked final WriteOperation wo, @Mocked final WriteResult res, @Mocked final Environment env) throws Exception {
@@ -487,6 +677,232 @@ public class NurTagProcessorTest {
 		} };
 	}
 
+	@Test
+	public void writeBlocks(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_USR);
+		wo.setOffset((short) 1);
+		wo.setData(RFUtils.hexToBytes("0001020304050607"));
+
+		/* blocks are aligned to the block size */
+		WriteResult res = new NurTagProcessor(nurApi).write(sing, wo, 2);
+		assertEquals(WriteResult.Result.SUCCESS, res.getResult());
+		assertEquals(4, res.getWordsWritten());
+
+		new Verifications() {
+			{
+				nurApi.blockWrite(0, false, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 1, 2, withInstanceOf(byte[].class), 1);
+				times = 1;
+				nurApi.blockWrite(0, false, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 2, 4, withInstanceOf(byte[].class), 2);
+				times = 1;
+				nurApi.blockWrite(0, false, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 4, 2, withInstanceOf(byte[].class), 1);
+				times = 1;
+			}
+		};
+
+		/* a failed block is written word by word, progress is reported on failure */
+		new NonStrictExpectations() {
+			{
+				nurApi.blockWrite(anyInt, anyBoolean, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), anyInt, 2, anyInt,
+						withInstanceOf(byte[].class), anyInt);
+				result = new NurApiException(NurApiErrors.G2_WRITE);
+
+				nurApi.writeTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), anyInt, 4, 2, withInstanceOf(byte[].class));
+				result = new NurApiException(NurApiErrors.G2_TAG_MEM_LOCKED);
+			}
+		};
+
+		res = new NurTagProcessor(nurApi).write(sing, wo, 2);
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, res.getResult());
+		assertEquals(3, res.getWordsWritten());
+
+		new Verifications() {
+			{
+				nurApi.writeTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 2, 2, withInstanceOf(byte[].class));
+				times = 1;
+				nurApi.writeTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_USR, 3, 2, withInstanceOf(byte[].class));
+				times = 1;
+			}
+		};
+	}
+
+	@Test
+	public void writeBlocksEpc(@Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		Singulation sing = Singulation.getEPCInstance(RFUtils.hexToBytes("300833B2DDD9014000000000"));
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_EPC);
+		wo.setOffset((short) 2);
+		wo.setData(RFUtils.hexToBytes("111122223333444455556666"));
+
+		/* each block is singulated by the EPC including the blocks written before */
+		WriteResult res = new NurTagProcessor(nurApi).write(sing, wo, 2);
+		assertEquals(WriteResult.Result.SUCCESS, res.getResult());
+		assertEquals(6, res.getWordsWritten());
+		assertArrayEquals(RFUtils.hexToBytes("111122223333444455556666"), sing.getData());
+
+		new Verifications() {
+			{
+				List<byte[]> sData = new ArrayList<>();
+				nurApi.blockWrite(0, false, NurApi.BANK_EPC, 0x20, 96, withCapture(sData), RFUtils.BANK_EPC, anyInt, 4, withInstanceOf(byte[].class), 2);
+				times = 3;
+				assertArrayEquals(RFUtils.hexToBytes("300833B2DDD9014000000000"), sData.get(0));
+				assertArrayEquals(RFUtils.hexToBytes("11112222DDD9014000000000"), sData.get(1));
+				assertArrayEquals(RFUtils.hexToBytes("111122223333444400000000"), sData.get(2));
+			}
+		};
+
+		/* the words written one by one after a failed block update the singulation data as well */
+		sing = Singulation.getEPCInstance(RFUtils.hexToBytes("300833B2DDD9014000000000"));
+		new NonStrictExpectations() {
+			{
+				nurApi.blockWrite(anyInt, anyBoolean, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), anyInt, 4, anyInt,
+						withInstanceOf(byte[].class), anyInt);
+				result = new NurApiException(NurApiErrors.G2_WRITE);
+			}
+		};
+
+		res = new NurTagProcessor(nurApi).write(sing, wo, 2);
+		assertEquals(WriteResult.Result.SUCCESS, res.getResult());
+		assertArrayEquals(RFUtils.hexToBytes("111122223333444455556666"), sing.getData());
+
+		new Verifications() {
+			{
+				byte[] sData;
+				nurApi.writeTag(NurApi.BANK_EPC, 0x20, 96, sData = withCapture(), RFUtils.BANK_EPC, 5, 2, withInstanceOf(byte[].class));
+				times = 1;
+				assertArrayEquals(RFUtils.hexToBytes("111122223333014000000000"), sData);
+			}
+		};
+	}
+
+	@Test
+	public void writeChanged(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final NurTag nurTag, @Mocked final Environment env)
+			throws Exception {
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_EPC);
+		wo.setOffset((short) 2);
+		wo.setData(RFUtils.hexToBytes("300833B2DDD9014000000001"));
+
+		/* only the changed words are written, unchanged words count as written */
+		WriteResult res = new NurTagProcessor(nurApi).writeChanged(sing, wo, 0, RFUtils.hexToBytes("300833B2DDD9014000000000"));
+		assertEquals(WriteResult.Result.SUCCESS, res.getResult());
+		assertEquals(6, res.getWordsWritten());
+
+		new Verifications() {
+			{
+				byte[] data;
+				nurApi.writeTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_EPC, 7, 2, data = withCapture());
+				times = 1;
+				assertArrayEquals(RFUtils.hexToBytes("0001"), data);
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), anyInt, anyInt, anyInt);
+				times = 0;
+			}
+		};
+
+		/* unknown content is read from the tag, progress is reported on failure */
+		new NonStrictExpectations() {
+			{
+				nurApi.readTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_EPC, 2, 12);
+				result = RFUtils.hexToBytes("000033B2DDD9014000000000");
+
+				nurApi.writeTag(anyInt, anyInt, anyInt, withInstanceOf(byte[].class), RFUtils.BANK_EPC, 7, anyInt, withInstanceOf(byte[].class));
+				result = new NurApiException(NurApiErrors.G2_TAG_MEM_LOCKED);
+			}
+		};
+
+		res = new NurTagProcessor(nurApi).writeChanged(sing, wo, 0, null);
+		assertEquals(WriteResult.Result.MEMORY_LOCKED_ERROR, res.getResult());
+		assertEquals(5, res.getWordsWritten());
+
+		/* known content is taken from the inventoried EPC */
+		new NonStrictExpectations() {
+			{
+				nurTag.getUserdata();
+				result = null;
+				nurTag.getEpc();
+				result = RFUtils.hexToBytes("300833B2DDD9014000000000");
+			}
+		};
+
+		assertArrayEquals(RFUtils.hexToBytes("300833B2DDD9014000000000"), NurTagProcessor.getKnownData(nurTag, wo, true, null));
+		assertNull(NurTagProcessor.getKnownData(nurTag, wo, false, null));
+		wo.setOffset((short) 1);
+		assertNull(NurTagProcessor.getKnownData(nurTag, wo, true, null));
+	}
+
+	@Test
+	public void writeChangedEpc(@Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		Singulation sing = Singulation.getEPCInstance(RFUtils.hexToBytes("300833B2DDD9014000000000"));
+		WriteOperation wo = new WriteOperation();
+		wo.setOperationId("wo");
+		wo.setBank(RFUtils.BANK_EPC);
+		wo.setOffset((short) 2);
+		wo.setData(RFUtils.hexToBytes("111133B2DDD9014000000001"));
+
+		/* each run is singulated by the EPC including the runs written before */
+		WriteResult res = new NurTagProcessor(nurApi).writeChanged(sing, wo, 0, RFUtils.hexToBytes("300833B2DDD9014000000000"));
+		assertEquals(WriteResult.Result.SUCCESS, res.getResult());
+		assertEquals(6, res.getWordsWritten());
+		assertArrayEquals(RFUtils.hexToBytes("111133B2DDD9014000000001"), sing.getData());
+
+		new Verifications() {
+			{
+				byte[] sData;
+				nurApi.writeTag(NurApi.BANK_EPC, 0x20, 96, sData = withCapture(), RFUtils.BANK_EPC, 2, 2, withInstanceOf(byte[].class));
+				times = 1;
+				assertArrayEquals(RFUtils.hexToBytes("300833B2DDD9014000000000"), sData);
+				nurApi.writeTag(NurApi.BANK_EPC, 0x20, 96, sData = withCapture(), RFUtils.BANK_EPC, 7, 2, withInstanceOf(byte[].class));
+				times = 1;
+				assertArrayEquals(RFUtils.hexToBytes("111133B2DDD9014000000000"), sData);
+			}
+		};
+	}
+
+	@Test
+	public void lockCombined(@Mocked final Singulation sing, @Mocked final NurApi nurApi, @Mocked final Environment env) throws Exception {
+		LockOperation lo1 = new LockOperation();
+		lo1.setOperationId("lo1");
+		lo1.setField(Field.EPC_MEMORY);
+		lo1.setPrivilege(Privilege.LOCK);
+		lo1.setPassword(0x1234);
+
+		LockOperation lo2 = new LockOperation();
+		lo2.setOperationId("lo2");
+		lo2.setField(Field.ACCESS_PASSWORD);
+		lo2.setPrivilege(Privilege.LOCK);
+		lo2.setPassword(0x1234);
+
+		List<LockResult> results = new NurTagProcessor(nurApi).lock(sing, Arrays.asList(lo1, lo2));
+		assertEquals(2, results.size());
+		assertEquals("lo1", results.get(0).getOperationId());
+		assertEquals(LockResult.Result.SUCCESS, results.get(0).getResult());
+		assertEquals("lo2", results.get(1).getOperationId());
+		assertEquals(LockResult.Result.SUCCESS, results.get(1).getResult());
+
+		new Verifications() {
+			{
+				nurApi.setLock(0x1234, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), NurApi.LOCK_MEMORY_EPCMEM | NurApi.LOCK_MEMORY_ACCESSPWD,
+						NurApi.LOCK_ACTION_SECURED);
+				times = 1;
+			}
+		};
+
+		/* all operations report the error of the combined lock */
+		new NonStrictExpectations() {
+			{
+				nurApi.setLock(anyInt, anyInt, anyInt, anyInt, withInstanceOf(byte[].class), anyInt, anyInt);
+				result = new NurApiException(NurApiErrors.G2_TAG_MEM_LOCKED);
+			}
+		};
+
+		results = new NurTagProcessor(nurApi).lock(sing, Arrays.asList(lo1, lo2));
+		assertEquals(LockResult.Result.MEMORY_LOCKED_ERROR, results.get(0).getResult());
+		assertEquals(LockResult.Result.MEMORY_LOCKED_ERROR, results.get(1).getResult());
+	}
+
 	@Test
 	public void lock(@Mocked final Singulation sing, @Mocked final NurApi nurApi, 
 			@Mocked final LockOperation lo, @Mocked final LockResult res, @Mocked final Environment env)
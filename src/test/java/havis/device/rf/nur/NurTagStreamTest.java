@@ -0,0 +1,184 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import havis.device.rf.nur.NurTagStream.DropPolicy;
+import havis.device.rf.nur.NurTagStream.Subscription;
+import havis.device.rf.tag.TagData;
+import havis.device.rf.tag.result.OperationResult;
+import havis.device.rf.tag.result.ReadResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class NurTagStreamTest {
+
+	private static List<TagData> tags(int from, int count) {
+		List<TagData> tags = new ArrayList<>();
+		for (int i = from; i < from + count; i++) {
+			TagData tagData = new TagData();
+			tagData.setTagDataId(i);
+			tagData.setAntennaID((short) (i % 2 + 1));
+			tags.add(tagData);
+		}
+		return tags;
+	}
+
+	private static class Collector implements NurTagStream.Listener {
+		final LinkedBlockingQueue<Long> ids = new LinkedBlockingQueue<>();
+
+		@Override
+		public void tagReceived(TagData tagData) {
+			ids.add(tagData.getTagDataId());
+		}
+
+		List<Long> take(int count) throws InterruptedException {
+			List<Long> result = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				Long id = ids.poll(5, TimeUnit.SECONDS);
+				if (id == null)
+					break;
+				result.add(id);
+			}
+			return result;
+		}
+	}
+
+	@Test
+	public void testCapacity() {
+		assertEquals(2, new NurTagStream(1).getCapacity());
+		assertEquals(8, new NurTagStream(8).getCapacity());
+		assertEquals(16, new NurTagStream(9).getCapacity());
+	}
+
+	@Test
+	public void testFanOut() throws Exception {
+		NurTagStream stream = new NurTagStream(16);
+		assertFalse(stream.hasSubscribers());
+
+		Collector all = new Collector();
+		Collector antenna1 = new Collector();
+		Subscription allSubscription = stream.subscribe(all, null, DropPolicy.DROP_OLDEST);
+		Subscription antenna1Subscription = stream.subscribe(antenna1, new NurTagStream.TagFilter() {
+			@Override
+			public boolean accept(TagData tagData) {
+				return tagData.getAntennaID() == 1;
+			}
+		}, DropPolicy.DROP_OLDEST);
+		assertTrue(stream.hasSubscribers());
+
+		stream.publish(tags(0, 4));
+		assertEquals(Arrays.asList(0L, 1L, 2L, 3L), all.take(4));
+		assertEquals(Arrays.asList(0L, 2L), antenna1.take(2));
+
+		antenna1Subscription.close();
+		stream.publish(tags(4, 2));
+		assertEquals(Arrays.asList(4L, 5L), all.take(2));
+		assertTrue(antenna1.ids.isEmpty());
+
+		allSubscription.close();
+		assertFalse(stream.hasSubscribers());
+	}
+
+	@Test
+	public void testPublishCopies() throws Exception {
+		NurTagStream stream = new NurTagStream(4);
+		final LinkedBlockingQueue<TagData> received = new LinkedBlockingQueue<>();
+		Subscription subscription = stream.subscribe(new NurTagStream.Listener() {
+			@Override
+			public void tagReceived(TagData tagData) {
+				received.add(tagData);
+			}
+		}, null, DropPolicy.DROP_OLDEST);
+
+		ReadResult readResult = new ReadResult();
+		readResult.setOperationId("r");
+		readResult.setResult(ReadResult.Result.SUCCESS);
+		readResult.setReadData(new byte[] { 1, 2 });
+		TagData tagData = tags(0, 1).get(0);
+		tagData.setEpc(new byte[] { 0x30, 0x00 });
+		tagData.setResultList(new ArrayList<OperationResult>(Arrays.asList(readResult)));
+
+		stream.publish(Arrays.asList(tagData));
+		/* the caller modifies its result after publishing */
+		tagData.setAntennaID((short) 4);
+		tagData.getEpc()[1] = 1;
+		readResult.getReadData()[0] = 9;
+		tagData.getResultList().clear();
+
+		TagData copy = received.poll(5, TimeUnit.SECONDS);
+		assertNotSame(tagData, copy);
+		assertEquals(1, copy.getAntennaID());
+		assertArrayEquals(new byte[] { 0x30, 0x00 }, copy.getEpc());
+		assertEquals(1, copy.getResultList().size());
+		ReadResult readCopy = (ReadResult) copy.getResultList().get(0);
+		assertEquals("r", readCopy.getOperationId());
+		assertEquals(ReadResult.Result.SUCCESS, readCopy.getResult());
+		assertArrayEquals(new byte[] { 1, 2 }, readCopy.getReadData());
+
+		subscription.close();
+	}
+
+	private static class BlockingCollector extends Collector {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void tagReceived(TagData tagData) {
+			entered.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+			}
+			super.tagReceived(tagData);
+		}
+	}
+
+	@Test
+	public void testSlowSubscriber() throws Exception {
+		NurTagStream stream = new NurTagStream(4);
+
+		Collector fast = new Collector();
+		BlockingCollector dropOldest = new BlockingCollector();
+		BlockingCollector dropBacklog = new BlockingCollector();
+		stream.subscribe(fast, null, DropPolicy.DROP_OLDEST);
+		Subscription oldestSubscription = stream.subscribe(dropOldest, null, DropPolicy.DROP_OLDEST);
+		Subscription backlogSubscription = stream.subscribe(dropBacklog, null, DropPolicy.DROP_BACKLOG);
+
+		stream.publish(tags(0, 1));
+		assertTrue(dropOldest.entered.await(5, TimeUnit.SECONDS));
+		assertTrue(dropBacklog.entered.await(5, TimeUnit.SECONDS));
+
+		// the slow subscribers are blocked in tag 0 while 10 more are published
+		assertEquals(Arrays.asList(0L), fast.take(1));
+		for (int i = 1; i < 11; i += 2) {
+			stream.publish(tags(i, 2));
+			assertEquals(Arrays.asList((long) i, (long) i + 1), fast.take(2));
+		}
+
+		dropOldest.release.countDown();
+		dropBacklog.release.countDown();
+
+		// the oldest tags still available are delivered
+		List<Long> received = dropOldest.take(4);
+		assertEquals(0L, (long) received.get(0));
+		assertEquals(10L, (long) received.get(received.size() - 1));
+		assertEquals(10 - (received.size() - 1), oldestSubscription.getDropped());
+
+		// the backlog is dropped
+		assertEquals(Arrays.asList(0L), dropBacklog.take(1));
+		assertEquals(10, backlogSubscription.getDropped());
+		stream.publish(tags(11, 1));
+		assertEquals(Arrays.asList(11L), dropBacklog.take(1));
+		assertEquals(11L, (long) dropOldest.take(1).get(0));
+	}
+}
@@ -0,0 +1,186 @@
+package havis.device.rf.nur;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import havis.device.rf.common.util.RFUtils;
+import havis.device.rf.tag.TagData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.nordicid.nurapi.NurEventIOChange;
+import com.nordicid.nurapi.NurEventInventory;
+import com.nordicid.nurapi.NurEventTriggeredRead;
+import com.nordicid.nurapi.NurGPIOConfig;
+
+public class NurTriggerModeTest {
+
+	private static class RecordingListener implements NurTriggerMode.Listener {
+		final List<String> triggers = new ArrayList<>();
+		final List<Long> timestamps = new ArrayList<>();
+		final List<TagData> tags = new ArrayList<>();
+		final List<Long> tagTimestamps = new ArrayList<>();
+
+		@Override
+		public void triggered(int gpio, boolean active, long timestamp) {
+			triggers.add(gpio + (active ? "+" : "-"));
+			timestamps.add(timestamp);
+		}
+
+		@Override
+		public void tagsRead(int gpio, long timestamp, List<TagData> tags) {
+			this.tags.addAll(tags);
+			tagTimestamps.add(timestamp);
+		}
+	}
+
+	private static class SimulatedModule implements NurTriggerMode.Module {
+		int started;
+		int stopped;
+		int fetched;
+
+		@Override
+		public void startInventory() {
+			started++;
+		}
+
+		@Override
+		public void stopInventory() {
+			stopped++;
+		}
+
+		@Override
+		public List<TagData> fetchTags() {
+			TagData tagData = new TagData();
+			tagData.setTagDataId(fetched++);
+			return Collections.singletonList(tagData);
+		}
+	}
+
+	private static NurGPIOConfig gpio(boolean available, int type) {
+		NurGPIOConfig config = new NurGPIOConfig();
+		config.available = available;
+		config.type = type;
+		return config;
+	}
+
+	private static NurEventIOChange ioChange(int source, int direction) {
+		NurEventIOChange event = new NurEventIOChange();
+		event.source = source;
+		event.direction = direction;
+		return event;
+	}
+
+	@Test
+	public void testConfigure() {
+		NurGPIOConfig[] current = { gpio(true, NurGPIOConfig.GPIO_TYPE_ANTCTL1), gpio(true, NurGPIOConfig.GPIO_TYPE_OUTPUT),
+				gpio(false, NurGPIOConfig.GPIO_TYPE_INPUT) };
+
+		NurGPIOConfig[] configs = new NurTriggerMode(NurTriggerMode.Action.INVENTORY, null, 2).configure(current);
+		assertTrue(configs[1].enabled);
+		assertEquals(NurGPIOConfig.GPIO_TYPE_INPUT, configs[1].type);
+		assertEquals(NurGPIOConfig.GPIO_EDGE_BOTH, configs[1].edge);
+		assertEquals(NurGPIOConfig.GPIO_ACT_NOTIFY, configs[1].action);
+		/* the current configuration is not changed */
+		assertFalse(current[1].enabled);
+		assertEquals(NurGPIOConfig.GPIO_TYPE_OUTPUT, current[1].type);
+		assertEquals(NurGPIOConfig.GPIO_TYPE_ANTCTL1, configs[0].type);
+
+		NurTriggerMode mode = new NurTriggerMode(NurTriggerMode.Action.SCAN_TAG, null, 2);
+		mode.setActiveHigh(false);
+		configs = mode.configure(current);
+		assertEquals(NurGPIOConfig.GPIO_EDGE_FALLING, configs[1].edge);
+		assertEquals(NurGPIOConfig.GPIO_ACT_SCANTAG, configs[1].action);
+
+		for (int gpio : new int[] { 1, 3, 4 }) {
+			try {
+				new NurTriggerMode(NurTriggerMode.Action.INVENTORY, null, gpio).configure(current);
+				fail("Exception expected");
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testInventory() {
+		RecordingListener recorder = new RecordingListener();
+		SimulatedModule module = new SimulatedModule();
+		NurTriggerMode mode = new NurTriggerMode(NurTriggerMode.Action.INVENTORY, recorder, 2);
+		mode.setModule(module);
+
+		NurApiListenerImpl listener = new NurApiListenerImpl();
+		listener.setTriggerMode(mode);
+
+		/* other inputs are ignored */
+		listener.IOChangeEvent(ioChange(0, 1));
+		assertEquals(0, module.started);
+
+		listener.IOChangeEvent(ioChange(1, 1));
+		assertEquals(1, module.started);
+		/* a second active edge does not restart the inventory */
+		listener.IOChangeEvent(ioChange(1, 1));
+		assertEquals(1, module.started);
+
+		NurEventInventory event = new NurEventInventory();
+		listener.inventoryStreamEvent(event);
+		/* the stream is restarted while the input is active */
+		event.stopped = true;
+		listener.inventoryStreamEvent(event);
+		assertEquals(2, module.started);
+
+		listener.IOChangeEvent(ioChange(1, 0));
+		assertEquals(1, module.stopped);
+		assertEquals(3, recorder.tags.size());
+
+		/* stream events without an active input are ignored */
+		listener.inventoryStreamEvent(event);
+		assertEquals(3, module.fetched);
+
+		assertEquals(3, recorder.triggers.size());
+		assertEquals("2+", recorder.triggers.get(0));
+		assertEquals("2-", recorder.triggers.get(2));
+		/* all transponders are delivered with the time of the trigger */
+		for (Long timestamp : recorder.tagTimestamps)
+			assertEquals(recorder.timestamps.get(0), timestamp);
+
+		listener.setTriggerMode(null);
+		listener.IOChangeEvent(ioChange(1, 1));
+		assertEquals(3, recorder.triggers.size());
+	}
+
+	@Test
+	public void testScanTag() {
+		RecordingListener recorder = new RecordingListener();
+		NurTriggerMode mode = new NurTriggerMode(NurTriggerMode.Action.SCAN_TAG, recorder, 1);
+		NurApiListenerImpl listener = new NurApiListenerImpl();
+		listener.setTriggerMode(mode);
+
+		NurEventTriggeredRead event = new NurEventTriggeredRead();
+		event.source = 0;
+		event.antennaId = 1;
+		event.rssi = -55;
+		event.epc = "300833B2DDD9014000000001";
+		listener.triggeredReadEvent(event);
+
+		/* sensor events and reads without a transponder are ignored */
+		event.sensor = true;
+		listener.triggeredReadEvent(event);
+		event.sensor = false;
+		event.epc = "";
+		listener.triggeredReadEvent(event);
+		listener.triggeredReadEvent(null);
+		listener.IOChangeEvent(null);
+
+		assertEquals(1, recorder.tags.size());
+		TagData tagData = recorder.tags.get(0);
+		assertEquals(2, tagData.getAntennaID());
+		assertEquals(-55, tagData.getRssi());
+		assertArrayEquals(RFUtils.hexToBytes("300833B2DDD9014000000001"), tagData.getEpc());
+	}
+}
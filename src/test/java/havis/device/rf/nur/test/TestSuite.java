@@ -13,11 +13,25 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({ 
 	havis.device.rf.nur.firmware.ExecutionExceptionTest.class, 
 	havis.device.rf.nur.firmware.FirmwareUpdaterTest.class,
-	havis.device.rf.nur.ConstantsTest.class,	
+	havis.device.rf.nur.ConstantsTest.class,
+	havis.device.rf.nur.NurBatchEncoderTest.class,
+	havis.device.rf.nur.NurBaudrateNegotiatorTest.class,
+	havis.device.rf.nur.NurBenchmarkTest.class,
+	havis.device.rf.nur.NurChipRegistryTest.class,
 	havis.device.rf.nur.NurConfigurationHelperTest.class,
+	havis.device.rf.nur.NurEpcCommissioningTest.class,
+	havis.device.rf.nur.NurEpcPrefixTrieTest.class,
 	havis.device.rf.nur.NurErrorMapTest.class, 
 	havis.device.rf.nur.NurHardwareManagerTest.class, 
-	havis.device.rf.nur.NurTagProcessorTest.class })
+	havis.device.rf.nur.NurInventoryPublisherTest.class,
+	havis.device.rf.nur.NurMultiHardwareManagerTest.class,
+	havis.device.rf.nur.NurOperationPlanTest.class,
+	havis.device.rf.nur.NurSharedSessionTest.class,
+	havis.device.rf.nur.NurSocketTransportTest.class,
+	havis.device.rf.nur.NurTagLocatorTest.class,
+	havis.device.rf.nur.NurTagStreamTest.class,
+	havis.device.rf.nur.NurTagProcessorTest.class,
+	havis.device.rf.nur.NurTriggerModeTest.class })
 
 @RunWith(Suite.class)
 public class TestSuite {